@@ -0,0 +1,279 @@
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory room availability for every hotel: for each day that has
+ * bookings, a bitmap with one bit per room of the hotel.  Built once from
+ * Room and Booking and kept current by addRoom and bookRoom, it answers
+ * the front-desk questions "how many rooms are free on day D" and "which
+ * rooms are booked in D..D+6" without a database round trip.
+ *
+ * The index only sees writes made through this process; bookings made by
+ * other clients appear after the next build().
+ *
+ */
+public class AvailabilityIndex {
+
+   private static final String LOAD_ROOMS = "SELECT hotelID, roomNo FROM Room";
+   private static final String LOAD_BOOKINGS = "SELECT hotelID, roomNo, bookingDate FROM Booking";
+
+   /**
+    * The rooms of one hotel and their occupancy by day.
+    */
+   private static class Hotel {
+      // room numbers by bit position, and bit positions by room number.
+      int[] roomNos = new int[8];
+      int rooms = 0;
+      final Map<Integer, Integer> slots = new HashMap<Integer, Integer> ();
+      // epoch day -> bit set of the occupied room slots.
+      final Map<Integer, BitSet> days = new HashMap<Integer, BitSet> ();
+
+      int slot (int roomNo) {
+         Integer slot = this.slots.get (roomNo);
+         if (slot != null){
+            return slot.intValue ();
+         }//end if
+         if (this.rooms == this.roomNos.length){
+            this.roomNos = Arrays.copyOf (this.roomNos, this.rooms * 2);
+         }//end if
+         this.roomNos[this.rooms] = roomNo;
+         this.slots.put (roomNo, this.rooms);
+         return this.rooms++;
+      }//end slot
+
+      void book (int roomNo, int day) {
+         int slot = slot (roomNo);
+         BitSet occupied = this.days.get (day);
+         if (occupied == null){
+            occupied = new BitSet (this.rooms);
+            this.days.put (day, occupied);
+         }//end if
+         occupied.set (slot);
+      }//end book
+   }//end Hotel
+
+   private final Map<Integer, Hotel> _hotels = new ConcurrentHashMap<Integer, Hotel> ();
+   private volatile boolean _built = false;
+
+   /**
+    * Loads every room and booking.  Replaces any previous contents.
+    *
+    * @param pool the pool to read Room and Booking through
+    * @throws java.sql.SQLException when the tables cannot be read
+    */
+   public synchronized void build (ConnectionPool pool) throws SQLException {
+      Map<Integer, Hotel> hotels = new HashMap<Integer, Hotel> ();
+      PooledConnection conn = pool.borrow ();
+      try{
+         PreparedStatement stmt = conn.prepare (LOAD_ROOMS);
+         ResultSet rs = stmt.executeQuery ();
+         try{
+            while (rs.next ()){
+               hotel (hotels, rs.getInt (1)).slot (rs.getInt (2));
+            }//end while
+         }finally{
+            rs.close ();
+         }//end try
+         stmt = conn.prepare (LOAD_BOOKINGS);
+         rs = stmt.executeQuery ();
+         try{
+            while (rs.next ()){
+               hotel (hotels, rs.getInt (1)).book (rs.getInt (2), DBProject.epochDay (rs.getDate (3)));
+            }//end while
+         }finally{
+            rs.close ();
+         }//end try
+      }finally{
+         pool.release (conn);
+      }//end try
+      this._hotels.clear ();
+      this._hotels.putAll (hotels);
+      this._built = true;
+   }//end build
+
+   /**
+    * @return true once build() has completed
+    */
+   public boolean isBuilt () {
+      return this._built;
+   }//end isBuilt
+
+   /**
+    * Records a room added to a hotel.
+    */
+   public void onRoom (int hotelID, int roomNo) {
+      if (!this._built){
+         return;
+      }//end if
+      Hotel hotel = hotel (hotelID);
+      synchronized (hotel){
+         hotel.slot (roomNo);
+      }//end synchronized
+   }//end onRoom
+
+   /**
+    * Records a booking of a room for a day.
+    */
+   public void onBooking (int hotelID, int roomNo, int day) {
+      if (!this._built){
+         return;
+      }//end if
+      Hotel hotel = hotel (hotelID);
+      synchronized (hotel){
+         hotel.book (roomNo, day);
+      }//end synchronized
+   }//end onBooking
+
+   /**
+    * @param hotelID the hotel
+    * @param roomNo the room
+    * @param day the day, as an epoch day
+    * @return whether the index has a booking of the room on the day
+    */
+   public boolean isBooked (int hotelID, int roomNo, int day) {
+      Hotel hotel = this._hotels.get (hotelID);
+      if (hotel == null){
+         return false;
+      }//end if
+      synchronized (hotel){
+         Integer slot = hotel.slots.get (roomNo);
+         BitSet occupied = hotel.days.get (day);
+         return slot != null && occupied != null && occupied.get (slot.intValue ());
+      }//end synchronized
+   }//end isBooked
+
+   /**
+    * Counts the rooms of a hotel that have no booking on any of the days
+    * from..from+days-1.
+    *
+    * @param hotelID the hotel
+    * @param from the first day, as an epoch day
+    * @param days the number of days
+    * @return the number of free rooms
+    */
+   public int freeRooms (int hotelID, int from, int days) {
+      Hotel hotel = this._hotels.get (hotelID);
+      if (hotel == null){
+         return 0;
+      }//end if
+      synchronized (hotel){
+         BitSet occupied = new BitSet (hotel.rooms);
+         for (int day = from; day < from + days; ++day){
+            BitSet bits = hotel.days.get (day);
+            if (bits != null){
+               occupied.or (bits);
+            }//end if
+         }//end for
+         return hotel.rooms - occupied.cardinality ();
+      }//end synchronized
+   }//end freeRooms
+
+   /**
+    * Lists the booked rooms of a hotel on the days from..from+days-1,
+    * ordered by day and then room number.
+    *
+    * @param hotelID the hotel
+    * @param from the first day, as an epoch day
+    * @param days the number of days
+    * @return pairs of { epoch day, room number }
+    */
+   public List<int[]> bookedRooms (int hotelID, int from, int days) {
+      List<int[]> booked = new ArrayList<int[]> ();
+      Hotel hotel = this._hotels.get (hotelID);
+      if (hotel == null){
+         return booked;
+      }//end if
+      synchronized (hotel){
+         for (int day = from; day < from + days; ++day){
+            BitSet bits = hotel.days.get (day);
+            if (bits == null){
+               continue;
+            }//end if
+            int[] rooms = new int[bits.cardinality ()];
+            int n = 0;
+            for (int slot = bits.nextSetBit (0); slot >= 0; slot = bits.nextSetBit (slot + 1)){
+               rooms[n++] = hotel.roomNos[slot];
+            }//end for
+            Arrays.sort (rooms);
+            for (int roomNo : rooms){
+               booked.add (new int[] { day, roomNo });
+            }//end for
+         }//end for
+      }//end synchronized
+      return booked;
+   }//end bookedRooms
+
+   /**
+    * Writes the number of rooms free on the days from..from+days-1 in the
+    * same shape as Queries.AVAILABLE_ROOMS.
+    */
+   void writeFreeRooms (ResultSink sink, int hotelID, int from, int days) throws IOException {
+      sink.begin (new String[] { "availablerooms" });
+      sink.cell (String.valueOf (freeRooms (hotelID, from, days)));
+      sink.endRow ();
+      sink.end (1);
+   }//end writeFreeRooms
+
+   /**
+    * Writes the rooms booked in a week in the same shape as
+    * Queries.BOOKINGS_FOR_WEEK.
+    */
+   void writeBookedRooms (ResultSink sink, int hotelID, int from, int days) throws IOException {
+      writeBookedRooms (sink, hotelID, from, days, Integer.MIN_VALUE);
+   }//end writeBookedRooms
+
+   /**
+    * Writes the rooms booked in a week in the same shape as
+    * Queries.BOOKINGS_FOR_WEEK_PAGE, leaving out the rooms up to afterRoom
+    * on the first day.
+    */
+   void writeBookedRooms (ResultSink sink, int hotelID, int from, int days, int afterRoom) throws IOException {
+      List<int[]> booked = bookedRooms (hotelID, from, days);
+      int rows = 0;
+      for (int[] entry : booked){
+         if (entry[0] == from && entry[1] <= afterRoom){
+            continue;
+         }//end if
+         if (rows++ == 0){
+            sink.begin (new String[] { "roomno", "bookingdate" });
+         }//end if
+         sink.cell (String.valueOf (entry[1]));
+         sink.cell (DBProject.fromEpochDay (entry[0]).toString ());
+         sink.endRow ();
+      }//end for
+      sink.end (rows);
+   }//end writeBookedRooms
+
+   private Hotel hotel (int hotelID) {
+      Hotel hotel = this._hotels.get (hotelID);
+      if (hotel == null){
+         synchronized (this._hotels){
+            hotel = this._hotels.get (hotelID);
+            if (hotel == null){
+               hotel = new Hotel ();
+               this._hotels.put (hotelID, hotel);
+            }//end if
+         }//end synchronized
+      }//end if
+      return hotel;
+   }//end hotel
+
+   private static Hotel hotel (Map<Integer, Hotel> hotels, int hotelID) {
+      Hotel hotel = hotels.get (hotelID);
+      if (hotel == null){
+         hotel = new Hotel ();
+         hotels.put (hotelID, hotel);
+      }//end if
+      return hotel;
+   }//end hotel
+
+}//end AvailabilityIndex
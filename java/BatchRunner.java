@@ -0,0 +1,116 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Replays a script of menu operations without any prompting.  Each
+ * non-blank line names an operation by menu number or method name and
+ * gives its parameters as key=value pairs, e.g.
+ * <pre>
+ *    # book a room, then check what is left
+ *    5 customer=12 hotel=381 room=5 date=2015-05-13 people=2 price=150
+ *    numberOfAvailableRooms hotel=381
+ * </pre>
+ * Lines starting with # are comments.  A failing line is reported and the
+ * script continues.  When the script ends, throughput and per-operation
+ * timings are printed.
+ *
+ */
+public class BatchRunner {
+
+   private final DBProject _esql;
+   private final PrintStream _report;
+
+   // per operation (by ordinal) counters.
+   private final long[] _count = new long[Operation.values ().length];
+   private final long[] _errors = new long[Operation.values ().length];
+   private final long[] _totalNanos = new long[Operation.values ().length];
+   private final long[] _minNanos = new long[Operation.values ().length];
+   private final long[] _maxNanos = new long[Operation.values ().length];
+
+   /**
+    * @param esql the database the script runs against
+    * @param report where errors and the timing summary are written
+    */
+   public BatchRunner (DBProject esql, PrintStream report) {
+      this._esql = esql;
+      this._report = report;
+      Arrays.fill (this._minNanos, Long.MAX_VALUE);
+   }//end BatchRunner
+
+   /**
+    * Runs every line of a script, then prints the timing summary.
+    *
+    * @param script the script source
+    * @throws java.io.IOException when the script cannot be read
+    */
+   public void run (BufferedReader script) throws IOException {
+      long start = System.nanoTime ();
+      long lines = 0;
+      String line;
+      while ((line = script.readLine ()) != null){
+         ++lines;
+         line = line.trim ();
+         if (line.length () == 0 || line.charAt (0) == '#'){
+            continue;
+         }//end if
+         runLine (lines, line);
+      }//end while
+      summary (System.nanoTime () - start);
+   }//end run
+
+   private void runLine (long lineNo, String line) {
+      int space = line.indexOf (' ');
+      String name = space < 0 ? line : line.substring (0, space);
+      Operation op;
+      Params params;
+      try{
+         op = Operation.lookup (name);
+         params = Params.parse (space < 0 ? "" : line.substring (space + 1));
+      }catch (IllegalArgumentException e){
+         this._report.println ("line " + lineNo + ": " + e.getMessage ());
+         return;
+      }//end try
+
+      int i = op.ordinal ();
+      long t0 = System.nanoTime ();
+      try{
+         op.run (this._esql, params);
+      }catch (Exception e){
+         ++this._errors[i];
+         this._report.println ("line " + lineNo + ": " + op.getMethod () + " failed: " + e.getMessage ());
+      }//end try
+      long elapsed = System.nanoTime () - t0;
+      ++this._count[i];
+      this._totalNanos[i] += elapsed;
+      this._minNanos[i] = Math.min (this._minNanos[i], elapsed);
+      this._maxNanos[i] = Math.max (this._maxNanos[i], elapsed);
+   }//end runLine
+
+   private void summary (long elapsedNanos) {
+      long ops = 0;
+      long errors = 0;
+      for (int i = 0; i < this._count.length; ++i){
+         ops += this._count[i];
+         errors += this._errors[i];
+      }//end for
+      double seconds = elapsedNanos / 1e9;
+      this._report.println ();
+      this._report.printf ("%d operations, %d failed, in %.3f s (%.1f ops/s)%n",
+                           ops, errors, seconds, seconds > 0 ? ops / seconds : 0.0);
+      this._report.printf ("%-4s %-36s %8s %6s %10s %10s %10s%n",
+                           "#", "operation", "count", "failed", "avg(ms)", "min(ms)", "max(ms)");
+      for (Operation op : Operation.values ()){
+         int i = op.ordinal ();
+         if (this._count[i] == 0){
+            continue;
+         }//end if
+         this._report.printf ("%-4d %-36s %8d %6d %10.3f %10.3f %10.3f%n",
+                              op.getCode (), op.getMethod (), this._count[i], this._errors[i],
+                              this._totalNanos[i] / 1e6 / this._count[i],
+                              this._minNanos[i] / 1e6, this._maxNanos[i] / 1e6);
+      }//end for
+   }//end summary
+
+}//end BatchRunner
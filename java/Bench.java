@@ -0,0 +1,250 @@
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Micro-benchmarks for the DBProject client code and the sixteen menu
+ * operations.
+ *
+ * The "client" group needs no database and measures the client-side hot
+ * paths: each operation from its script line through the prepared
+ * statement it binds to the rendering of its result, against the stub
+ * connections of StubDriver; a 1000-row result through
+ * DBProject.printResult; and date / ID parsing.
+ * The "db" group runs every operation end-to-end against a database that
+ * was created with sql/create.sql and seeded from data/*.csv.  It inserts
+ * rows, so point it at a scratch database.
+ *
+ * Each case is warmed up for bench.warmup milliseconds (default 2000) and
+ * then measured for bench.time milliseconds (default 5000), reading the
+ * clock once per batch of operations.  Results are
+ * reported per case as ns/op, ops/s and bytes allocated per op.
+ *
+ * Usage: java Bench client
+ *        java Bench db &lt;dbname&gt; &lt;port&gt; &lt;user&gt;
+ *
+ */
+public class Bench {
+
+   /**
+    * One benchmarked operation; i is the invocation number.
+    */
+   interface Case {
+      void run (int i) throws Exception;
+   }//end Case
+
+   // consumed results, so the JIT cannot drop the benchmarked work.
+   static volatile Object blackhole;
+
+   private static final long WARMUP = Long.getLong ("bench.warmup", 2000L);
+   private static final long TIME = Long.getLong ("bench.time", 5000L);
+
+   // operations between two clock readings take at least this long.
+   private static final long BATCH_NANOS = 100000L;
+
+   // one representative script line per operation; {id} is replaced by a
+   // fresh number so that new rooms do not collide on the primary key, and
+   // {date} by a fresh day from 2015-05-13 on, when data/ has no booking of
+   // room 5 of hotel 381, so that the room is never booked twice a day.
+   static final String[] LINES = {
+      "addCustomer fname=bench lname=user address=\"1 Main St\" phone=9515550100 dob=1990-04-01 gender=Female",
+      "addRoom hotel=1 room={id} type=Suite",
+      "addMaintenanceCompany name=benchco address=riverside certified=y",
+      "addRepair hotel=145 room=4 company=6 date=2015-04-09 description=bench type=Small",
+      "bookRoom customer=12 hotel=381 room=5 date={date} people=2 price=150",
+      "assignHouseCleaningToRoom staff=3 hotel=1 room=4",
+      "repairRequest manager=721 repair=1 date=2015-05-02 description=bench",
+      "numberOfAvailableRooms hotel=381 date=2015-05-10",
+      "numberOfBookedRooms hotel=381",
+      "listHotelRoomBookingsForAWeek hotel=381 date=2015-05-10",
+      "topKHighestRoomPriceForADateRange k=10 from=2015-01-01 to=2015-12-31",
+      "topKHighestPriceBookingsForACustomer customer=12 k=10",
+      "totalCostForCustomer hotel=381 customer=12 from=2010-01-01 to=2016-12-31",
+      "listRepairsMade company=6",
+      "topKMaintenanceCompany k=5 window=365",
+      "numberOfRepairsForEachRoomPerYear hotel=145 room=4",
+   };
+
+   private static final int FIRST_FREE_DAY = DBProject.epochDay (2015, 5, 13);
+
+   private final List<String> _report = new ArrayList<String> ();
+
+   public static void main (String[] args) throws Exception {
+      Bench bench = new Bench ();
+      if (args.length == 1 && args[0].equals ("client")){
+         bench.clientGroup ();
+      }else if (args.length == 4 && args[0].equals ("db")){
+         Class.forName ("org.postgresql.Driver");
+         DBProject esql = new DBProject (args[1], args[2], args[3], "");
+         try{
+            esql.setSink (new NullSink ());
+            esql.buildIndexes ();
+            bench.dbGroup (esql);
+         }finally{
+            esql.cleanup ();
+         }//end try
+      }else{
+         System.err.println ("Usage: java Bench client | java Bench db <dbname> <port> <user>");
+         return;
+      }//end if
+      bench.print ();
+   }//end main
+
+   /**
+    * Client-side hot paths; no database needed.  Every operation runs its
+    * real client path against StubDriver: parsing the script line,
+    * borrowing a pooled connection, preparing and binding the statement,
+    * and rendering the stub's one-row result through the console sink.
+    * The result cache is off and the in-memory indexes are not built, so
+    * every report goes through its SQL template.
+    */
+   void clientGroup () throws Exception {
+      System.setProperty ("dbproject.cache.bytes", "0");
+      DriverManager.registerDriver (new StubDriver ());
+      ConnectionPool pool = new ConnectionPool (StubDriver.URL + "bench", "bench", "", 1, 1, 1000L, Long.MAX_VALUE);
+      try{
+         final DBProject esql = new DBProject (pool);
+         esql.setSink (new ConsoleSink (new OutputStream () {
+            public void write (int b) {
+            }
+            public void write (byte[] b, int off, int len) {
+            }
+         }));
+         for (final String line : LINES){
+            final int space = line.indexOf (' ');
+            final Operation op = Operation.lookup (line.substring (0, space));
+            final String args = line.substring (space + 1);
+            final int base = 1000000 + op.getCode () * 100000;
+            measure ("client", "stub/" + op.getCode () + "/" + op.getMethod (), new Case () {
+               public void run (int i) throws Exception {
+                  op.run (esql, Params.parse (fill (args, base + i, i)));
+               }
+            });
+         }//end for
+
+         // a 1000-row result through DBProject.printResult into the sink.
+         final Operation prices = Operation.lookup ("topKHighestRoomPriceForADateRange");
+         StubDriver.rows = 1000;
+         try{
+            measure ("client", "render/booking-1000x7", new Case () {
+               public void run (int i) throws Exception {
+                  prices.run (esql, Params.parse ("k=1000 from=2015-01-01 to=2015-12-31"));
+               }
+            });
+         }finally{
+            StubDriver.rows = 1;
+         }//end try
+      }finally{
+         pool.close ();
+      }//end try
+
+      measure ("client", "parse/date-iso", new Case () {
+         public void run (int i) {
+            blackhole = Params.parseDate ("2015-05-12");
+         }
+      });
+      measure ("client", "parse/date-mdy", new Case () {
+         public void run (int i) {
+            blackhole = Params.parseDate ("5/12/2015");
+         }
+      });
+      measure ("client", "parse/id", new Case () {
+         public void run (int i) {
+            blackhole = Integer.valueOf (Integer.parseInt ("4001"));
+         }
+      });
+   }//end clientGroup
+
+   /**
+    * Every operation end-to-end against the database, results discarded.
+    */
+   void dbGroup (final DBProject esql) throws Exception {
+      for (final String line : LINES){
+         final int space = line.indexOf (' ');
+         final Operation op = Operation.lookup (line.substring (0, space));
+         final String args = line.substring (space + 1);
+         final int base = 1000000 + op.getCode () * 100000;
+         measure ("db", op.getCode () + "/" + op.getMethod (), new Case () {
+            public void run (int i) throws Exception {
+               op.run (esql, Params.parse (fill (args, base + i, i)));
+            }
+         });
+      }//end for
+   }//end dbGroup
+
+   /*
+    * Replaces {id} in a script line by id and {date} by the i-th day after
+    * FIRST_FREE_DAY.
+    **/
+   static String fill (String args, int id, int i) {
+      return args.replace ("{id}", String.valueOf (id))
+         .replace ("{date}", DBProject.fromEpochDay (FIRST_FREE_DAY + i).toString ());
+   }//end fill
+
+   /*
+    * Warms a case up, then runs it for the measurement time and records
+    * ns/op and allocated bytes/op.  The clock is read once per batch of
+    * operations, sized during the warm-up to take about BATCH_NANOS, so
+    * that reading it does not swamp cases of a few nanoseconds.
+    **/
+   void measure (String group, String name, Case c) throws Exception {
+      int i = 0;
+      int batch = 1;
+      long end = System.currentTimeMillis () + WARMUP;
+      while (System.currentTimeMillis () < end){
+         long start = System.nanoTime ();
+         for (int k = 0; k < batch; ++k){
+            c.run (i++);
+         }//end for
+         if (System.nanoTime () - start < BATCH_NANOS && batch < (1 << 24)){
+            batch <<= 1;
+         }//end if
+      }//end while
+
+      long ops = 0;
+      long bytes0 = allocatedBytes ();
+      long t0 = System.nanoTime ();
+      long deadline = t0 + TIME * 1000000L;
+      long now;
+      do{
+         for (int k = 0; k < batch; ++k){
+            c.run (i++);
+         }//end for
+         ops += batch;
+         now = System.nanoTime ();
+      }while (now < deadline);
+      long bytes = bytes0 < 0 ? -1 : allocatedBytes () - bytes0;
+      double nsPerOp = (double) (now - t0) / ops;
+      String result = String.format ("%-6s %-46s %14.1f %14.1f %12.1f",
+                                     group, name, nsPerOp, 1e9 / nsPerOp,
+                                     bytes < 0 ? Double.NaN : (double) bytes / ops);
+      System.out.println (result);
+      this._report.add (result);
+   }//end measure
+
+   void print () {
+      System.out.println ();
+      System.out.println (String.format ("%-6s %-46s %14s %14s %12s",
+                                         "group", "benchmark", "ns/op", "ops/s", "B/op"));
+      for (String line : this._report){
+         System.out.println (line);
+      }//end for
+   }//end print
+
+   /*
+    * Bytes allocated so far by the current thread, or -1 when the JVM does
+    * not expose allocation counters.
+    **/
+   private static long allocatedBytes () {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean ();
+      if (bean instanceof com.sun.management.ThreadMXBean){
+         return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes (
+            Thread.currentThread ().getId ());
+      }//end if
+      return -1;
+   }//end allocatedBytes
+
+}//end Bench
@@ -0,0 +1,420 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Imports many bookings at once, e.g. a group reservation or a partner
+ * feed, instead of one bookRoom call per booking.
+ *
+ * The input has one booking per line:
+ * <pre>
+ *    customer,hotel,room,date,people,price
+ *    12,381,5,2015-05-12,2,150.00
+ * </pre>
+ * with dates as yyyy-mm-dd or m/d/yyyy; blank lines, # comments and a
+ * header line are skipped.  The input is read once.  Each booking is
+ * either inserted or rejected, and every rejected line is written to the
+ * reject report with its line number and reason, in input order as far as
+ * the checks allow:
+ * <ul>
+ *    <li>malformed lines and values out of range, when read;</li>
+ *    <li>a room and day booked by an earlier line of the same input that
+ *        went in (a line waiting in the current batch gets the batch sent
+ *        early to find out);</li>
+ *    <li>a room and day already booked in the database, found by the
+ *        insert itself (Queries.IMPORT_BOOKING inserts nothing then, or
+ *        trips the unique key of a booking committed meanwhile);</li>
+ *    <li>any other refusal by the database, e.g. an unknown customer or
+ *        room.</li>
+ * </ul>
+ *
+ * Bookings are sent in batches of dbproject.import.batch rows (default
+ * 500), each as one multi-row INSERT ... SELECT ... WHERE NOT EXISTS that
+ * returns the bIDs it inserted, and committed every dbproject.import.commit
+ * rows (default 5000), rounded up to whole batches.  (A JDBC batch would
+ * not do: the pg73 driver sends each of its rows as a round trip of its
+ * own.)  A batch the database refuses is rolled back to a savepoint and
+ * replayed row by row, one round trip per row, so one bad row slows its
+ * batch down but does not fail the rest of the transaction.
+ *
+ * Committed bookings are added to the in-memory indexes and invalidate
+ * the cached reports of the DBProject doing the import, which is only the
+ * short-lived one of main() when run from the command line.  Servers
+ * already running keep their indexes and cached reports: send them
+ * "reindex" (see Server) once the import is done.
+ *
+ * Usage: java BulkBookingImport &lt;dbname&gt; &lt;port&gt; &lt;user&gt; &lt;file | -&gt; [&lt;reject file&gt;]
+ *
+ */
+public class BulkBookingImport {
+
+   /**
+    * One booking read from the input.
+    */
+   static final class Row {
+      final long line;
+      final String text;
+      int bID;
+      int customer;
+      int hotelID;
+      int roomNo;
+      java.sql.Date date;
+      int people;
+      BigDecimal price;
+
+      Row (long line, String text) {
+         this.line = line;
+         this.text = text;
+      }//end Row
+   }//end Row
+
+   /**
+    * The outcome of an import.
+    */
+   public static final class Summary {
+      long read;
+      long inserted;
+      long rejected;
+      long nanos;
+
+      public long getRead () {
+         return this.read;
+      }//end getRead
+
+      public long getInserted () {
+         return this.inserted;
+      }//end getInserted
+
+      public long getRejected () {
+         return this.rejected;
+      }//end getRejected
+
+      public String toString () {
+         double seconds = this.nanos / 1e9;
+         return String.format ("%d bookings read, %d inserted, %d rejected, in %.3f s (%.1f rows/s)",
+                               this.read, this.inserted, this.rejected, seconds,
+                               seconds > 0 ? this.read / seconds : 0.0);
+      }//end toString
+   }//end Summary
+
+   // largest value of the Numeric(6,2) price column.
+   private static final BigDecimal MAX_PRICE = new BigDecimal ("9999.99");
+
+   private final DBProject _esql;
+   private final int _batchSize;
+   private final int _commitSize;
+
+   /**
+    * Creates an importer with the batch and transaction sizes from the
+    * system properties dbproject.import.batch and dbproject.import.commit.
+    *
+    * @param esql the database the bookings go to
+    */
+   public BulkBookingImport (DBProject esql) {
+      this (esql, Integer.getInteger ("dbproject.import.batch", 500),
+            Integer.getInteger ("dbproject.import.commit", 5000));
+   }//end BulkBookingImport
+
+   /**
+    * @param esql the database the bookings go to
+    * @param batchSize rows per INSERT statement
+    * @param commitSize rows per transaction, rounded up to whole batches
+    */
+   public BulkBookingImport (DBProject esql, int batchSize, int commitSize) {
+      if (batchSize < 1 || commitSize < 1){
+         throw new IllegalArgumentException ("Batch and commit sizes must be positive");
+      }//end if
+      this._esql = esql;
+      this._batchSize = batchSize;
+      this._commitSize = commitSize;
+   }//end BulkBookingImport
+
+   public static void main (String[] args) throws Exception {
+      if (args.length < 4 || args.length > 5){
+         System.err.println ("Usage: java BulkBookingImport <dbname> <port> <user> <file | -> [<reject file>]");
+         return;
+      }//end if
+      Class.forName ("org.postgresql.Driver");
+      DBProject esql = new DBProject (args[0], args[1], args[2], "");
+      BufferedReader in = args[3].equals ("-")
+         ? new BufferedReader (new InputStreamReader (System.in))
+         : new BufferedReader (new FileReader (args[3]), 1 << 16);
+      Writer rejects = args.length == 5
+         ? new FileWriter (args[4])
+         : new OutputStreamWriter (System.err);
+      try{
+         esql.buildIndexes ();
+         System.out.println (new BulkBookingImport (esql).run (in, rejects));
+      }finally{
+         in.close ();
+         rejects.flush ();
+         if (args.length == 5){
+            rejects.close ();
+         }//end if
+         esql.cleanup ();
+      }//end try
+   }//end main
+
+   /**
+    * Imports every booking of the input.
+    *
+    * @param in the bookings, one per line
+    * @param rejects where the rejected lines are reported
+    * @return the counts of the import
+    * @throws java.io.IOException when the input or the report fails
+    * @throws java.sql.SQLException when the database fails other than by
+    *         refusing a row; the transaction in progress is rolled back and
+    *         the bookings committed before it stay
+    */
+   public Summary run (BufferedReader in, Writer rejects) throws IOException, SQLException {
+      Summary summary = new Summary ();
+      long start = System.nanoTime ();
+      // room and day -> line that booked it or is about to, for the
+      // duplicates in the input; rows the database refuses are dropped.
+      Map<String, Long> seen = new HashMap<String, Long> ();
+      List<Row> batch = new ArrayList<Row> (this._batchSize);
+      List<Row> uncommitted = new ArrayList<Row> ();
+
+      PooledConnection conn = this._esql.getPool ().borrow ();
+      Connection c = conn.getConnection ();
+      c.setAutoCommit (false);
+      boolean done = false;
+      try{
+         long lineNo = 0;
+         String line;
+         while ((line = in.readLine ()) != null){
+            ++lineNo;
+            String text = line.trim ();
+            if (text.length () == 0 || text.charAt (0) == '#' || text.toLowerCase ().startsWith ("customer")){
+               continue;
+            }//end if
+            ++summary.read;
+            Row row = new Row (lineNo, text);
+            String error = parse (row);
+            if (error == null){
+               Long earlier = seen.get (slot (row));
+               if (earlier != null && !batch.isEmpty () && earlier >= batch.get (0).line){
+                  // the earlier line is not sent yet: find out whether it goes in.
+                  send (conn, batch, uncommitted, seen, rejects, summary);
+                  earlier = seen.get (slot (row));
+               }//end if
+               if (earlier == null){
+                  seen.put (slot (row), lineNo);
+               }else{
+                  error = "room " + row.roomNo + " of hotel " + row.hotelID + " is already booked on "
+                     + row.date + " by line " + earlier;
+               }//end if
+            }//end if
+            if (error != null){
+               reject (rejects, summary, row, error);
+               continue;
+            }//end if
+            batch.add (row);
+            if (batch.size () == this._batchSize){
+               send (conn, batch, uncommitted, seen, rejects, summary);
+               if (uncommitted.size () >= this._commitSize){
+                  commit (c, uncommitted, summary);
+               }//end if
+            }//end if
+         }//end while
+         send (conn, batch, uncommitted, seen, rejects, summary);
+         commit (c, uncommitted, summary);
+         done = true;
+      }finally{
+         try{
+            if (!done){
+               c.rollback ();
+            }//end if
+            c.setAutoCommit (true);
+         }finally{
+            this._esql.getPool ().release (conn);
+         }//end try
+         rejects.flush ();
+         summary.nanos = System.nanoTime () - start;
+      }//end try
+      return summary;
+   }//end run
+
+   /*
+    * Parses a line into its row.
+    * @return null, or why the line is rejected
+    **/
+   static String parse (Row row) {
+      String[] fields = row.text.split (",", -1);
+      if (fields.length != 6){
+         return "expected customer,hotel,room,date,people,price";
+      }//end if
+      try{
+         row.customer = Integer.parseInt (fields[0].trim ());
+         row.hotelID = Integer.parseInt (fields[1].trim ());
+         row.roomNo = Integer.parseInt (fields[2].trim ());
+         row.date = Params.parseDate (fields[3].trim ());
+         row.people = Integer.parseInt (fields[4].trim ());
+         row.price = new BigDecimal (fields[5].trim ());
+      }catch (NumberFormatException e){
+         return "not a number: " + e.getMessage ();
+      }catch (IllegalArgumentException e){
+         return e.getMessage ();
+      }//end try
+      if (row.people < 1){
+         return "the number of people must be positive";
+      }//end if
+      if (row.price.signum () < 0 || row.price.compareTo (MAX_PRICE) > 0){
+         return "the price must be between 0 and " + MAX_PRICE;
+      }//end if
+      return null;
+   }//end parse
+
+   /*
+    * Sends a batch inside the open transaction as one multi-row insert and
+    * sorts its rows into inserted (kept until the commit) and rejected,
+    * freeing the room and day of a rejected row in seen.
+    **/
+   private void send (PooledConnection conn, List<Row> batch, List<Row> uncommitted, Map<String, Long> seen,
+                      Writer rejects, Summary summary) throws IOException, SQLException {
+      if (batch.isEmpty ()){
+         return;
+      }//end if
+      String name = Stats.sqlName (Queries.IMPORT_BOOKING);
+      long start = System.nanoTime ();
+      PreparedStatement stmt = conn.prepare (importSql (batch.size ()));
+      Object[] params = new Object[batch.size () * 7];
+      for (int i = 0; i < batch.size (); ++i){
+         Row row = batch.get (i);
+         if (row.bID == 0){
+            row.bID = this._esql.getIds ().next (IdAllocator.BOOKING);
+         }//end if
+         System.arraycopy (new Object[] { row.bID, row.customer, row.hotelID, row.roomNo, row.date,
+                                          row.people, row.price }, 0, params, i * 7, 7);
+      }//end for
+      DBProject.bind (stmt, params);
+      Statement savepoint = conn.getConnection ().createStatement ();
+      try{
+         savepoint.execute ("SAVEPOINT import_batch");
+         // the bIDs that went in; null when the database refused the batch.
+         Set<Integer> inserted = new HashSet<Integer> ();
+         try{
+            ResultSet rs = stmt.executeQuery ();
+            try{
+               while (rs.next ()){
+                  inserted.add (rs.getInt (1));
+               }//end while
+            }finally{
+               rs.close ();
+            }//end try
+         }catch (SQLException e){
+            // some row was refused: undo the batch and find it row by row.
+            savepoint.execute ("ROLLBACK TO SAVEPOINT import_batch");
+            inserted = null;
+         }//end try
+         PreparedStatement single = inserted == null ? conn.prepare (Queries.IMPORT_BOOKING) : null;
+         for (int i = 0; i < batch.size (); ++i){
+            Row row = batch.get (i);
+            String error = null;
+            int count;
+            if (inserted != null){
+               count = inserted.contains (row.bID) ? 1 : 0;
+            }else{
+               savepoint.execute ("SAVEPOINT import_row");
+               try{
+                  bind (single, row);
+                  count = single.executeUpdate ();
+                  savepoint.execute ("RELEASE SAVEPOINT import_row");
+               }catch (SQLException e){
+                  savepoint.execute ("ROLLBACK TO SAVEPOINT import_row");
+                  // a booking committed by another client after the
+                  // NOT EXISTS check trips the unique key instead.
+                  count = DBProject.isDuplicate (e) ? 0 : -1;
+                  error = count == 0 ? null : String.valueOf (e.getMessage ()).replace ('\n', ' ');
+               }//end try
+            }//end if
+            if (count == 0){
+               error = "room " + row.roomNo + " of hotel " + row.hotelID + " is already booked on " + row.date;
+            }//end if
+            if (error == null){
+               uncommitted.add (row);
+            }else{
+               seen.remove (slot (row));
+               reject (rejects, summary, row, error);
+            }//end if
+         }//end for
+         savepoint.execute ("RELEASE SAVEPOINT import_batch");
+      }finally{
+         savepoint.close ();
+         this._esql.getStats ().since (name, start);
+      }//end try
+      batch.clear ();
+   }//end send
+
+   /*
+    * Queries.IMPORT_BOOKING for a number of rows at once: inserts the rows
+    * whose room is free that day and returns their bIDs.  The rows of one
+    * batch never share a room and day (see run()), so checking each against
+    * the bookings before the statement is enough.
+    **/
+   static String importSql (int rows) {
+      StringBuilder sql = new StringBuilder (
+         "INSERT INTO Booking (bID, customer, hotelID, roomNo, bookingDate, noOfPeople, price) " +
+         "SELECT V.bID, V.customer, V.hotelID, V.roomNo, V.bookingDate, V.noOfPeople, V.price FROM (VALUES ");
+      for (int r = 0; r < rows; ++r){
+         sql.append (r == 0 ? "" : ", ")
+            .append ("(?::numeric, ?::numeric, ?::numeric, ?::numeric, ?::date, ?::numeric, ?::numeric)");
+      }//end for
+      sql.append (") AS V (bID, customer, hotelID, roomNo, bookingDate, noOfPeople, price) " +
+                  "WHERE NOT EXISTS (SELECT 1 FROM Booking B WHERE B.hotelID = V.hotelID " +
+                  "AND B.roomNo = V.roomNo AND B.bookingDate = V.bookingDate) RETURNING bID");
+      return sql.toString ();
+   }//end importSql
+
+   /*
+    * Commits the transaction and publishes its bookings to the in-memory
+    * indexes and the result cache.
+    **/
+   private void commit (Connection c, List<Row> uncommitted, Summary summary) throws SQLException {
+      c.commit ();
+      this._esql.getCache ().invalidate (Queries.IMPORT_BOOKING);
+      for (Row row : uncommitted){
+         int day = DBProject.epochDay (row.date);
+         long cents = DBProject.cents (row.price);
+         this._esql.getAvailability ().onBooking (row.hotelID, row.roomNo, day);
+         this._esql.getPrices ().onBooking (row.bID, row.hotelID, row.roomNo, day, cents);
+         this._esql.getSpend ().onBooking (row.customer, row.hotelID, day, cents);
+      }//end for
+      summary.inserted += uncommitted.size ();
+      uncommitted.clear ();
+   }//end commit
+
+   private static void bind (PreparedStatement stmt, Row row) throws SQLException {
+      DBProject.bind (stmt, new Object[] { row.bID, row.customer, row.hotelID, row.roomNo, row.date,
+                                           row.people, row.price, row.hotelID, row.roomNo, row.date });
+   }//end bind
+
+   private static void reject (Writer rejects, Summary summary, Row row, String reason) throws IOException {
+      ++summary.rejected;
+      rejects.write ("line " + row.line + ": " + reason + ": " + row.text + "\n");
+   }//end reject
+
+   /*
+    * A key for a room on a day.
+    **/
+   private static String slot (Row row) {
+      return row.hotelID + "/" + row.roomNo + "/" + DBProject.epochDay (row.date);
+   }//end slot
+
+}//end BulkBookingImport
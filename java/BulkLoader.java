@@ -0,0 +1,417 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads data/*.csv into the tables created by sql/create.sql from the
+ * client side, so the CSV files no longer have to be copied into the
+ * server's data directory.
+ *
+ * Tables are loaded in foreign-key order, one level at a time, with the
+ * tables of a level loaded in parallel on separate connections.  Keys are
+ * not in place yet while loading: constraints.sql (primary keys, the hotel
+ * manager back-fill and foreign keys) and then indexes.sql are run once the
+ * data is in, followed by ANALYZE.
+ *
+ * Each file is streamed, never held in memory.  With a driver that
+ * provides the COPY API (org.postgresql.copy.CopyManager, PostgreSQL JDBC
+ * 8.4 and later) the file is sent through COPY ... FROM STDIN; otherwise it
+ * is inserted with multi-row INSERT statements of dbproject.load.rows rows
+ * (default 500), committed every dbproject.load.batch rows (default 5000).
+ *
+ * Usage: java BulkLoader &lt;dbname&gt; &lt;port&gt; &lt;user&gt; &lt;data dir&gt; &lt;constraints.sql&gt; [&lt;indexes.sql&gt;]
+ *
+ */
+public class BulkLoader {
+
+   /**
+    * A table, the CSV file holding it and the columns in file order, each
+    * given as its name and SQL type.
+    */
+   static class Table {
+      final String name;
+      final String file;
+      final String[] columns;
+      final String[] types;
+
+      Table (String name, String file, String... columns) {
+         this.name = name;
+         this.file = file;
+         this.columns = new String[columns.length];
+         this.types = new String[columns.length];
+         for (int i = 0; i < columns.length; ++i){
+            String[] parts = columns[i].split (" ");
+            this.columns[i] = parts[0];
+            this.types[i] = parts[1];
+         }//end for
+      }//end Table
+   }//end Table
+
+   // tables grouped by foreign-key level: a table only references tables
+   // of earlier levels (the Hotel.manager cycle is resolved by constraints.sql).
+   static final Table[][] LEVELS = {
+      { new Table ("Hotel", "hotel.csv", "hotelID numeric", "address text", "manager numeric"),
+        new Table ("Customer", "customer.csv", "customerID numeric", "fName text", "lName text", "Address text",
+                   "phNo numeric", "DOB date", "gender GenderType"),
+        new Table ("MaintenanceCompany", "maintenanceCompany.csv", "cmpID numeric", "name text", "address text",
+                   "isCertified boolean") },
+      { new Table ("Staff", "staff.csv", "SSN numeric", "fName text", "lName text", "address text", "role StaffRole",
+                   "employerID numeric"),
+        new Table ("Room", "room.csv", "hotelID numeric", "roomNo numeric", "roomType text") },
+      { new Table ("Booking", "booking.csv", "bID numeric", "customer numeric", "hotelID numeric", "roomNo numeric",
+                   "bookingDate date", "noOfPeople numeric", "price numeric"),
+        new Table ("Repair", "repair.csv", "rID numeric", "hotelID numeric", "roomNo numeric", "mCompany numeric",
+                   "repairDate date", "description text", "repairType text"),
+        new Table ("Assigned", "assigned.csv", "asgID numeric", "staffID numeric", "hotelID numeric", "roomNo numeric") },
+      { new Table ("Request", "request.csv", "reqID numeric", "managerID numeric", "repairID numeric",
+                   "requestDate date", "description text") },
+   };
+
+   private static final int BATCH = Integer.getInteger ("dbproject.load.batch", 5000);
+   private static final int ROWS = Integer.getInteger ("dbproject.load.rows", 500);
+
+   private final ConnectionPool _pool;
+   private final File _dataDir;
+
+   public BulkLoader (ConnectionPool pool, File dataDir) {
+      this._pool = pool;
+      this._dataDir = dataDir;
+   }//end BulkLoader
+
+   public static void main (String[] args) throws Exception {
+      if (args.length < 5 || args.length > 6){
+         System.err.println ("Usage: java BulkLoader <dbname> <port> <user> <data dir> <constraints.sql> [<indexes.sql>]");
+         return;
+      }//end if
+      Class.forName ("org.postgresql.Driver");
+      String url = "jdbc:postgresql://localhost:" + args[1] + "/" + args[0];
+      ConnectionPool pool = new ConnectionPool (url, args[2], "", width (), 1, 60000L, 30000L);
+      try{
+         BulkLoader loader = new BulkLoader (pool, new File (args[3]));
+         long t0 = System.nanoTime ();
+         loader.loadAll ();
+         loader.runScript (new File (args[4]));
+         if (args.length == 6){
+            loader.runScript (new File (args[5]));
+         }//end if
+         loader.analyze ();
+         System.out.printf ("Done in %.1f s%n", (System.nanoTime () - t0) / 1e9);
+      }finally{
+         pool.close ();
+      }//end try
+   }//end main
+
+   /**
+    * Loads every table, level by level, with the tables of a level in
+    * parallel.
+    *
+    * @throws java.lang.Exception when a table fails to load
+    */
+   public void loadAll () throws Exception {
+      ExecutorService workers = Executors.newFixedThreadPool (width ());
+      try{
+         for (Table[] level : LEVELS){
+            List<Future<Long>> pending = new ArrayList<Future<Long>> ();
+            for (final Table table : level){
+               pending.add (workers.submit (new Callable<Long> () {
+                  public Long call () throws Exception {
+                     return load (table);
+                  }
+               }));
+            }//end for
+            // wait for the whole level before starting tables that reference it.
+            for (Future<Long> result : pending){
+               result.get ();
+            }//end for
+         }//end for
+      }finally{
+         workers.shutdown ();
+      }//end try
+   }//end loadAll
+
+   /**
+    * Streams one CSV file into its table.
+    *
+    * @param table the table to load
+    * @return the number of rows loaded
+    * @throws java.lang.Exception when the file cannot be read or loaded
+    */
+   long load (Table table) throws Exception {
+      File file = new File (this._dataDir, table.file);
+      long t0 = System.nanoTime ();
+      long rows;
+      PooledConnection conn = this._pool.borrow ();
+      try{
+         Connection c = conn.getConnection ();
+         Statement stmt = c.createStatement ();
+         try{
+            // the load is redone from scratch on failure, so skip the WAL flush per commit.
+            stmt.execute ("SET synchronous_commit TO OFF");
+         }catch (SQLException e){
+            // older servers; not essential.
+         }finally{
+            stmt.close ();
+         }//end try
+         Reader in = new BufferedReader (new InputStreamReader (new FileInputStream (file), "UTF-8"), 1 << 16);
+         try{
+            Object copyManager = copyManager (c);
+            rows = copyManager != null
+               ? copy (copyManager, table, in)
+               : insertBatches (c, table, in);
+         }finally{
+            in.close ();
+         }//end try
+      }finally{
+         this._pool.release (conn);
+      }//end try
+      System.out.printf ("%-20s %10d rows %8.1f s%n", table.name, rows, (System.nanoTime () - t0) / 1e9);
+      return rows;
+   }//end load
+
+   /*
+    * Returns a CopyManager for the connection, or null when the driver on
+    * the classpath does not support the COPY protocol.
+    **/
+   private static Object copyManager (Connection c) {
+      try{
+         Class<?> base = Class.forName ("org.postgresql.core.BaseConnection");
+         if (!base.isInstance (c)){
+            return null;
+         }//end if
+         Constructor<?> ctor = Class.forName ("org.postgresql.copy.CopyManager").getConstructor (base);
+         return ctor.newInstance (c);
+      }catch (Exception e){
+         return null;
+      }//end try
+   }//end copyManager
+
+   private static long copy (Object copyManager, Table table, Reader in) throws Exception {
+      Method copyIn = copyManager.getClass ().getMethod ("copyIn", String.class, Reader.class);
+      String sql = "COPY " + table.name + "(" + join (table.columns) + ") FROM STDIN WITH DELIMITER ','";
+      return ((Long) copyIn.invoke (copyManager, sql, in)).longValue ();
+   }//end copy
+
+   /*
+    * Fallback for drivers without the COPY API, which is the only path with
+    * the shipped pg73 driver: parses the file line by line and inserts it
+    * with multi-row INSERT ... VALUES statements of dbproject.load.rows rows,
+    * committed every dbproject.load.batch rows.  pg73 sends every row of a
+    * JDBC batch as its own statement, so this is what keeps the load at
+    * one round trip per few hundred rows instead of one per row.  The
+    * values are bound as strings and cast to the column types in the SQL,
+    * so the server converts them exactly as COPY would, with \N standing
+    * for NULL.  (The shipped pg73 driver cannot bind a String as
+    * Types.OTHER: it expects a PGobject there.)
+    **/
+   private static long insertBatches (Connection c, Table table, Reader in) throws IOException, SQLException {
+      BufferedReader lines = (BufferedReader) in;
+      int n = table.columns.length;
+      // the values of the rows not sent yet, row after row.
+      String[] values = new String[ROWS * n];
+      boolean autoCommit = c.getAutoCommit ();
+      c.setAutoCommit (false);
+      PreparedStatement stmt = c.prepareStatement (insertSql (table, ROWS));
+      long rows = 0;
+      try{
+         String line;
+         int pending = 0;
+         long uncommitted = 0;
+         while ((line = lines.readLine ()) != null){
+            if (line.length () == 0){
+               continue;
+            }//end if
+            int start = 0;
+            for (int i = 0; i < n; ++i){
+               int end = (i == n - 1) ? line.length () : line.indexOf (',', start);
+               if (end < 0){
+                  throw new SQLException (table.file + " line " + (rows + 1) + ": expected " + n + " fields");
+               }//end if
+               String value = line.substring (start, end);
+               values[pending * n + i] = value.equals ("\\N") ? null : value;
+               start = end + 1;
+            }//end for
+            ++rows;
+            if (++pending == ROWS){
+               insert (stmt, values, pending * n);
+               pending = 0;
+               uncommitted += ROWS;
+               if (uncommitted >= BATCH){
+                  c.commit ();
+                  uncommitted = 0;
+               }//end if
+            }//end if
+         }//end while
+         if (pending > 0){
+            PreparedStatement tail = c.prepareStatement (insertSql (table, pending));
+            try{
+               insert (tail, values, pending * n);
+            }finally{
+               tail.close ();
+            }//end try
+         }//end if
+         c.commit ();
+      }catch (SQLException e){
+         c.rollback ();
+         throw e;
+      }finally{
+         stmt.close ();
+         c.setAutoCommit (autoCommit);
+      }//end try
+      return rows;
+   }//end insertBatches
+
+   /*
+    * INSERT INTO table(columns) VALUES (?::type, ...), ... for a number of rows.
+    **/
+   static String insertSql (Table table, int rows) {
+      StringBuilder row = new StringBuilder ("(");
+      for (int i = 0; i < table.columns.length; ++i){
+         row.append (i == 0 ? "?::" : ", ?::").append (table.types[i]);
+      }//end for
+      row.append (")");
+      StringBuilder sql = new StringBuilder ("INSERT INTO ").append (table.name)
+         .append ("(").append (join (table.columns)).append (") VALUES ");
+      for (int r = 0; r < rows; ++r){
+         sql.append (r == 0 ? "" : ", ").append (row);
+      }//end for
+      return sql.toString ();
+   }//end insertSql
+
+   private static void insert (PreparedStatement stmt, String[] values, int count) throws SQLException {
+      for (int i = 0; i < count; ++i){
+         if (values[i] == null){
+            stmt.setNull (i + 1, Types.VARCHAR);
+         }else{
+            stmt.setString (i + 1, values[i]);
+         }//end if
+      }//end for
+      stmt.executeUpdate ();
+   }//end insert
+
+   /**
+    * Runs every statement of a SQL script file, in order.
+    *
+    * @param script the script; statements end with ; and -- starts a comment
+    * @throws java.lang.Exception when the file cannot be read or a statement fails
+    */
+   public void runScript (File script) throws Exception {
+      long t0 = System.nanoTime ();
+      PooledConnection conn = this._pool.borrow ();
+      try{
+         Statement stmt = conn.getConnection ().createStatement ();
+         try{
+            for (String sql : readStatements (script)){
+               stmt.execute (sql);
+            }//end for
+         }finally{
+            stmt.close ();
+         }//end try
+      }finally{
+         this._pool.release (conn);
+      }//end try
+      System.out.printf ("%-20s %24.1f s%n", script.getName (), (System.nanoTime () - t0) / 1e9);
+   }//end runScript
+
+   /**
+    * Refreshes the planner statistics of every loaded table.
+    *
+    * @throws java.sql.SQLException when ANALYZE fails
+    */
+   public void analyze () throws SQLException {
+      PooledConnection conn = this._pool.borrow ();
+      try{
+         Statement stmt = conn.getConnection ().createStatement ();
+         try{
+            for (Table[] level : LEVELS){
+               for (Table table : level){
+                  stmt.execute ("ANALYZE " + table.name);
+               }//end for
+            }//end for
+         }finally{
+            stmt.close ();
+         }//end try
+      }finally{
+         this._pool.release (conn);
+      }//end try
+   }//end analyze
+
+   /**
+    * Splits a SQL script into statements, dropping -- comments.
+    *
+    * @param script the script file
+    * @return the statements without their trailing ;
+    * @throws java.io.IOException when the file cannot be read
+    */
+   static List<String> readStatements (File script) throws IOException {
+      List<String> statements = new ArrayList<String> ();
+      StringBuilder current = new StringBuilder ();
+      BufferedReader in = new BufferedReader (new FileReader (script));
+      try{
+         String line;
+         while ((line = in.readLine ()) != null){
+            int comment = line.indexOf ("--");
+            if (comment >= 0){
+               line = line.substring (0, comment);
+            }//end if
+            int semi;
+            while ((semi = line.indexOf (';')) >= 0){
+               current.append (line, 0, semi);
+               String sql = current.toString ().trim ();
+               if (sql.length () > 0){
+                  statements.add (sql);
+               }//end if
+               current.setLength (0);
+               line = line.substring (semi + 1);
+            }//end while
+            current.append (line).append ('\n');
+         }//end while
+      }finally{
+         in.close ();
+      }//end try
+      String sql = current.toString ().trim ();
+      if (sql.length () > 0){
+         statements.add (sql);
+      }//end if
+      return statements;
+   }//end readStatements
+
+   /**
+    * @return the largest number of tables loaded at the same time
+    */
+   static int width () {
+      int width = 0;
+      for (Table[] level : LEVELS){
+         width = Math.max (width, level.length);
+      }//end for
+      return width;
+   }//end width
+
+   private static String join (String[] columns) {
+      StringBuilder out = new StringBuilder ();
+      for (String column : columns){
+         if (out.length () > 0){
+            out.append (", ");
+         }//end if
+         out.append (column);
+      }//end for
+      return out.toString ();
+   }//end join
+
+}//end BulkLoader
@@ -0,0 +1,146 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Base of the result sinks that export to a file.  Text is encoded
+ * straight into one large direct buffer, which is written to the file's
+ * channel when it fills and at the end of every result, so a result of
+ * millions of rows costs a write call per buffer rather than per cell and
+ * allocates nothing per cell.  The buffer size is dbproject.sink.buffer
+ * bytes (default 1 MB).
+ *
+ * A sink appends every result it is given to the same file; close() must
+ * be called after the last one.
+ *
+ */
+public abstract class ChannelSink implements ResultSink, Closeable {
+
+   private final FileOutputStream _file;
+   private final FileChannel _channel;
+   private final ByteBuffer _buffer;
+
+   /**
+    * Opens a file for writing, replacing its contents.
+    *
+    * @param file the file receiving the results
+    * @throws java.io.IOException when the file cannot be created
+    */
+   protected ChannelSink (File file) throws IOException {
+      this._file = new FileOutputStream (file);
+      this._channel = this._file.getChannel ();
+      this._buffer = ByteBuffer.allocateDirect (Math.max (64, Integer.getInteger ("dbproject.sink.buffer", 1 << 20)));
+   }//end ChannelSink
+
+   /**
+    * Writes what is buffered to the file.
+    *
+    * @throws java.io.IOException when the file cannot be written
+    */
+   public void flush () throws IOException {
+      this._buffer.flip ();
+      while (this._buffer.hasRemaining ()){
+         this._channel.write (this._buffer);
+      }//end while
+      this._buffer.clear ();
+   }//end flush
+
+   public void end (int rows) throws IOException {
+      flush ();
+   }//end end
+
+   /**
+    * Flushes the buffer and closes the file.
+    *
+    * @throws java.io.IOException when the file cannot be written
+    */
+   public void close () throws IOException {
+      try{
+         flush ();
+      }finally{
+         this._file.close ();
+      }//end try
+   }//end close
+
+   protected final void put (byte b) throws IOException {
+      if (!this._buffer.hasRemaining ()){
+         flush ();
+      }//end if
+      this._buffer.put (b);
+   }//end put
+
+   protected final void put (char ascii) throws IOException {
+      put ((byte) ascii);
+   }//end put
+
+   /**
+    * Appends a number as an unsigned LEB128 varint: seven bits per byte,
+    * low bits first, the high bit set on every byte but the last.
+    */
+   protected final void putVarint (long value) throws IOException {
+      while ((value & ~0x7fL) != 0){
+         put ((byte) ((value & 0x7f) | 0x80));
+         value >>>= 7;
+      }//end while
+      put ((byte) value);
+   }//end putVarint
+
+   /**
+    * Appends the UTF-8 encoding of a string.
+    */
+   protected final void putUtf8 (String s) throws IOException {
+      for (int i = 0, n = s.length (); i < n; ++i){
+         char c = s.charAt (i);
+         if (this._buffer.remaining () < 4){
+            flush ();
+         }//end if
+         if (c < 0x80){
+            this._buffer.put ((byte) c);
+         }else if (c < 0x800){
+            this._buffer.put ((byte) (0xc0 | (c >> 6)));
+            this._buffer.put ((byte) (0x80 | (c & 0x3f)));
+         }else if (Character.isHighSurrogate (c) && i + 1 < n && Character.isLowSurrogate (s.charAt (i + 1))){
+            int cp = Character.toCodePoint (c, s.charAt (++i));
+            this._buffer.put ((byte) (0xf0 | (cp >> 18)));
+            this._buffer.put ((byte) (0x80 | ((cp >> 12) & 0x3f)));
+            this._buffer.put ((byte) (0x80 | ((cp >> 6) & 0x3f)));
+            this._buffer.put ((byte) (0x80 | (cp & 0x3f)));
+         }else if (Character.isSurrogate (c)){
+            // half of a pair, not a character of its own.
+            this._buffer.put ((byte) '?');
+         }else{
+            this._buffer.put ((byte) (0xe0 | (c >> 12)));
+            this._buffer.put ((byte) (0x80 | ((c >> 6) & 0x3f)));
+            this._buffer.put ((byte) (0x80 | (c & 0x3f)));
+         }//end if
+      }//end for
+   }//end putUtf8
+
+   /**
+    * @return the length of the UTF-8 encoding of a string, as putUtf8
+    *         writes it
+    */
+   protected static int utf8Length (String s) {
+      int length = 0;
+      for (int i = 0, n = s.length (); i < n; ++i){
+         char c = s.charAt (i);
+         if (c < 0x80){
+            length += 1;
+         }else if (c < 0x800){
+            length += 2;
+         }else if (Character.isHighSurrogate (c) && i + 1 < n && Character.isLowSurrogate (s.charAt (i + 1))){
+            length += 4;
+            ++i;
+         }else if (Character.isSurrogate (c)){
+            length += 1;
+         }else{
+            length += 3;
+         }//end if
+      }//end for
+      return length;
+   }//end utf8Length
+
+}//end ChannelSink
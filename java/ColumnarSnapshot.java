@@ -0,0 +1,510 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a table to a columnar snapshot file that SnapshotReader maps into
+ * memory, so history can be analysed offline instead of against the live
+ * database.  Each column is stored contiguously as fixed-width little
+ * endian primitives: ids and counts as 32-bit ints, dates as 32-bit epoch
+ * days, prices as 64-bit cents, and text as 32-bit codes into a
+ * dictionary of the column's distinct values.  A file holds
+ * <pre>
+ *    header      int magic "DBPC", int version, int rows, int columns
+ *    directory   per column: 16 bytes of ASCII name, int type,
+ *                int dictionary size, long data offset,
+ *                long dictionary offset, long dictionary length
+ *    data        per column, 8-byte aligned: rows ints or longs
+ *    dictionary  per text column: int length and UTF-8 bytes per value,
+ *                in code order
+ * </pre>
+ * SQL NULL is Integer.MIN_VALUE in a numeric column and code -1 in a text
+ * column.
+ *
+ * Rows are appended column by column and spooled to one temporary file per
+ * column through a direct buffer, so the writer's memory does not grow
+ * with the table; close() assembles the snapshot from them.
+ *
+ * Usage: java ColumnarSnapshot &lt;dbname&gt; &lt;port&gt; &lt;user&gt; &lt;output dir&gt;
+ *    or: java ColumnarSnapshot --csv &lt;data dir&gt; &lt;output dir&gt;
+ * writes booking.col and repair.col from the database or from the CSV
+ * files of data/ or DataGenerator.
+ *
+ */
+public class ColumnarSnapshot implements Closeable {
+
+   static final int MAGIC = 0x43504244;
+   static final int VERSION = 1;
+
+   // column types.
+   static final int INT = 0;
+   static final int LONG = 1;
+   static final int TEXT = 2;
+
+   static final int NULL = Integer.MIN_VALUE;
+
+   static final int HEADER_BYTES = 16;
+   static final int ENTRY_BYTES = 48;
+   static final int NAME_BYTES = 16;
+
+   static final Charset UTF8 = Charset.forName ("UTF-8");
+
+   // rows per round trip when exporting from the database.
+   static final int FETCH = 10000;
+
+   static final String[] BOOKING_COLUMNS = { "bid", "customer", "hotelid", "roomno", "bookingdate", "noofpeople", "price" };
+   static final int[] BOOKING_TYPES = { INT, INT, INT, INT, INT, INT, LONG };
+   static final String[] REPAIR_COLUMNS = { "rid", "hotelid", "roomno", "mcompany", "repairdate", "description", "repairtype" };
+   static final int[] REPAIR_TYPES = { INT, INT, INT, INT, INT, TEXT, TEXT };
+
+   private static final String BOOKINGS =
+      "SELECT bID, customer, hotelID, roomNo, bookingDate, noOfPeople, price FROM Booking";
+   private static final String REPAIRS =
+      "SELECT rID, hotelID, roomNo, mCompany, repairDate, description, repairType FROM Repair";
+
+   /**
+    * One column being written, spooled to a temporary file.
+    */
+   private static final class Spool {
+      final File file;
+      final RandomAccessFile raf;
+      final FileChannel channel;
+      final ByteBuffer buffer = ByteBuffer.allocateDirect (1 << 18).order (ByteOrder.LITTLE_ENDIAN);
+      long values = 0;
+      // text columns: value -> code, and the values in code order.
+      final Map<String, Integer> codes;
+      final List<String> dictionary;
+
+      Spool (File dir, boolean text) throws IOException {
+         this.file = File.createTempFile ("column", ".tmp", dir);
+         this.raf = new RandomAccessFile (this.file, "rw");
+         this.channel = this.raf.getChannel ();
+         this.codes = text ? new HashMap<String, Integer> () : null;
+         this.dictionary = text ? new ArrayList<String> () : null;
+      }//end Spool
+
+      ByteBuffer room (int bytes) throws IOException {
+         if (this.buffer.remaining () < bytes){
+            flush ();
+         }//end if
+         ++this.values;
+         return this.buffer;
+      }//end room
+
+      void flush () throws IOException {
+         this.buffer.flip ();
+         while (this.buffer.hasRemaining ()){
+            this.channel.write (this.buffer);
+         }//end while
+         this.buffer.clear ();
+      }//end flush
+
+      void delete () {
+         try{
+            this.raf.close ();
+         }catch (IOException e){
+            // ignored, the file goes anyway.
+         }//end try
+         this.file.delete ();
+      }//end delete
+   }//end Spool
+
+   private final File _file;
+   private final String[] _names;
+   private final int[] _types;
+   private final Spool[] _spools;
+   private int _rows = 0;
+   private boolean _closed = false;
+
+   /**
+    * Starts a snapshot.
+    *
+    * @param file the snapshot file, replaced by close()
+    * @param names the column names, at most 16 ASCII characters each
+    * @param types the column types, INT, LONG or TEXT
+    * @throws java.io.IOException when the spool files cannot be created
+    */
+   public ColumnarSnapshot (File file, String[] names, int[] types) throws IOException {
+      if (names.length != types.length){
+         throw new IllegalArgumentException ("A type is needed for every column");
+      }//end if
+      for (String name : names){
+         if (name.length () > NAME_BYTES){
+            throw new IllegalArgumentException ("Column name longer than " + NAME_BYTES + ": " + name);
+         }//end if
+      }//end for
+      this._file = file;
+      this._names = names.clone ();
+      this._types = types.clone ();
+      this._spools = new Spool[names.length];
+      File dir = file.getAbsoluteFile ().getParentFile ();
+      try{
+         for (int i = 0; i < names.length; ++i){
+            this._spools[i] = new Spool (dir, types[i] == TEXT);
+         }//end for
+      }catch (IOException e){
+         discard ();
+         throw e;
+      }//end try
+   }//end ColumnarSnapshot
+
+   public static void main (String[] args) throws Exception {
+      if (args.length == 3 && args[0].equals ("--csv")){
+         File data = new File (args[1]);
+         File out = outputDir (args[2]);
+         System.out.println ("booking.col: " + fromCsv (new File (data, "booking.csv"), new File (out, "booking.col"),
+                                                        BOOKING_COLUMNS, BOOKING_TYPES) + " rows");
+         System.out.println ("repair.col: " + fromCsv (new File (data, "repair.csv"), new File (out, "repair.col"),
+                                                       REPAIR_COLUMNS, REPAIR_TYPES) + " rows");
+         return;
+      }//end if
+      if (args.length != 4){
+         System.err.println ("Usage: java ColumnarSnapshot <dbname> <port> <user> <output dir>");
+         System.err.println ("   or: java ColumnarSnapshot --csv <data dir> <output dir>");
+         return;
+      }//end if
+      Class.forName ("org.postgresql.Driver");
+      String url = "jdbc:postgresql://localhost:" + args[1] + "/" + args[0];
+      ConnectionPool pool = new ConnectionPool (url, args[2], "", 1, 1, 60000L, 30000L);
+      try{
+         PooledConnection conn = pool.borrow ();
+         try{
+            File out = outputDir (args[3]);
+            System.out.println ("booking.col: " + fromQuery (conn.getConnection (), BOOKINGS, new File (out, "booking.col"),
+                                                             BOOKING_COLUMNS, BOOKING_TYPES) + " rows");
+            System.out.println ("repair.col: " + fromQuery (conn.getConnection (), REPAIRS, new File (out, "repair.col"),
+                                                            REPAIR_COLUMNS, REPAIR_TYPES) + " rows");
+         }finally{
+            pool.release (conn);
+         }//end try
+      }finally{
+         pool.close ();
+      }//end try
+   }//end main
+
+   /*
+    * The output directory, created when missing.
+    **/
+   private static File outputDir (String name) throws IOException {
+      File dir = new File (name);
+      if (!dir.isDirectory () && !dir.mkdirs ()){
+         throw new IOException ("Unable to create " + dir);
+      }//end if
+      return dir;
+   }//end outputDir
+
+   /**
+    * Writes the result of a query to a snapshot, reading it through a
+    * server-side cursor FETCH rows at a time: the driver's when it supports
+    * a fetch size, else one declared in SQL (see DBProject.streamCursor).
+    * The columns of the query are taken in order:
+    * INT columns from integers or dates, LONG columns from prices in
+    * cents, TEXT columns from strings.
+    *
+    * @return the number of rows written
+    * @throws java.sql.SQLException when the query fails
+    * @throws java.io.IOException when the snapshot cannot be written
+    */
+   static int fromQuery (Connection c, String query, File file, String[] names, int[] types)
+      throws SQLException, IOException {
+      ColumnarSnapshot snapshot = new ColumnarSnapshot (file, names, types);
+      boolean autoCommit = c.getAutoCommit ();
+      c.setAutoCommit (false);
+      Statement stmt = c.createStatement ();
+      try{
+         if (DBProject.fetchInChunks (stmt, FETCH)){
+            ResultSet rs = stmt.executeQuery (query);
+            try{
+               copyRows (rs, snapshot, types);
+            }finally{
+               rs.close ();
+            }//end try
+         }else{
+            stmt.execute (DBProject.declareCursor (query));
+            int fetched;
+            do{
+               ResultSet rs = stmt.executeQuery (DBProject.fetchCursor (FETCH));
+               try{
+                  fetched = copyRows (rs, snapshot, types);
+               }finally{
+                  rs.close ();
+               }//end try
+            }while (fetched == FETCH);
+            stmt.execute (DBProject.closeCursor ());
+         }//end if
+         c.commit ();
+         snapshot.close ();
+         return snapshot.rows ();
+      }finally{
+         stmt.close ();
+         if (!snapshot._closed){
+            c.rollback ();
+            snapshot.discard ();
+         }//end if
+         c.setAutoCommit (autoCommit);
+      }//end try
+   }//end fromQuery
+
+   /*
+    * Appends the rows of a result set to a snapshot.
+    * @return the number of rows appended
+    **/
+   private static int copyRows (ResultSet rs, ColumnarSnapshot snapshot, int[] types)
+      throws SQLException, IOException {
+      int dateColumn = -1;
+      for (int i = 0; i < types.length; ++i){
+         if (rs.getMetaData ().getColumnType (i + 1) == java.sql.Types.DATE){
+            dateColumn = i;
+         }//end if
+      }//end for
+      int rows = 0;
+      while (rs.next ()){
+         for (int i = 0; i < types.length; ++i){
+            if (types[i] == TEXT){
+               String value = rs.getString (i + 1);
+               snapshot.putText (i, value == null ? null : value.trim ());
+            }else if (types[i] == LONG){
+               BigDecimal price = rs.getBigDecimal (i + 1);
+               snapshot.putLong (i, price == null ? NULL : DBProject.cents (price));
+            }else if (i == dateColumn){
+               java.sql.Date date = rs.getDate (i + 1);
+               snapshot.putInt (i, date == null ? NULL : DBProject.epochDay (date));
+            }else{
+               int value = rs.getInt (i + 1);
+               snapshot.putInt (i, rs.wasNull () ? NULL : value);
+            }//end if
+         }//end for
+         snapshot.endRow ();
+         ++rows;
+      }//end while
+      return rows;
+   }//end copyRows
+
+   /**
+    * Writes a headerless CSV file in the layout of data/ to a snapshot.
+    * The one date field is the one written like m/d/yyyy or yyyy-mm-dd.
+    *
+    * @return the number of rows written
+    * @throws java.io.IOException when the file cannot be read or the
+    *         snapshot written
+    */
+   static int fromCsv (File csv, File file, String[] names, int[] types) throws IOException {
+      ColumnarSnapshot snapshot = new ColumnarSnapshot (file, names, types);
+      BufferedReader in = new BufferedReader (new FileReader (csv), 1 << 16);
+      try{
+         String line;
+         while ((line = in.readLine ()) != null){
+            if (line.length () == 0){
+               continue;
+            }//end if
+            String[] fields = line.split (",", -1);
+            for (int i = 0; i < types.length; ++i){
+               String field = i < fields.length ? fields[i].trim () : "";
+               if (types[i] == TEXT){
+                  snapshot.putText (i, field.length () == 0 ? null : field);
+               }else if (field.length () == 0){
+                  snapshot.putInt (i, NULL);
+               }else if (types[i] == LONG){
+                  snapshot.putLong (i, DBProject.cents (new BigDecimal (field)));
+               }else if (field.indexOf ('/') > 0 || field.indexOf ('-') > 0){
+                  snapshot.putInt (i, DBProject.epochDay (Params.parseDate (field)));
+               }else{
+                  snapshot.putInt (i, Integer.parseInt (field));
+               }//end if
+            }//end for
+            snapshot.endRow ();
+         }//end while
+         snapshot.close ();
+         return snapshot.rows ();
+      }finally{
+         in.close ();
+         if (!snapshot._closed){
+            snapshot.discard ();
+         }//end if
+      }//end try
+   }//end fromCsv
+
+   /**
+    * @return the rows completed so far
+    */
+   public int rows () {
+      return this._rows;
+   }//end rows
+
+   /**
+    * Appends a value to an INT column.
+    */
+   public void putInt (int column, int value) throws IOException {
+      check (column, INT);
+      this._spools[column].room (4).putInt (value);
+   }//end putInt
+
+   /**
+    * Appends a value to a LONG column.
+    */
+   public void putLong (int column, long value) throws IOException {
+      check (column, LONG);
+      this._spools[column].room (8).putLong (value);
+   }//end putLong
+
+   /**
+    * Appends a value, or null, to a TEXT column.
+    */
+   public void putText (int column, String value) throws IOException {
+      check (column, TEXT);
+      Spool spool = this._spools[column];
+      int code = -1;
+      if (value != null){
+         Integer known = spool.codes.get (value);
+         if (known == null){
+            known = spool.dictionary.size ();
+            spool.codes.put (value, known);
+            spool.dictionary.add (value);
+         }//end if
+         code = known.intValue ();
+      }//end if
+      spool.room (4).putInt (code);
+   }//end putText
+
+   /**
+    * Completes a row; every column must have been given its value.
+    */
+   public void endRow () {
+      ++this._rows;
+      for (int i = 0; i < this._spools.length; ++i){
+         if (this._spools[i].values != this._rows){
+            throw new IllegalStateException ("Row " + this._rows + " has no single value for " + this._names[i]);
+         }//end if
+      }//end for
+   }//end endRow
+
+   /**
+    * Writes the snapshot file from the completed rows and removes the
+    * spool files.
+    *
+    * @throws java.io.IOException when the file cannot be written
+    */
+   public void close () throws IOException {
+      if (this._closed){
+         return;
+      }//end if
+      try{
+         int columns = this._names.length;
+         long[] dataOffsets = new long[columns];
+         long[] dictOffsets = new long[columns];
+         long[] dictLengths = new long[columns];
+         long offset = align (HEADER_BYTES + (long) ENTRY_BYTES * columns);
+         for (int i = 0; i < columns; ++i){
+            dataOffsets[i] = offset;
+            offset = align (offset + (long) this._rows * (this._types[i] == LONG ? 8 : 4));
+         }//end for
+
+         RandomAccessFile out = new RandomAccessFile (this._file, "rw");
+         try{
+            // transferFrom writes nothing past the end of the file.
+            out.setLength (0);
+            out.setLength (offset);
+            FileChannel channel = out.getChannel ();
+            for (int i = 0; i < columns; ++i){
+               Spool spool = this._spools[i];
+               spool.flush ();
+               long length = (long) this._rows * (this._types[i] == LONG ? 8 : 4);
+               for (long done = 0; done < length; ){
+                  long moved = channel.transferFrom (spool.channel.position (done), dataOffsets[i] + done, length - done);
+                  if (moved <= 0){
+                     throw new IOException ("Unable to copy column " + this._names[i]);
+                  }//end if
+                  done += moved;
+               }//end for
+            }//end for
+            channel.position (offset);
+            for (int i = 0; i < columns; ++i){
+               if (this._types[i] != TEXT){
+                  continue;
+               }//end if
+               dictOffsets[i] = channel.position ();
+               writeDictionary (channel, this._spools[i].dictionary);
+               dictLengths[i] = channel.position () - dictOffsets[i];
+               channel.position (align (channel.position ()));
+            }//end for
+
+            ByteBuffer header = ByteBuffer.allocate (HEADER_BYTES + ENTRY_BYTES * columns).order (ByteOrder.LITTLE_ENDIAN);
+            header.putInt (MAGIC).putInt (VERSION).putInt (this._rows).putInt (columns);
+            for (int i = 0; i < columns; ++i){
+               byte[] name = this._names[i].getBytes (UTF8);
+               header.put (name).put (new byte[NAME_BYTES - name.length]);
+               header.putInt (this._types[i]);
+               header.putInt (this._types[i] == TEXT ? this._spools[i].dictionary.size () : 0);
+               header.putLong (dataOffsets[i]).putLong (dictOffsets[i]).putLong (dictLengths[i]);
+            }//end for
+            header.flip ();
+            channel.position (0);
+            while (header.hasRemaining ()){
+               channel.write (header);
+            }//end while
+         }finally{
+            out.close ();
+         }//end try
+         this._closed = true;
+      }finally{
+         discard ();
+      }//end try
+   }//end close
+
+   private void check (int column, int type) {
+      if (this._types[column] != type){
+         throw new IllegalArgumentException (this._names[column] + " is not of that type");
+      }//end if
+   }//end check
+
+   private void discard () {
+      for (Spool spool : this._spools){
+         if (spool != null){
+            spool.delete ();
+         }//end if
+      }//end for
+   }//end discard
+
+   private static void writeDictionary (FileChannel channel, List<String> values) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocateDirect (1 << 16).order (ByteOrder.LITTLE_ENDIAN);
+      for (String value : values){
+         byte[] bytes = value.getBytes (UTF8);
+         if (buffer.remaining () < 4 + bytes.length){
+            buffer.flip ();
+            while (buffer.hasRemaining ()){
+               channel.write (buffer);
+            }//end while
+            buffer.clear ();
+            if (buffer.remaining () < 4 + bytes.length){
+               buffer = ByteBuffer.allocateDirect (4 + bytes.length).order (ByteOrder.LITTLE_ENDIAN);
+            }//end if
+         }//end if
+         buffer.putInt (bytes.length).put (bytes);
+      }//end for
+      buffer.flip ();
+      while (buffer.hasRemaining ()){
+         channel.write (buffer);
+      }//end while
+   }//end writeDictionary
+
+   private static long align (long offset) {
+      return (offset + 7) & ~7L;
+   }//end align
+
+}//end ColumnarSnapshot
@@ -0,0 +1,301 @@
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of physical connections to one PostgreSQL database.
+ *
+ * The pool opens up to maxSize connections lazily, keeps minIdle of them
+ * open from the start (warm-up), and re-validates a connection before
+ * handing it out if it has been idle for longer than validateAfter
+ * milliseconds.  Callers that find the pool exhausted wait up to
+ * borrowTimeout milliseconds for a connection to be released.
+ *
+ * Defaults can be overridden with the system properties
+ * dbproject.pool.size, dbproject.pool.min, dbproject.pool.timeout,
+ * dbproject.pool.validateAfter and dbproject.pool.statements (the number of
+ * prepared statements cached per connection).
+ *
+ */
+public class ConnectionPool {
+
+   // connection parameters.
+   private final String _url;
+   private final String _user;
+   private final String _passwd;
+
+   // sizing and timing.
+   private final int _maxSize;
+   private final long _borrowTimeout;
+   private final long _validateAfter;
+   private final int _statementCacheSize = Integer.getInteger ("dbproject.pool.statements", 64);
+
+   // idle connections, most recently used first.
+   private final ArrayDeque<PooledConnection> _idle = new ArrayDeque<PooledConnection> ();
+
+   // number of connections currently open (idle + active + being opened).
+   private int _total = 0;
+   private int _active = 0;
+   private boolean _closed = false;
+
+   // metrics, guarded by this.
+   private long _borrows = 0;
+   private long _waitNanos = 0;
+   private long _maxWaitNanos = 0;
+   private long _timeouts = 0;
+   private long _created = 0;
+   private long _discarded = 0;
+   private final AtomicLong _statementHits = new AtomicLong ();
+   private final AtomicLong _statementMisses = new AtomicLong ();
+
+   /**
+    * Creates a new pool using the sizing given by the system properties.
+    *
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @throws java.sql.SQLException when the warm-up connections cannot be opened
+    */
+   public ConnectionPool (String url, String user, String passwd) throws SQLException {
+      this (url, user, passwd,
+            Integer.getInteger ("dbproject.pool.size", 8),
+            Integer.getInteger ("dbproject.pool.min", 2),
+            Long.getLong ("dbproject.pool.timeout", 30000L),
+            Long.getLong ("dbproject.pool.validateAfter", 30000L));
+   }//end ConnectionPool
+
+   /**
+    * Creates a new pool and opens minIdle connections up front.
+    *
+    * @param url the JDBC connection URL
+    * @param user the user name used to login to the database
+    * @param passwd the user login password
+    * @param maxSize the maximum number of open connections
+    * @param minIdle the number of connections opened at start-up
+    * @param borrowTimeout milliseconds to wait for a free connection
+    * @param validateAfter idle milliseconds after which a connection is re-checked
+    * @throws java.sql.SQLException when the warm-up connections cannot be opened
+    */
+   public ConnectionPool (String url, String user, String passwd, int maxSize,
+                          int minIdle, long borrowTimeout, long validateAfter) throws SQLException {
+      if (maxSize < 1){
+         throw new IllegalArgumentException ("Pool size must be at least 1");
+      }//end if
+      this._url = url;
+      this._user = user;
+      this._passwd = passwd;
+      this._maxSize = maxSize;
+      this._borrowTimeout = borrowTimeout;
+      this._validateAfter = validateAfter;
+
+      // warm-up: pay the connect cost now rather than on the first request.
+      int warm = Math.min (minIdle, maxSize);
+      try{
+         for (int i = 0; i < warm; ++i){
+            this._idle.addLast (open ());
+            ++this._total;
+         }//end for
+      }catch (SQLException e){
+         close ();
+         throw e;
+      }//end try
+   }//end ConnectionPool
+
+   /**
+    * Takes a connection out of the pool, opening a new one if the pool is
+    * not yet full, or waiting for one to be released otherwise.
+    *
+    * @return a healthy connection, to be returned with release()
+    * @throws java.sql.SQLException when no connection becomes available in time
+    */
+   public PooledConnection borrow () throws SQLException {
+      long start = System.nanoTime ();
+      long deadline = start + this._borrowTimeout * 1000000L;
+      while (true){
+         PooledConnection candidate = null;
+         boolean mayOpen = false;
+         synchronized (this){
+            while (candidate == null && !mayOpen){
+               if (this._closed){
+                  throw new SQLException ("Connection pool is closed");
+               }//end if
+               candidate = this._idle.pollFirst ();
+               if (candidate == null){
+                  if (this._total < this._maxSize){
+                     ++this._total;
+                     mayOpen = true;
+                  }else{
+                     long remaining = deadline - System.nanoTime ();
+                     if (remaining <= 0){
+                        ++this._timeouts;
+                        throw new SQLException ("Timed out waiting for a database connection");
+                     }//end if
+                     try{
+                        this.wait (Math.max (1L, remaining / 1000000L));
+                     }catch (InterruptedException e){
+                        Thread.currentThread ().interrupt ();
+                        throw new SQLException ("Interrupted waiting for a database connection");
+                     }//end try
+                  }//end if
+               }//end if
+            }//end while
+         }//end synchronized
+
+         // health checks and connects run outside the lock.
+         if (candidate != null){
+            if (candidate.idleMillis () > this._validateAfter && !candidate.isHealthy ()){
+               discard (candidate);
+               continue;
+            }//end if
+         }else{
+            try{
+               candidate = open ();
+            }catch (SQLException e){
+               synchronized (this){
+                  --this._total;
+                  this.notifyAll ();
+               }//end synchronized
+               throw e;
+            }//end try
+         }//end if
+
+         synchronized (this){
+            long waited = System.nanoTime () - start;
+            ++this._active;
+            ++this._borrows;
+            this._waitNanos += waited;
+            if (waited > this._maxWaitNanos){
+               this._maxWaitNanos = waited;
+            }//end if
+         }//end synchronized
+         return candidate;
+      }//end while
+   }//end borrow
+
+   /**
+    * Returns a borrowed connection to the pool.
+    *
+    * @param conn the connection obtained from borrow()
+    */
+   public void release (PooledConnection conn) {
+      if (conn == null){
+         return;
+      }//end if
+      boolean broken;
+      try{
+         broken = conn.getConnection ().isClosed ();
+      }catch (SQLException e){
+         broken = true;
+      }//end try
+      synchronized (this){
+         --this._active;
+         if (!broken && !this._closed){
+            conn.touch ();
+            this._idle.addFirst (conn);
+            this.notifyAll ();
+            return;
+         }//end if
+      }//end synchronized
+      discard (conn);
+   }//end release
+
+   /**
+    * Closes every idle connection and refuses further borrows.  Active
+    * connections are closed as they are released.
+    */
+   public void close () {
+      PooledConnection[] idle;
+      synchronized (this){
+         this._closed = true;
+         idle = this._idle.toArray (new PooledConnection[this._idle.size ()]);
+         this._idle.clear ();
+         this._total -= idle.length;
+         this.notifyAll ();
+      }//end synchronized
+      for (PooledConnection conn : idle){
+         conn.close ();
+      }//end for
+   }//end close
+
+   /**
+    * @return the number of connections currently handed out
+    */
+   public synchronized int getActiveCount () {
+      return this._active;
+   }//end getActiveCount
+
+   /**
+    * @return the number of open connections waiting in the pool
+    */
+   public synchronized int getIdleCount () {
+      return this._idle.size ();
+   }//end getIdleCount
+
+   /**
+    * @return the mean time, in microseconds, callers waited in borrow()
+    */
+   public synchronized double getMeanWaitMicros () {
+      return this._borrows == 0 ? 0.0 : this._waitNanos / 1000.0 / this._borrows;
+   }//end getMeanWaitMicros
+
+   /**
+    * @return the maximum number of prepared statements cached per connection
+    */
+   int getStatementCacheSize () {
+      return this._statementCacheSize;
+   }//end getStatementCacheSize
+
+   /**
+    * @return how many prepare() calls were served from a statement cache
+    */
+   public long getStatementHits () {
+      return this._statementHits.get ();
+   }//end getStatementHits
+
+   /**
+    * @return how many prepare() calls had to prepare a new statement
+    */
+   public long getStatementMisses () {
+      return this._statementMisses.get ();
+   }//end getStatementMisses
+
+   void recordStatementHit () {
+      this._statementHits.incrementAndGet ();
+   }//end recordStatementHit
+
+   void recordStatementMiss () {
+      this._statementMisses.incrementAndGet ();
+   }//end recordStatementMiss
+
+   /**
+    * @return a one-line summary of the pool metrics
+    */
+   public synchronized String stats () {
+      return String.format (
+         "pool: active=%d idle=%d open=%d max=%d borrows=%d wait(avg)=%.1fus wait(max)=%.1fus timeouts=%d created=%d discarded=%d statements(hit/miss)=%d/%d",
+         this._active, this._idle.size (), this._total, this._maxSize, this._borrows,
+         this._borrows == 0 ? 0.0 : this._waitNanos / 1000.0 / this._borrows,
+         this._maxWaitNanos / 1000.0, this._timeouts, this._created, this._discarded,
+         this._statementHits.get (), this._statementMisses.get ());
+   }//end stats
+
+   private PooledConnection open () throws SQLException {
+      PooledConnection conn = new PooledConnection (this,
+         DriverManager.getConnection (this._url, this._user, this._passwd));
+      synchronized (this){
+         ++this._created;
+      }//end synchronized
+      return conn;
+   }//end open
+
+   private void discard (PooledConnection conn) {
+      conn.close ();
+      synchronized (this){
+         --this._total;
+         ++this._discarded;
+         this.notifyAll ();
+      }//end synchronized
+   }//end discard
+
+}//end ConnectionPool
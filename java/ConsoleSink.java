@@ -0,0 +1,65 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Writes results as tab separated text, the format the menu has always
+ * printed.  Output goes through a single large buffer that is flushed once
+ * per result instead of once per cell.
+ *
+ */
+public class ConsoleSink implements ResultSink {
+
+   private final Writer _out;
+
+   /**
+    * Creates a sink writing to standard out.
+    */
+   public ConsoleSink () {
+      this (System.out);
+   }//end ConsoleSink
+
+   /**
+    * Creates a sink writing to the given stream.
+    *
+    * @param out the stream receiving the text
+    */
+   public ConsoleSink (OutputStream out) {
+      this (new BufferedWriter (new OutputStreamWriter (out), 1 << 16));
+   }//end ConsoleSink
+
+   /**
+    * Creates a sink writing to a writer the caller may also write to
+    * between results.  The writer should be buffered; it is flushed at the
+    * end of every result.
+    *
+    * @param out the writer receiving the text
+    */
+   public ConsoleSink (Writer out) {
+      this._out = out;
+   }//end ConsoleSink
+
+   public void begin (String[] columns) throws IOException {
+      for (String column : columns){
+         this._out.write (column);
+         this._out.write ('\t');
+      }//end for
+      this._out.write ('\n');
+   }//end begin
+
+   public void cell (String value) throws IOException {
+      this._out.write (String.valueOf (value));
+      this._out.write ('\t');
+   }//end cell
+
+   public void endRow () throws IOException {
+      this._out.write ('\n');
+   }//end endRow
+
+   public void end (int rows) throws IOException {
+      this._out.flush ();
+   }//end end
+
+}//end ConsoleSink
@@ -0,0 +1,69 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes results to a file as RFC 4180 comma separated values: a header
+ * line of column names, then one line per row.  Fields holding a comma, a
+ * double quote or a line break are quoted, with inner quotes doubled; SQL
+ * NULL is an empty field.  Successive results follow each other in the
+ * file, each with its own header line.
+ *
+ */
+public class CsvSink extends ChannelSink {
+
+   private boolean _first = true;
+
+   /**
+    * @param file the file receiving the results
+    * @throws java.io.IOException when the file cannot be created
+    */
+   public CsvSink (File file) throws IOException {
+      super (file);
+   }//end CsvSink
+
+   public void begin (String[] columns) throws IOException {
+      for (String column : columns){
+         cell (column);
+      }//end for
+      endRow ();
+   }//end begin
+
+   public void cell (String value) throws IOException {
+      if (!this._first){
+         put (',');
+      }//end if
+      this._first = false;
+      if (value == null){
+         return;
+      }//end if
+      if (!needsQuotes (value)){
+         putUtf8 (value);
+         return;
+      }//end if
+      put ('"');
+      int from = 0;
+      for (int quote = value.indexOf ('"'); quote >= 0; quote = value.indexOf ('"', from)){
+         putUtf8 (value.substring (from, quote + 1));
+         put ('"');
+         from = quote + 1;
+      }//end for
+      putUtf8 (from == 0 ? value : value.substring (from));
+      put ('"');
+   }//end cell
+
+   public void endRow () throws IOException {
+      put ('\n');
+      this._first = true;
+   }//end endRow
+
+   private static boolean needsQuotes (String value) {
+      for (int i = 0, n = value.length (); i < n; ++i){
+         char c = value.charAt (i);
+         if (c == ',' || c == '"' || c == '\n' || c == '\r'){
+            return true;
+         }//end if
+      }//end for
+      return false;
+   }//end needsQuotes
+
+}//end CsvSink
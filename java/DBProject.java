@@ -11,18 +11,26 @@
  */
 
 
-import java.sql.DriverManager;
 import java.sql.Connection;
 import java.sql.Statement;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.File;
 import java.io.FileReader;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.concurrent.locks.Lock;
 /**
  * This class defines a simple embedded SQL utility class that is designed to
  * work with PostgreSQL JDBC drivers.
@@ -30,8 +38,46 @@ import java.util.Date;
  */
 public class DBProject {
 
-   // reference to physical database connection.
-   private Connection _connection = null;
+   // pool of physical database connections shared by all operations.
+   private ConnectionPool _pool = null;
+
+   // hands out primary keys from the id sequences.
+   private IdAllocator _ids = null;
+
+   // in-memory room occupancy; answers options 8 and 10 once built.
+   private final AvailabilityIndex _availability;
+
+   // ranked repair counts per company; answers option 15 once built.
+   private final RepairLeaderboard _leaderboard;
+
+   // bookings by day, sorted by price; answers option 11 once built.
+   private final PriceTopK _prices;
+
+   // running spend per customer and hotel; answers option 13 once built.
+   private final SpendIndex _spend;
+
+   // results of the report queries, invalidated by writes.
+   private final ResultCache _cache;
+
+   // serializes the bookings of a room within this process.
+   private final RoomLocks _roomLocks;
+
+   // latency histograms per operation and statement.
+   private final Stats _stats;
+
+   // where query results are written.
+   private ResultSink _sink;
+
+   // rows fetched per round trip when streaming a result through a
+   // server-side cursor; 0 reads the whole result at once.
+   private int _fetchSize = Integer.getInteger ("dbproject.fetchSize", 1000);
+
+   // rows per page of the paginated listings (options 10 and 14).
+   private int _pageSize = Integer.getInteger ("dbproject.pageSize", 50);
+
+   // answers options 8 to 16 from the data files when the memory backend
+   // is selected; null otherwise.
+   private MemoryEngine _engine = null;
 
    // handling the keyboard inputs through a BufferedReader
    // This variable can be global for convenience.
@@ -48,6 +94,14 @@ public class DBProject {
     * @throws java.sql.SQLException when failed to make a connection.
     */
    public DBProject (String dbname, String dbport, String user, String passwd) throws SQLException {
+      this._availability = new AvailabilityIndex ();
+      this._leaderboard = new RepairLeaderboard ();
+      this._prices = new PriceTopK ();
+      this._spend = new SpendIndex ();
+      this._cache = new ResultCache ();
+      this._roomLocks = new RoomLocks ();
+      this._stats = new Stats ();
+      this._sink = new ConsoleSink ();
 
       System.out.print("Connecting to database...");
       try{
@@ -55,8 +109,9 @@ public class DBProject {
          String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
          System.out.println ("Connection URL: " + url + "\n");
 
-         // obtain a physical connection
-         this._connection = DriverManager.getConnection(url, user, passwd);
+         // open the connection pool; this also warms up the first connections
+         this._pool = new ConnectionPool(url, user, passwd);
+         this._ids = new IdAllocator(this._pool);
          System.out.println("Done");
       }catch (Exception e){
          System.err.println("Error - Unable to Connect to Database: " + e.getMessage() );
@@ -65,6 +120,77 @@ public class DBProject {
       }//end catch
    }//end DBProject
 
+   /**
+    * Creates an instance over an already opened pool, without the console
+    * messages of the public constructor; Bench uses it with StubDriver.
+    *
+    * @param pool the pool
+    */
+   DBProject (ConnectionPool pool) {
+      this._availability = new AvailabilityIndex ();
+      this._leaderboard = new RepairLeaderboard ();
+      this._prices = new PriceTopK ();
+      this._spend = new SpendIndex ();
+      this._cache = new ResultCache ();
+      this._roomLocks = new RoomLocks ();
+      this._stats = new Stats ();
+      this._sink = new ConsoleSink ();
+      this._pool = pool;
+      this._ids = new IdAllocator (pool);
+   }//end DBProject
+
+   /**
+    * Creates an instance without a database, answering the report options
+    * 8 to 16 from an in-memory engine.  Every other operation fails with an
+    * SQLException.
+    *
+    * @param engine the loaded engine
+    */
+   public DBProject (MemoryEngine engine) {
+      this._availability = new AvailabilityIndex ();
+      this._leaderboard = new RepairLeaderboard ();
+      this._prices = new PriceTopK ();
+      this._spend = new SpendIndex ();
+      this._cache = new ResultCache ();
+      this._roomLocks = new RoomLocks ();
+      this._stats = new Stats ();
+      this._sink = new ConsoleSink ();
+      this._engine = engine;
+   }//end DBProject
+
+   /*
+    * Creates a session sharing the connection pool, id allocator, in-memory
+    * indexes, result cache and statistics of another instance.
+    **/
+   private DBProject (DBProject shared, ResultSink sink) {
+      this._pool = shared._pool;
+      this._ids = shared._ids;
+      this._availability = shared._availability;
+      this._leaderboard = shared._leaderboard;
+      this._prices = shared._prices;
+      this._spend = shared._spend;
+      this._cache = shared._cache;
+      this._roomLocks = shared._roomLocks;
+      this._stats = shared._stats;
+      this._fetchSize = shared._fetchSize;
+      this._pageSize = shared._pageSize;
+      this._engine = shared._engine;
+      this._sink = sink;
+   }//end DBProject
+
+   /**
+    * Opens a session for one more concurrent user.  The session borrows
+    * connections from this instance's pool and reads and updates the same
+    * indexes, cache and statistics, but writes its results to its own sink.
+    * Sessions are cheap; nothing needs closing when one ends.
+    *
+    * @param sink where the session's query results are written
+    * @return the new session
+    */
+   public DBProject session (ResultSink sink) {
+      return new DBProject (this, sink);
+   }//end session
+
    /**
     * Method to execute an update SQL statement.  Update SQL instructions
     * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
@@ -73,32 +199,351 @@ public class DBProject {
     * @throws java.sql.SQLException when update failed
     */
    public void executeUpdate (String sql) throws SQLException {
-      // creates a statement object
-      Statement stmt = this._connection.createStatement ();
+      long start = System.nanoTime ();
+      // borrows a connection for the duration of the statement
+      PooledConnection conn = borrow ();
+      try{
+         // creates a statement object
+         Statement stmt = conn.getConnection ().createStatement ();
 
-      // issues the update instruction
-      stmt.executeUpdate (sql);
+         // issues the update instruction
+         stmt.executeUpdate (sql);
+         this._cache.invalidate (sql);
 
-      // close the instruction
-      stmt.close ();
+         // close the instruction
+         stmt.close ();
+      }finally{
+         this._pool.release (conn);
+         this._stats.since (Stats.sqlName (null), start);
+      }//end try
+   }//end executeUpdate
+
+   /**
+    * Method to execute a parameterized update SQL statement.  The template is
+    * prepared once per pooled connection and the parameters are bound to its
+    * ? placeholders in order.
+    *
+    * @param template the SQL template with ? placeholders
+    * @param params the values bound to the placeholders
+    * @return the number of rows affected
+    * @throws java.sql.SQLException when update failed
+    */
+   public int executeUpdate (String template, Object... params) throws SQLException {
+      String name = Stats.sqlName (template);
+      long start = System.nanoTime ();
+      PooledConnection conn = borrow ();
+      try{
+         PreparedStatement stmt = conn.prepare (template);
+         bind (stmt, params);
+         long sent = System.nanoTime ();
+         this._stats.get (name + " build").record (sent - start);
+         int rows = stmt.executeUpdate ();
+         this._stats.since (name + " db", sent);
+         this._cache.invalidate (template);
+         return rows;
+      }finally{
+         this._pool.release (conn);
+         this._stats.since (name, start);
+      }//end try
    }//end executeUpdate
 
    /**
     * Method to execute an input query SQL instruction (i.e. SELECT).  This
-    * method issues the query to the DBMS and outputs the results to
-    * standard out.
+    * method issues the query to the DBMS and streams the results to the
+    * result sink (standard out by default).
     *
     * @param query the input query string
     * @return the number of rows returned
     * @throws java.sql.SQLException when failed to execute the query
     */
    public int executeQuery (String query) throws SQLException {
+      long start = System.nanoTime ();
+      // borrows a connection for the duration of the query
+      PooledConnection conn = borrow ();
+      try{
+         return executeQuery (conn, query);
+      }finally{
+         this._pool.release (conn);
+         this._stats.since (Stats.sqlName (null), start);
+      }//end try
+   }//end executeQuery
+
+   /**
+    * Method to execute a parameterized query SQL instruction and stream the
+    * results to the result sink.  The template is prepared once per pooled
+    * connection and the parameters are bound to its ? placeholders in order.
+    *
+    * @param template the SQL template with ? placeholders
+    * @param params the values bound to the placeholders
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeQuery (String template, Object... params) throws SQLException {
+      return executeQuery (this._sink, template, params);
+   }//end executeQuery
+
+   /**
+    * Method to execute a read-only report query through the result cache.
+    * A current cached result for the same template and parameters is
+    * written to the result sink without touching the database; otherwise
+    * the query runs as in executeQuery and its result is cached.
+    *
+    * @param template the SQL template with ? placeholders
+    * @param params the values bound to the placeholders
+    * @return the number of rows returned
+    * @throws java.sql.SQLException when failed to execute the query
+    */
+   public int executeReport (String template, Object... params) throws SQLException {
+      return executeReport (this._sink, template, params);
+   }//end executeReport
+
+   private int executeReport (ResultSink sink, String template, Object... params) throws SQLException {
+      if (!this._cache.isEnabled ()){
+         return executeQuery (sink, template, params);
+      }//end if
+      try{
+         long start = System.nanoTime ();
+         int rows = this._cache.replay (template, params, sink);
+         if (rows >= 0){
+            this._stats.since (Stats.sqlName (template) + " cached", start);
+            return rows;
+         }//end if
+      }catch (IOException e){
+         throw new SQLException ("Unable to write result: " + e.getMessage ());
+      }//end try
+      return executeQuery (this._cache.record (template, params, sink), template, params);
+   }//end executeReport
+
+   private int executeQuery (ResultSink sink, String template, Object... params) throws SQLException {
+      String name = Stats.sqlName (template);
+      long start = System.nanoTime ();
+      PooledConnection conn = borrow ();
+      try{
+         PreparedStatement stmt = conn.prepare (template);
+         if (this._fetchSize > 0 && !fetchInChunks (stmt, this._fetchSize)){
+            this._stats.since (name + " build", start);
+            return streamCursor (conn, template, params, sink, name);
+         }//end if
+         bind (stmt, params);
+         this._stats.since (name + " build", start);
+         return stream (conn, stmt, null, sink, name);
+      }finally{
+         this._pool.release (conn);
+         this._stats.since (name, start);
+      }//end try
+   }//end executeQuery
+
+   private int executeQuery (PooledConnection conn, String query) throws SQLException {
       // creates a statement object
-      Statement stmt = this._connection.createStatement ();
+      Statement stmt = conn.getConnection ().createStatement ();
+      try{
+         // issues the query instruction
+         if (this._fetchSize > 0 && !fetchInChunks (stmt, this._fetchSize)){
+            return streamCursor (conn, query, new Object[0], this._sink, Stats.sqlName (null));
+         }//end if
+         return stream (conn, stmt, query, this._sink, Stats.sqlName (null));
+      }finally{
+         stmt.close ();
+      }//end try
+   }//end executeQuery
+
+   /*
+    * Borrows a pooled connection; fails on the memory backend, which has
+    * no database.
+    **/
+   private PooledConnection borrow () throws SQLException {
+      if (this._pool == null){
+         throw new SQLException ("Not available on the memory backend, which answers options 8 to 16 only");
+      }//end if
+      return this._pool.borrow ();
+   }//end borrow
+
+   /*
+    * The next id of a sequence, see IdAllocator.
+    **/
+   private int nextId (String sequence) throws SQLException {
+      if (this._ids == null){
+         throw new SQLException ("Not available on the memory backend, which answers options 8 to 16 only");
+      }//end if
+      return this._ids.next (sequence);
+   }//end nextId
+
+   /*
+    * Runs a query and streams its rows into the result sink.  When a fetch
+    * size is configured, which the driver accepted on stmt, the query runs
+    * inside a transaction, which lets the driver read it through a
+    * server-side cursor fetchSize rows at a time instead of materializing
+    * the whole result in client memory.  The round trip and the rendering
+    * are recorded under name + " db" and name + " render".
+    * @return the number of rows written
+    **/
+   private int stream (PooledConnection conn, Statement stmt, String query, ResultSink sink,
+                       String name) throws SQLException {
+      Connection c = conn.getConnection ();
+      boolean cursor = false;
+      boolean done = false;
+      try{
+         if (this._fetchSize > 0){
+            // set first, so the finally block restores autocommit.
+            cursor = true;
+            c.setAutoCommit (false);
+         }//end if
+         long sent = System.nanoTime ();
+         ResultSet rs = (query == null)
+            ? ((PreparedStatement) stmt).executeQuery ()
+            : stmt.executeQuery (query);
+         long received = System.nanoTime ();
+         this._stats.get (name + " db").record (received - sent);
+         try{
+            int rowCount = printResult (rs, sink);
+            done = true;
+            return rowCount;
+         }finally{
+            rs.close ();
+            this._stats.since (name + " render", received);
+         }//end try
+      }finally{
+         if (cursor){
+            // closes the cursor; a read-only transaction has nothing to keep.
+            try{
+               if (done){
+                  c.commit ();
+               }else{
+                  c.rollback ();
+               }//end if
+            }finally{
+               c.setAutoCommit (true);
+            }//end try
+         }//end if
+      }//end try
+   }//end stream
+
+   /*
+    * Streams a query through a cursor declared in SQL, for drivers without
+    * fetch size support: inside a transaction, DECLARE a cursor for the
+    * query with its parameters bound, FETCH fetchSize rows at a time into
+    * the sink until a fetch comes back short, then CLOSE it.  Only one
+    * chunk of rows is held in client memory at a time.  The round trips
+    * and the rendering are recorded under name + " db" and name + " render".
+    * @return the number of rows written
+    **/
+   private int streamCursor (PooledConnection conn, String query, Object[] params, ResultSink sink,
+                             String name) throws SQLException {
+      Connection c = conn.getConnection ();
+      boolean done = false;
+      long db = 0;
+      long render = 0;
+      try{
+         c.setAutoCommit (false);
+         // not through the statement cache: DECLARE cannot be server-prepared.
+         PreparedStatement declare = c.prepareStatement (declareCursor (query));
+         try{
+            bind (declare, params);
+            long sent = System.nanoTime ();
+            declare.execute ();
+            db += System.nanoTime () - sent;
+         }finally{
+            declare.close ();
+         }//end try
+         Statement fetch = c.createStatement ();
+         try{
+            int rowCount = 0;
+            int fetched;
+            do{
+               long sent = System.nanoTime ();
+               ResultSet rs = fetch.executeQuery (fetchCursor (this._fetchSize));
+               long received = System.nanoTime ();
+               db += received - sent;
+               try{
+                  fetched = printRows (rs, sink, rowCount);
+               }finally{
+                  rs.close ();
+               }//end try
+               rowCount += fetched;
+               render += System.nanoTime () - received;
+            }while (fetched == this._fetchSize);
+            fetch.execute (closeCursor ());
+            try{
+               sink.end (rowCount);
+            }catch (IOException e){
+               throw new SQLException ("Unable to write result: " + e.getMessage ());
+            }//end try
+            done = true;
+            return rowCount;
+         }finally{
+            fetch.close ();
+         }//end try
+      }finally{
+         this._stats.get (name + " db").record (db);
+         this._stats.get (name + " render").record (render);
+         try{
+            if (done){
+               c.commit ();
+            }else{
+               c.rollback ();
+            }//end if
+         }finally{
+            c.setAutoCommit (true);
+         }//end try
+      }//end try
+   }//end streamCursor
 
-      // issues the query instruction
-      ResultSet rs = stmt.executeQuery (query);
+   /**
+    * @return the statement declaring the cursor read by fetchCursor() for a query
+    */
+   static String declareCursor (String query) {
+      return "DECLARE dbproject_cursor NO SCROLL CURSOR FOR " + query;
+   }//end declareCursor
 
+   /**
+    * @return the statement fetching the next rows of the declared cursor
+    */
+   static String fetchCursor (int rows) {
+      return "FETCH FORWARD " + rows + " FROM dbproject_cursor";
+   }//end fetchCursor
+
+   /**
+    * @return the statement closing the declared cursor
+    */
+   static String closeCursor () {
+      return "CLOSE dbproject_cursor";
+   }//end closeCursor
+
+   /*
+    * Asks the driver to fetch the results of stmt rows at a time.  The
+    * pg73 driver shipped in java/ does not implement setFetchSize and
+    * throws; streamCursor() then declares the cursor in SQL instead.
+    * @return whether the driver accepted the fetch size
+    **/
+   static boolean fetchInChunks (Statement stmt, int rows) {
+      try{
+         stmt.setFetchSize (rows);
+         return true;
+      }catch (SQLException e){
+         return false;
+      }//end try
+   }//end fetchInChunks
+
+   /*
+    * Writes a result set to the result sink, preceded by the column names.
+    * @return the number of rows written
+    **/
+   private int printResult (ResultSet rs, ResultSink sink) throws SQLException {
+      int rowCount = printRows (rs, sink, 0);
+      try{
+         sink.end (rowCount);
+      }catch (IOException e){
+         throw new SQLException ("Unable to write result: " + e.getMessage ());
+      }//end try
+      return rowCount;
+   }//end printResult
+
+   /*
+    * Writes the rows of a result set to the result sink, preceded by the
+    * column names unless written rows of the same result went before.
+    * @return the number of rows written from rs
+    **/
+   private int printRows (ResultSet rs, ResultSink sink, int written) throws SQLException {
       /*
        ** obtains the metadata object for the returned result set.  The metadata
        ** contains row and column info.
@@ -107,36 +552,327 @@ public class DBProject {
       int numCol = rsmd.getColumnCount ();
       int rowCount = 0;
 
-      // iterates through the result set and output them to standard out.
-      boolean outputHeader = true;
-      while (rs.next()){
-	 if(outputHeader){
-	    for(int i = 1; i <= numCol; i++){
-		System.out.print(rsmd.getColumnName(i) + "\t");
-	    }
-	    System.out.println();
-	    outputHeader = false;
-	 }
-         for (int i=1; i<=numCol; ++i)
-            System.out.print (rs.getString (i) + "\t");
-         System.out.println ();
-         ++rowCount;
-      }//end while
-      stmt.close ();
+      // iterates through the result set and output them to the sink.
+      try{
+         boolean outputHeader = written == 0;
+         while (rs.next()){
+            if(outputHeader){
+               String[] columns = new String[numCol];
+               for(int i = 1; i <= numCol; i++){
+                  columns[i - 1] = rsmd.getColumnName(i);
+               }
+               sink.begin (columns);
+               outputHeader = false;
+            }
+            for (int i=1; i<=numCol; ++i)
+               sink.cell (rs.getString (i));
+            sink.endRow ();
+            ++rowCount;
+         }//end while
+      }catch (IOException e){
+         throw new SQLException ("Unable to write result: " + e.getMessage ());
+      }//end try
       return rowCount;
-   }//end executeQuery
+   }//end printRows
+
+   /*
+    * Binds parameters to a prepared statement using the setter matching
+    * each value's type.
+    **/
+   static void bind (PreparedStatement stmt, Object[] params) throws SQLException {
+      for (int i = 0; i < params.length; ++i){
+         Object value = params[i];
+         int index = i + 1;
+         if (value == null){
+            stmt.setNull (index, Types.NULL);
+         }else if (value instanceof Integer){
+            stmt.setInt (index, ((Integer) value).intValue ());
+         }else if (value instanceof Long){
+            stmt.setLong (index, ((Long) value).longValue ());
+         }else if (value instanceof String){
+            stmt.setString (index, (String) value);
+         }else if (value instanceof java.sql.Date){
+            stmt.setDate (index, (java.sql.Date) value);
+         }else if (value instanceof BigDecimal){
+            stmt.setBigDecimal (index, (BigDecimal) value);
+         }else if (value instanceof Double){
+            stmt.setDouble (index, ((Double) value).doubleValue ());
+         }else if (value instanceof Boolean){
+            stmt.setBoolean (index, ((Boolean) value).booleanValue ());
+         }else{
+            throw new SQLException ("Unsupported parameter type: " + value.getClass ().getName ());
+         }//end if
+      }//end for
+   }//end bind
 
    /**
-    * Method to close the physical connection if it is open.
+    * Builds a SQL date from its calendar fields.
+    *
+    * @param year the year, e.g. 2015
+    * @param month the month, 1 - 12
+    * @param day the day of the month, 1 - 31
+    * @return the date
     */
-   public void cleanup(){
+   public static java.sql.Date toDate (int year, int month, int day) {
+      Calendar cal = new GregorianCalendar (year, month - 1, day);
+      return new java.sql.Date (cal.getTimeInMillis ());
+   }//end toDate
+
+   /**
+    * Adds a number of days to a SQL date.
+    *
+    * @param date the start date
+    * @param days the number of days to add, may be negative
+    * @return the shifted date
+    */
+   public static java.sql.Date addDays (java.sql.Date date, int days) {
+      Calendar cal = new GregorianCalendar ();
+      cal.setTime (date);
+      cal.add (Calendar.DAY_OF_MONTH, days);
+      return new java.sql.Date (cal.getTimeInMillis ());
+   }//end addDays
+
+   /**
+    * Days since 1970-01-01 of a SQL date, read in the local calendar like
+    * toDate() builds it.
+    *
+    * @param date the date
+    * @return the epoch day
+    */
+   public static int epochDay (java.sql.Date date) {
+      Calendar cal = new GregorianCalendar ();
+      cal.setTime (date);
+      return epochDay (cal.get (Calendar.YEAR), cal.get (Calendar.MONTH) + 1, cal.get (Calendar.DAY_OF_MONTH));
+   }//end epochDay
+
+   /**
+    * Days since 1970-01-01 of a proleptic Gregorian calendar date.
+    *
+    * @param year the year, e.g. 2015
+    * @param month the month, 1 - 12
+    * @param day the day of the month, 1 - 31
+    * @return the epoch day
+    */
+   public static int epochDay (int year, int month, int day) {
+      int y = month <= 2 ? year - 1 : year;
+      int era = (y >= 0 ? y : y - 399) / 400;
+      int yoe = y - era * 400;
+      int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+      int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+      return era * 146097 + doe - 719468;
+   }//end epochDay
+
+   /**
+    * The SQL date of an epoch day; the inverse of epochDay().
+    *
+    * @param epochDay days since 1970-01-01
+    * @return the date
+    */
+   public static java.sql.Date fromEpochDay (int epochDay) {
+      int[] ymd = civil (epochDay);
+      return toDate (ymd[0], ymd[1], ymd[2]);
+   }//end fromEpochDay
+
+   /*
+    * The proleptic Gregorian year, month and day of a day number.
+    * @return { year, month, day }
+    **/
+   static int[] civil (int epochDay) {
+      int z = epochDay + 719468;
+      int era = (z >= 0 ? z : z - 146096) / 146097;
+      int doe = z - era * 146097;
+      int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+      int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+      int mp = (5 * doy + 2) / 153;
+      int day = doy - (153 * mp + 2) / 5 + 1;
+      int month = mp < 10 ? mp + 3 : mp - 9;
+      int year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+      return new int[] { year, month, day };
+   }//end civil
+
+   /**
+    * A price in whole cents, rounded like the Numeric(6,2) price column.
+    *
+    * @param price the price
+    * @return the price in cents
+    */
+   public static long cents (BigDecimal price) {
+      return price.setScale (2, RoundingMode.HALF_UP).unscaledValue ().longValue ();
+   }//end cents
+
+   /**
+    * Formats a price in cents the way the database prints the price column.
+    *
+    * @param cents the price in cents
+    * @return the price, e.g. "1501.00"
+    */
+   public static String fromCents (long cents) {
+      return BigDecimal.valueOf (cents, 2).toPlainString ();
+   }//end fromCents
+
+   /**
+    * @return today's date
+    */
+   public static java.sql.Date today () {
+      Calendar cal = new GregorianCalendar ();
+      return toDate (cal.get (Calendar.YEAR), cal.get (Calendar.MONTH) + 1, cal.get (Calendar.DAY_OF_MONTH));
+   }//end today
+
+   /**
+    * Loads the in-memory indexes from the database.  Does nothing when the
+    * system property dbproject.indexes is false, in which case every report
+    * is answered by SQL, or on the memory backend.
+    *
+    * @throws java.sql.SQLException when the tables cannot be read
+    */
+   public void buildIndexes () throws SQLException {
+      if (!Boolean.parseBoolean (System.getProperty ("dbproject.indexes", "true")) || this._pool == null){
+         return;
+      }//end if
+      this._availability.build (this._pool);
+      this._leaderboard.build (this._pool);
+      this._prices.build (this._pool);
+      this._spend.build (this._pool);
+   }//end buildIndexes
+
+   /**
+    * Reloads the in-memory indexes and drops the cached reports over
+    * Booking, after bookings were written by another process, e.g. a
+    * BulkBookingImport run.
+    *
+    * @throws java.sql.SQLException when the tables cannot be read
+    */
+   public void reindex () throws SQLException {
+      buildIndexes ();
+      this._cache.invalidate (Queries.IMPORT_BOOKING);
+   }//end reindex
+
+   /**
+    * @return the in-memory room availability index
+    */
+   public AvailabilityIndex getAvailability () {
+      return this._availability;
+   }//end getAvailability
+
+   /**
+    * @return the ranked repair counts per maintenance company
+    */
+   public RepairLeaderboard getLeaderboard () {
+      return this._leaderboard;
+   }//end getLeaderboard
+
+   /**
+    * @return the bookings by day, sorted by price
+    */
+   public PriceTopK getPrices () {
+      return this._prices;
+   }//end getPrices
+
+   /**
+    * @return the running spend per customer and hotel
+    */
+   public SpendIndex getSpend () {
+      return this._spend;
+   }//end getSpend
+
+   /**
+    * @return the cache of report results
+    */
+   public ResultCache getCache () {
+      return this._cache;
+   }//end getCache
+
+   /**
+    * @return the latency histograms of this instance
+    */
+   public Stats getStats () {
+      return this._stats;
+   }//end getStats
+
+   /**
+    * Redirects query results to another sink.
+    *
+    * @param sink the sink receiving subsequent results
+    */
+   public void setSink (ResultSink sink) {
+      this._sink = sink;
+   }//end setSink
+
+   /**
+    * @return the sink receiving query results
+    */
+   public ResultSink getSink () {
+      return this._sink;
+   }//end getSink
+
+   /**
+    * Sets how many rows are fetched per round trip when streaming results.
+    *
+    * @param fetchSize rows per fetch, or 0 to read each result at once
+    */
+   public void setFetchSize (int fetchSize) {
+      this._fetchSize = fetchSize;
+   }//end setFetchSize
+
+   /**
+    * Sets how many rows each page of the paginated listings holds.
+    *
+    * @param pageSize rows per page
+    */
+   public void setPageSize (int pageSize) {
+      if (pageSize < 1){
+         throw new IllegalArgumentException ("The page size must be positive");
+      }//end if
+      this._pageSize = pageSize;
+   }//end setPageSize
+
+   /*
+    * Writes the token of the next page of a paginated listing as a result
+    * of its own, a single next_page column, after the page's rows.
+    **/
+   void writeNextPage (String token) throws SQLException {
+      if (token == null){
+         return;
+      }//end if
       try{
-         if (this._connection != null){
-            this._connection.close ();
-         }//end if
-      }catch (SQLException e){
-         // ignored.
+         this._sink.begin (new String[] { "next_page" });
+         this._sink.cell (token);
+         this._sink.endRow ();
+         this._sink.end (1);
+      }catch (IOException e){
+         throw new SQLException ("Unable to write result: " + e.getMessage ());
       }//end try
+   }//end writeNextPage
+
+   /**
+    * @return the allocator of primary keys for new rows
+    */
+   public IdAllocator getIds () {
+      return this._ids;
+   }//end getIds
+
+   /**
+    * @return the connection pool used by this instance
+    */
+   public ConnectionPool getPool () {
+      return this._pool;
+   }//end getPool
+
+   /**
+    * Method to close the physical connections if they are open.
+    */
+   public void cleanup(){
+      if (this._sink instanceof Closeable){
+         // a file export: writes what is still buffered.
+         try{
+            ((Closeable) this._sink).close ();
+         }catch (IOException e){
+            System.err.println ("Unable to write result: " + e.getMessage ());
+         }//end try
+      }//end if
+      if (this._pool != null){
+         this._pool.close ();
+      }//end if
    }//end cleanup
 
    /**
@@ -145,26 +881,91 @@ public class DBProject {
     * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
     */
    public static void main (String[] args) {
-      if (args.length != 3) {
+      String script = null;
+      int serverPort = -1;
+      boolean quiet = false;
+      String output = null;
+      String outputFile = null;
+      boolean usage = args.length < 3;
+      for (int i = 3; i < args.length && !usage; ++i){
+         if (args[i].equals ("--batch") && i + 1 < args.length){
+            script = args[++i];
+         }else if (args[i].equals ("--server") && i + 1 < args.length){
+            try{
+               serverPort = Integer.parseInt (args[++i]);
+            }catch (NumberFormatException e){
+               usage = true;
+            }//end try
+         }else if (args[i].equals ("--output") && i + 2 < args.length){
+            output = args[++i];
+            outputFile = args[++i];
+         }else if (args[i].equals ("--quiet")){
+            quiet = true;
+         }else{
+            usage = true;
+         }//end if
+      }//end for
+      if (usage) {
          System.err.println (
             "Usage: " +
             "java [-classpath <classpath>] " +
             DBProject.class.getName () +
-            " <dbname> <port> <user>");
+            " <dbname> <port> <user> [--batch <script file | -> [--quiet] | --server <listen port>]" +
+            " [--output <csv | json | binary> <file>]");
          return;
       }//end if
-      
-      Greeting();
+
+      if (script == null && serverPort < 0){
+         Greeting();
+      }//end if
       DBProject esql = null;
       try{
-         // use postgres JDBC driver.
-         Class.forName ("org.postgresql.Driver");
-         // instantiate the DBProject object and creates a physical
-         // connection.
          String dbname = args[0];
          String dbport = args[1];
          String user = args[2];
-         esql = new DBProject (dbname, dbport, user, "");
+         if (System.getProperty ("dbproject.backend", "sql").equals ("memory")){
+            // no database: options 8 to 16 read the data files instead.
+            MemoryEngine engine = MemoryEngine.load (new File (System.getProperty ("dbproject.data", "../data")));
+            System.out.println (engine);
+            esql = new DBProject (engine);
+         }else{
+            // use postgres JDBC driver.
+            Class.forName ("org.postgresql.Driver");
+            // instantiate the DBProject object and creates a physical
+            // connection.
+            esql = new DBProject (dbname, dbport, user, "");
+         }//end if
+         if (!quiet || script == null){
+            esql.setSink (output != null ? ResultSinks.open (output, outputFile) : ResultSinks.configured ());
+         }//end if
+         esql.buildIndexes ();
+
+         if (script != null){
+            // headless mode: replay the script instead of showing the menu.
+            if (quiet){
+               esql.setSink (new NullSink ());
+            }//end if
+            BufferedReader reader = script.equals ("-")
+               ? in
+               : new BufferedReader (new FileReader (script));
+            try{
+               new BatchRunner (esql, System.out).run (reader);
+            }finally{
+               reader.close ();
+            }//end try
+            return;
+         }//end if
+
+         if (serverPort >= 0){
+            // multi-user mode: serve sessions until a client sends shutdown.
+            Server server = new Server (esql, serverPort);
+            try{
+               server.run ();
+            }finally{
+               System.out.println(server.stats ());
+            }//end try
+            return;
+         }//end if
 
          boolean keepon = true;
          while(keepon) {
@@ -187,7 +988,8 @@ public class DBProject {
 				System.out.println("14. List the repairs made by maintenance company");
 				System.out.println("15. Get top k maintenance companies based on repair count");
 				System.out.println("16. Get number of repairs occurred per year for a given hotel room");
-				System.out.println("17. < EXIT");
+				System.out.println("17. Statistics");
+				System.out.println("18. < EXIT");
 
             switch (readChoice()){
 				   case 1: addCustomer(esql); break;
@@ -206,7 +1008,8 @@ public class DBProject {
 				   case 14: listRepairsMade(esql); break;
 				   case 15: topKMaintenanceCompany(esql); break;
 				   case 16: numberOfRepairsForEachRoomPerYear(esql); break;
-				   case 17: keepon = false; break;
+				   case 17: System.out.print(esql.getStats ().report ()); break;
+				   case 18: keepon = false; break;
 				   default : System.out.println("Unrecognized choice!"); break;
             }//end switch
          }//end while
@@ -216,6 +1019,17 @@ public class DBProject {
          // make sure to cleanup the created table and close the connection.
          try{
             if(esql != null) {
+               if (esql.getPool () != null){
+                  System.out.println(esql.getPool ().stats ());
+               }//end if
+               System.out.println(esql.getCache ().stats ());
+               String statsFile = System.getProperty ("dbproject.stats.file", "dbproject-stats.txt");
+               try{
+                  esql.getStats ().dump (statsFile);
+                  System.out.println("Latency statistics written to " + statsFile);
+               }catch (IOException e){
+                  System.err.println("Unable to write " + statsFile + ": " + e.getMessage ());
+               }//end try
                System.out.print("Disconnecting from database...");
                esql.cleanup ();
                System.out.println("Done\n\nBye !");
@@ -341,27 +1155,18 @@ public class DBProject {
      }while(true);
 
         try{
-           String query = String.format(
-           "INSERT INTO Customer(customerID, fName, lName, Address, phNo, DOB, gender)" +
-           "VALUES ((SELECT COUNT(*)+1 FROM Customer),'%s','%s','%s','%s','%s','%s');",
-           fName,
-           lName,
-           Address,
-           phNo,
-           DOB,
-           gender
-           );
-           esql.executeUpdate(query);
+           int customerID = addCustomer(esql, fName, lName, Address, Long.parseLong(phNo), java.sql.Date.valueOf(DOB), gender);
            System.out.println(
                "\n\n----------------------------------------------\n" +
                 "              Your New Customer      	               \n" +
                "----------------------------------------------\n");
-           query = String.format("SELECT * FROM Customer WHERE fName='%s';", fName);
-           esql.executeQuery(query);
+           esql.executeQuery(Queries.SHOW_CUSTOMER, customerID);
            System.out.println(
                "\n\n----------------------------------------------\n");
         }catch (SQLException e){
            System.out.println("Please Check if it's a valid date and gender is either Male or Female.");
+        }catch (IllegalArgumentException e){
+           System.out.println("Please Check if it's a valid date and gender is either Male or Female.");
         }
         catch (Exception e){
            System.out.println(e);
@@ -369,6 +1174,24 @@ public class DBProject {
 
    }//end addCustomer
 
+   /**
+    * Inserts a customer under a newly allocated customer ID.
+    *
+    * @return the new customer ID
+    * @throws java.sql.SQLException when the insert fails
+    */
+   public static int addCustomer(DBProject esql, String fName, String lName, String address,
+                                 long phNo, java.sql.Date dob, String gender) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         int customerID = esql.nextId(IdAllocator.CUSTOMER);
+         esql.executeUpdate(Queries.ADD_CUSTOMER, customerID, fName, lName, address, phNo, dob, gender);
+         return customerID;
+      }finally{
+         esql._stats.op(Operation.ADD_CUSTOMER, start);
+      }//end try
+   }//end addCustomer
+
 	  // Given room details add the room in the DB
      public static void addRoom(DBProject esql){
       // Given room details add the room in the DB
@@ -380,6 +1203,7 @@ public class DBProject {
                 if(hotelID.length() < 1){
                    throw new RuntimeException("Cannot be Null");
                 }
+                Integer.parseInt(hotelID);
                 break;
              }catch(Exception e){
                 System.out.println(e);
@@ -394,6 +1218,7 @@ public class DBProject {
                 if(roomNo.length() < 1){
                    throw new RuntimeException("Cannot be Null");
                 }
+                Integer.parseInt(roomNo);
                 break;
              }catch(Exception e){
                 System.out.println(e);
@@ -415,15 +1240,12 @@ public class DBProject {
              }
           }while(true);
           try{
-           String query = String.format(
-           "INSERT INTO Room(hotelID, roomNo, roomType)" + 
-           "VALUES(%s, %s, '%s');", hotelID, roomNo, roomType);
-           esql.executeUpdate(query);
+           addRoom(esql, Integer.parseInt(hotelID), Integer.parseInt(roomNo), roomType);
            System.out.println(
                "\n\n----------------------------------------------\n" +
                 "              Your New Room      	               \n" +
                "----------------------------------------------\n");
-            esql.executeQuery(String.format("SELECT * FROM Room WHERE hotelID=%s ORDER BY roomNo", hotelID));
+            esql.executeQuery(Queries.SHOW_ROOMS_OF_HOTEL, Integer.valueOf(hotelID));
            System.out.println(
                "\n\n----------------------------------------------\n");
            
@@ -437,21 +1259,24 @@ public class DBProject {
  
    }//end addRoom
 
+   /**
+    * Inserts a room of a hotel.
+    *
+    * @throws java.sql.SQLException when the insert fails
+    */
+   public static void addRoom(DBProject esql, int hotelID, int roomNo, String roomType) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         esql.executeUpdate(Queries.ADD_ROOM, hotelID, roomNo, roomType);
+         esql._availability.onRoom(hotelID, roomNo);
+      }finally{
+         esql._stats.op(Operation.ADD_ROOM, start);
+      }//end try
+   }//end addRoom
+
    public static void addMaintenanceCompany(DBProject esql){//DONE
 		// Given maintenance Company details add the maintenance company in the DB
 		
-		int compID;
-		while(true) {
-			System.out.print("Input Company ID: ");
-			try {
-				compID = Integer.parseInt(in.readLine());
-				break;
-			}catch(Exception e) {
-				System.out.println("This compID does not exist!");
-				continue;
-			}
-		};
-		
 		String compName;
 		while(true) {
 			System.out.print("Input Company Name: ");
@@ -499,15 +1324,13 @@ public class DBProject {
 			}
 		};
 		
-		String query;
 		try{
-			query = "INSERT INTO MaintenanceCompany (cmpID, name, address, isCertified) VALUES (" + compID + ", \'" + compName + "\', \'" + compAddress + "\', \'" + isCertified + "\');";
-			esql.executeUpdate(query);
+			int compID = addMaintenanceCompany(esql, compName, compAddress, isCertified);
 			 System.out.println(
          "\n\n----------------------------------------------\n" +
          "              Your New Maintanence Company      	               \n" +
          "----------------------------------------------\n");
-         esql.executeQuery(String.format("SELECT * FROM MaintenanceCompany WHERE cmpID=%s", compID));
+         esql.executeQuery(Queries.SHOW_MAINTENANCE_COMPANY, compID);
          System.out.println(
             "\n\n----------------------------------------------\n");
 
@@ -518,22 +1341,29 @@ public class DBProject {
       // ...
    }//end addMaintenanceCompany
 
+   /**
+    * Inserts a maintenance company under a newly allocated company ID.
+    *
+    * @return the new company ID
+    * @throws java.sql.SQLException when the insert fails
+    */
+   public static int addMaintenanceCompany(DBProject esql, String name, String address,
+                                           boolean isCertified) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         int cmpID = esql.nextId(IdAllocator.MAINTENANCE_COMPANY);
+         esql.executeUpdate(Queries.ADD_MAINTENANCE_COMPANY, cmpID, name, address, isCertified);
+         esql._leaderboard.onCompany(cmpID, name);
+         return cmpID;
+      }finally{
+         esql._stats.op(Operation.ADD_MAINTENANCE_COMPANY, start);
+      }//end try
+   }//end addMaintenanceCompany
+
    public static void addRepair(DBProject esql){//DONE
 	  // Given repair details add repair in the DB
       // Your code goes here.
       
-		int repairID;
-		while(true) {
-			System.out.print("Input repair ID: ");
-			try {
-				repairID = Integer.parseInt(in.readLine());
-				break;
-			} catch (Exception e) {
-				System.out.println("Your input is invalid!");
-				continue;
-			}
-		};
-	  
 		int hotelID;
 		while(true) {
 			System.out.print("Input hotel ID: ");
@@ -656,7 +1486,7 @@ public class DBProject {
     String fdate = monthInput + "/" + dayInput + "/" + yearInput;
     System.out.println("Your inputted date is: ");
     System.out.println(fdate);
-    String repairDate = fdate;
+    java.sql.Date repairDate = toDate(yearInput, monthInput, dayInput);
 
 
 		String description;
@@ -686,16 +1516,13 @@ public class DBProject {
 			}
 		};
 	  
-		String query;
 		try {
-			query = "INSERT INTO Repair (rID, hotelID, roomNo, mCompany, repairDate, description, repairType) VALUES (" + repairID + ", \'" + hotelID + "\', \'" + roomNum + "\', \'" + maintCompany + "\', \'" + repairDate + "\', \'" + description + "\', \'" + repairType + "\');";
-			esql.executeUpdate(query);
+			int repairID = addRepair(esql, hotelID, roomNum, maintCompany, repairDate, description, repairType);
 			System.out.println(
          "\n\n----------------------------------------------\n" +
          "              Your New Repair      	               \n" +
          "----------------------------------------------\n");
-         query = String.format("SELECT * FROM Repair WHERE rID='%s';", repairID);
-         esql.executeQuery(query);
+         esql.executeQuery(Queries.SHOW_REPAIR, repairID, repairDate);
          System.out.println(
          "\n\n----------------------------------------------\n");
 		} catch (Exception e) {
@@ -705,11 +1532,29 @@ public class DBProject {
       // ...
    }//end addRepair
 
+   /**
+    * Inserts a repair of a hotel room under a newly allocated repair ID.
+    *
+    * @return the new repair ID
+    * @throws java.sql.SQLException when the insert fails
+    */
+   public static int addRepair(DBProject esql, int hotelID, int roomNo, int mCompany,
+                               java.sql.Date repairDate, String description, String repairType) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         int rID = esql.nextId(IdAllocator.REPAIR);
+         esql.executeUpdate(Queries.ADD_REPAIR, rID, hotelID, roomNo, mCompany, repairDate, description, repairType);
+         esql._leaderboard.onRepair(mCompany, epochDay(repairDate));
+         return rID;
+      }finally{
+         esql._stats.op(Operation.ADD_REPAIR, start);
+      }//end try
+   }//end addRepair
+
    public static void bookRoom(DBProject esql){//DONE
 	  // Given hotelID, roomNo and customer Name create a booking in the DB 
       // Your code goes here.
       int check = 0;
-      int bID;
     	int bookingyear;
     	int bookingmonth;
     	int bookingday;
@@ -717,7 +1562,6 @@ public class DBProject {
       int hotelID;
       int roomNo;
       int customerID;
-    	String query;
     	String input;
    
     	double price;
@@ -756,8 +1600,7 @@ public class DBProject {
       }
 
     	try{//try1
-      	query = "SELECT bID\nFROM Booking\nWHERE hotelID = " + hotelID + " AND roomNo = " + roomNo + " AND customer = " + customerID + ";";
-      	if(esql.executeQuery(query) == 0) {
+      	if(esql.executeQuery(Queries.FIND_CUSTOMER_BOOKING, hotelID, roomNo, customerID) == 0) {
       		while(true){
             if (check == 0) {
       			 System.out.println("Your Booking does not yet exist. Would you like to create a new Booking?(y/n): ");
@@ -769,15 +1612,6 @@ public class DBProject {
       			try{//try2
       				input = in.readLine();
       				if(input.equals("y") || input.equals("Y")) {
-							  while(true){
-								  System.out.print("Please input Booking Number: ");
-								  try{//try3
-									 bID = Integer.parseInt(in.readLine());
-									 break;
-								  }catch (Exception e) {// catch1
-							      System.out.println("Your input is invalid!");
-						      }
-      				  }
                 while(true){
                   System.out.println("Booking Date is required!");
                   System.out.print("Please input Booking Date Year: ");
@@ -840,8 +1674,7 @@ public class DBProject {
                 String finaldate = bookingmonth + "/" + bookingday + "/" + bookingyear;
                 System.out.println("Your inputted date is (In the format of MM/dd/yyyy ) : ");
                 System.out.println(finaldate);
-                String bookingDate = finaldate;
-			          String tempDate = bookingDate;
+                java.sql.Date bookingDate = toDate(bookingyear, bookingmonth, bookingday);
                 while(true){
                  	System.out.print("Please input the number of People for the Booking: ");
                  	try{
@@ -863,14 +1696,12 @@ public class DBProject {
                 			}
                 			
                       try{
-                  			query = "INSERT INTO Booking( bID, customer, hotelID, roomNo, bookingDate, noOfPeople, price) VALUES (" + bID + ", \'" + customerID + "\', \'" + hotelID + "\', \'" + roomNo + "\', \'" + tempDate + "\', \'" + noPeople + "\', \'" + price + "\');";
-                  			esql.executeUpdate(query);
+                  			int bID = bookRoom(esql, customerID, hotelID, roomNo, bookingDate, noPeople, BigDecimal.valueOf(price));
                   			System.out.println(
                            "\n\n----------------------------------------------\n" +
                            "              Your Booking      	               \n" +
                            "----------------------------------------------\n");
-                           query = String.format("SELECT * FROM Booking WHERE bID='%s';", bID);
-                           esql.executeQuery(query);
+                           esql.executeQuery(Queries.SHOW_BOOKING, bID, bookingDate);
                            System.out.println(
                            "\n\n----------------------------------------------\n");
                           break;
@@ -895,6 +1726,67 @@ public class DBProject {
       // ...
    }//end bookRoom
 
+   /**
+    * Inserts a booking of a hotel room under a newly allocated booking ID.
+    * The bookings of one room are serialized on its stripe of the room
+    * locks, so clerks of this process booking the same room queue up
+    * instead of racing, while other rooms are booked in parallel.  A room
+    * the availability index already shows as booked that day is refused
+    * without a round trip; otherwise the unique key on (hotelID, roomNo,
+    * bookingDate) refuses a booking made meanwhile by another client.  The
+    * insert is a single autocommit statement, so it does not take part in
+    * a serialization failure or deadlock and is not retried.
+    *
+    * @return the new booking ID
+    * @throws java.sql.SQLException when the insert fails, with SQL state
+    *         23505 when the room is already booked on that day
+    */
+   public static int bookRoom(DBProject esql, int customerID, int hotelID, int roomNo,
+                              java.sql.Date bookingDate, int noOfPeople, BigDecimal price) throws SQLException {
+      long start = System.nanoTime();
+      int day = epochDay(bookingDate);
+      Lock lock = esql._roomLocks.get(hotelID, roomNo);
+      lock.lock();
+      try{
+         if (esql._availability.isBooked(hotelID, roomNo, day)){
+            throw alreadyBooked(hotelID, roomNo, bookingDate);
+         }//end if
+         int bID = esql.nextId(IdAllocator.BOOKING);
+         try{
+            esql.executeUpdate(Queries.ADD_BOOKING, bID, customerID, hotelID, roomNo, bookingDate, noOfPeople, price);
+         }catch (SQLException e){
+            if (isDuplicate(e)){
+               throw alreadyBooked(hotelID, roomNo, bookingDate);
+            }//end if
+            throw e;
+         }//end try
+         esql._availability.onBooking(hotelID, roomNo, day);
+         esql._prices.onBooking(bID, hotelID, roomNo, day, cents(price));
+         esql._spend.onBooking(customerID, hotelID, day, cents(price));
+         return bID;
+      }finally{
+         lock.unlock();
+         esql._stats.op(Operation.BOOK_ROOM, start);
+      }//end try
+   }//end bookRoom
+
+   private static SQLException alreadyBooked(int hotelID, int roomNo, java.sql.Date bookingDate) {
+      return new SQLException("Room " + roomNo + " of hotel " + hotelID + " is already booked on " + bookingDate, "23505");
+   }//end alreadyBooked
+
+   /**
+    * @return whether the database refused a statement for a duplicate key
+    *         (SQL state 23505)
+    */
+   static boolean isDuplicate(SQLException e) {
+      String state = e.getSQLState();
+      if (state != null){
+         return state.equals("23505");
+      }//end if
+      // the 7.3 driver does not always report the state; fall back to the text.
+      return String.valueOf(e.getMessage()).toLowerCase().contains("duplicate key");
+   }//end isDuplicate
+
    public static void assignHouseCleaningToRoom(DBProject esql){//DONE
 	  // Given Staff SSN, HotelID, roomNo Assign the staff to the room 
       // Your code goes here.
@@ -937,16 +1829,13 @@ public class DBProject {
 		}
 	}
 
-	String query;
 		try {
-			query = "INSERT INTO Assigned (asgID, staffID, hotelID, roomNo) VALUES (" + "(SELECT COUNT(*)+1 FROM Customer)" + ", " + staffSSN + ", " + hotelID + ", " + roomNum + ");";
-			esql.executeUpdate(query);
+			assignHouseCleaningToRoom(esql, staffSSN, hotelID, roomNum);
 			System.out.println(
          "\n\n----------------------------------------------\n" +
          "              ASSIGNED HOUSE CLEANING STAFF      	               \n" +
          "----------------------------------------------\n");
-			query = String.format("SELECT * FROM Assigned WHERE staffID='%s';", staffSSN);
-         esql.executeQuery(query);
+         esql.executeQuery(Queries.SHOW_ASSIGNMENTS_OF_STAFF, staffSSN);
          System.out.println(
          "\n\n----------------------------------------------\n");
 		} catch (Exception e) {
@@ -955,27 +1844,32 @@ public class DBProject {
       // ...
       // ...
    }//end assignHouseCleaningToRoom
+
+   /**
+    * Assigns a staff member to clean a hotel room under a newly allocated
+    * assignment ID.
+    *
+    * @return the new assignment ID
+    * @throws java.sql.SQLException when the insert fails
+    */
+   public static int assignHouseCleaningToRoom(DBProject esql, int staffSSN, int hotelID, int roomNo) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         int asgID = esql.nextId(IdAllocator.ASSIGNED);
+         esql.executeUpdate(Queries.ADD_ASSIGNMENT, asgID, staffSSN, hotelID, roomNo);
+         return asgID;
+      }finally{
+         esql._stats.op(Operation.ASSIGN_HOUSE_CLEANING, start);
+      }//end try
+   }//end assignHouseCleaningToRoom
    
    public static void repairRequest(DBProject esql){//DONE
 	  // Given a hotelID, Staff SSN, roomNo, repairID , date create a repair request in the DB
       // Your code goes here.
-   int reqID;
    int staffSSN;
    int repairID;
    String description;
 
-   //get reqID
-   while(true) {
-      System.out.print("Input Request ID: ");
-      try {
-         reqID = Integer.parseInt(in.readLine());
-         break;
-      }
-      catch(Exception e) {
-         System.out.println("Your input is invalid!");
-         continue;
-      }
-   }
    //get SSN
    while(true) {
       System.out.print("Input manager ID: ");
@@ -1082,7 +1976,7 @@ public class DBProject {
       }
     };
         String fdate = monthInput + "/" + dayInput + "/" + yearInput;
-        String requestDate =fdate;
+        java.sql.Date requestDate = toDate(yearInput, monthInput, dayInput);
     
     System.out.println("Your date is: ");
     System.out.println(fdate);
@@ -1098,16 +1992,13 @@ public class DBProject {
          continue;
       }
    }
-   String query;
   try {
-      query = "INSERT INTO Request(reqID, managerID, repairID, requestDate, description) VALUES( " + reqID + ", " + staffSSN + ", " + repairID + ",\' " + requestDate + " \', \' " + description + " \');";
-      esql.executeUpdate(query);
+      int reqID = repairRequest(esql, staffSSN, repairID, requestDate, description);
       System.out.println(
          "\n\n----------------------------------------------\n" +
          "              Your New Repair Request      	               \n" +
          "----------------------------------------------\n");
-			query = String.format("SELECT * FROM Request WHERE reqID='%s';", reqID);
-         esql.executeQuery(query);
+         esql.executeQuery(Queries.SHOW_REQUEST, reqID);
          System.out.println(
          "\n\n----------------------------------------------\n");
    }
@@ -1117,6 +2008,25 @@ public class DBProject {
       // ...
       // ...
    }//end repairRequest
+
+   /**
+    * Inserts a repair request raised by a manager under a newly allocated
+    * request ID.
+    *
+    * @return the new request ID
+    * @throws java.sql.SQLException when the insert fails
+    */
+   public static int repairRequest(DBProject esql, int managerID, int repairID,
+                                   java.sql.Date requestDate, String description) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         int reqID = esql.nextId(IdAllocator.REQUEST);
+         esql.executeUpdate(Queries.ADD_REQUEST, reqID, managerID, repairID, requestDate, description);
+         return reqID;
+      }finally{
+         esql._stats.op(Operation.REPAIR_REQUEST, start);
+      }//end try
+   }//end repairRequest
    
    public static void numberOfAvailableRooms(DBProject esql){//DONE
 	  // Given a hotelID, get the count of rooms available  (NUM OF TOTAL ROOMS OF THE HOTEL - THE NUMBER ROOMS BOOKED)
@@ -1132,16 +2042,25 @@ public class DBProject {
    				continue;
    			}
    		}
-;
-   		String query;
+   		java.sql.Date date;
+   		while(true){
+   			System.out.println("Please input first date of stay (yyyy-mm-dd or m/d/yyyy, blank for today): ");
+   			try{
+   				String line = in.readLine().trim();
+   				date = line.isEmpty() ? today() : Params.parseDate(line);
+   				break;
+   			}catch(Exception e){
+   				System.out.println("Your Input is invalid!");
+   				continue;
+   			}
+   		}
    			try{
 
             System.out.println(
                   "\n\n----------------------------------------------\n" +
                   "              AVAILABLE ROOMS     	               \n" +
                   "----------------------------------------------\n");
-               query = "SELECT COUNT(R.roomNo) AS AvailableRooms FROM Room R WHERE R.hotelID = " + hotelID + "\nEXCEPT\nSELECT COUNT(B.roomNo) FROM Booking B WHERE B.hotelID = " + hotelID + ";";
-               esql.executeQuery(query);
+               numberOfAvailableRooms(esql, hotelID, date);
                System.out.println(
                   "\n\n----------------------------------------------\n" );
    			}catch(Exception e) {
@@ -1150,6 +2069,33 @@ public class DBProject {
       // ...
       // ...
    }//end numberOfAvailableRooms
+
+   /**
+    * Writes the number of rooms of a hotel that are free for the whole
+    * week starting at a date to the result sink.
+    *
+    * @throws java.sql.SQLException when the query fails
+    */
+   public static void numberOfAvailableRooms(DBProject esql, int hotelID, java.sql.Date date) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         if (esql._engine != null){
+            esql._engine.availableRooms(esql._sink, hotelID, epochDay(date), epochDay(date) + 6);
+            return;
+         }//end if
+         if (esql._availability.isBuilt()){
+            try{
+               esql._availability.writeFreeRooms(esql._sink, hotelID, epochDay(date), 7);
+            }catch (IOException e){
+               throw new SQLException ("Unable to write result: " + e.getMessage ());
+            }//end try
+            return;
+         }//end if
+         esql.executeReport(Queries.AVAILABLE_ROOMS, hotelID, date, addDays(date, 6));
+      }finally{
+         esql._stats.op(Operation.AVAILABLE_ROOMS, start);
+      }//end try
+   }//end numberOfAvailableRooms
    
    public static void numberOfBookedRooms(DBProject esql){//DONE
 	  // Given a hotelID, get the count of rooms booked
@@ -1167,15 +2113,13 @@ public class DBProject {
    				continue;
    			}
    		}
-   		String query;
    		while(true){
    			try{
                System.out.println(
                 "\n\n------------------------------------------\n" +
                "               BOOKED ROOMS      	               \n" +
                "----------------------------------------------\n");
-   				query = "SELECT count(B.roomNo)\n AS ReservedRooms FROM Booking B WHERE hotelID = " + hotelID + ";";
-               esql.executeQuery(query);
+               numberOfBookedRooms(esql, hotelID);
                System.out.println(
                 "\n\n------------------------------------------\n");
    				break;
@@ -1186,6 +2130,24 @@ public class DBProject {
       // ...
       // ...
    }//end numberOfBookedRooms
+
+   /**
+    * Writes the number of booked rooms of a hotel to the result sink.
+    *
+    * @throws java.sql.SQLException when the query fails
+    */
+   public static void numberOfBookedRooms(DBProject esql, int hotelID) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         if (esql._engine != null){
+            esql._engine.bookedRooms(esql._sink, hotelID);
+            return;
+         }//end if
+         esql.executeReport(Queries.BOOKED_ROOMS, hotelID);
+      }finally{
+         esql._stats.op(Operation.BOOKED_ROOMS, start);
+      }//end try
+   }//end numberOfBookedRooms
    
 public static void listHotelRoomBookingsForAWeek(DBProject esql){
 	  // Given a hotelID, date - list all the rooms available for a week(including the input date) 
@@ -1276,20 +2238,19 @@ public static void listHotelRoomBookingsForAWeek(DBProject esql){
         String fdate = monthInput + "/" + dayInput + "/" + yearInput;
         System.out.println("Your inputted date is: ");
         System.out.println(fdate);
-        String bookingDate = fdate;
-        String endDate = monthInput + "/" + (dayInput+7) + "/" + yearInput;
-        String endBooking = endDate;
+        java.sql.Date bookingDate = toDate(yearInput, monthInput, dayInput);
 
    	
-	  String query;
                 try {
                         System.out.println(
          "\n\n----------------------------------------------\n" +
          "              Bookings                       \n" +
          "----------------------------------------------\n");
 
-         query = "SELECT R.roomNo FROM Booking B, Room R WHERE B.hotelID = " + hotelID + " AND R.hotelID = " + hotelID + "AND B.bookingDate >= \'" + bookingDate + "\' AND B.bookingDate <= \'" + endBooking + "\';";
-         esql.executeQuery(query);
+         String page = listHotelRoomBookingsForAWeek(esql, hotelID, bookingDate, null);
+         while (page != null && nextPage()){
+            page = listHotelRoomBookingsForAWeek(esql, hotelID, bookingDate, page);
+         }//end while
          System.out.println(
          "\n\n----------------------------------------------\n");
                 } catch (Exception e) {
@@ -1298,6 +2259,87 @@ public static void listHotelRoomBookingsForAWeek(DBProject esql){
          
       
    }//end listHotelRoomBookingsForAWeek
+
+   /**
+    * Writes the rooms of a hotel booked in the week starting at a date
+    * (the date and the six days after it).
+    *
+    * @throws java.sql.SQLException when the query fails
+    */
+   public static void listHotelRoomBookingsForAWeek(DBProject esql, int hotelID, java.sql.Date bookingDate) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         if (esql._engine != null){
+            int from = epochDay(bookingDate);
+            esql._engine.bookingsForWeek(esql._sink, hotelID, from, from + 6, Integer.MIN_VALUE, Integer.MIN_VALUE);
+            return;
+         }//end if
+         if (esql._availability.isBuilt()){
+            try{
+               esql._availability.writeBookedRooms(esql._sink, hotelID, epochDay(bookingDate), 7);
+            }catch (IOException e){
+               throw new SQLException ("Unable to write result: " + e.getMessage ());
+            }//end try
+            return;
+         }//end if
+         esql.executeReport(Queries.BOOKINGS_FOR_WEEK, hotelID, bookingDate, addDays(bookingDate, 6));
+      }finally{
+         esql._stats.op(Operation.BOOKINGS_FOR_WEEK, start);
+      }//end try
+   }//end listHotelRoomBookingsForAWeek
+
+   /**
+    * Writes one page of the rooms of a hotel booked in the week starting at
+    * a date, ordered by date and room number.  The page starts after the
+    * last row of the previous page, so each page costs the same.
+    *
+    * @param page the token returned for the previous page, or null for the
+    *        first page
+    * @return the token of the next page, or null after the last page
+    * @throws java.sql.SQLException when the query fails
+    * @throws IllegalArgumentException when the token is not one of this
+    *         hotel and week
+    */
+   public static String listHotelRoomBookingsForAWeek(DBProject esql, int hotelID, java.sql.Date bookingDate,
+                                                      String page) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         Object[] listing = { Operation.BOOKINGS_FOR_WEEK.getCode(), hotelID, bookingDate };
+         int from = epochDay(bookingDate);
+         int afterDay = from;
+         int afterRoom = Integer.MIN_VALUE;
+         if (page != null){
+            String[] key = Page.key(page, listing, 2);
+            afterDay = epochDay(Params.parseDate(key[0]));
+            afterRoom = Integer.parseInt(key[1]);
+            if (afterDay < from || afterDay >= from + 7){
+               throw new IllegalArgumentException("Not a next page token of this listing: " + page);
+            }//end if
+         }//end if
+         // the key is (bookingdate, roomno), the second and first columns.
+         Page rows = new Page(esql._sink, esql._pageSize, 1, 0);
+         if (esql._engine != null){
+            esql._engine.bookingsForWeek(rows, hotelID, afterDay, from + 6, afterDay, afterRoom);
+         }else if (esql._availability.isBuilt()){
+            try{
+               esql._availability.writeBookedRooms(rows, hotelID, afterDay, from + 7 - afterDay, afterRoom);
+            }catch (IOException e){
+               throw new SQLException ("Unable to write result: " + e.getMessage ());
+            }//end try
+         }else{
+            java.sql.Date after = fromEpochDay(afterDay);
+            esql.executeReport(rows, Queries.BOOKINGS_FOR_WEEK_PAGE, hotelID, after, addDays(bookingDate, 6),
+                               after, afterRoom, rows.limit());
+         }//end if
+         if (!rows.hasMore()){
+            return null;
+         }//end if
+         String[] last = rows.lastKey();
+         return Page.token(listing[0], listing[1], listing[2], last[0], last[1]);
+      }finally{
+         esql._stats.op(Operation.BOOKINGS_FOR_WEEK, start);
+      }//end try
+   }//end listHotelRoomBookingsForAWeek
    
    public static void topKHighestRoomPriceForADateRange(DBProject esql){
 	  // List Top K Rooms with the highest price for a given date range
@@ -1405,7 +2447,7 @@ public static void listHotelRoomBookingsForAWeek(DBProject esql){
     String fdate = monthInput + "/" + dayInput + "/" + yearInput;
     System.out.println("Your inputted date is: ");
     System.out.println(fdate);
-    String startDate = fdate;
+    java.sql.Date startDate = toDate(yearInput, monthInput, dayInput);
 
 	  while(true) {
                         System.out.print("Input end date year: ");
@@ -1493,18 +2535,16 @@ public static void listHotelRoomBookingsForAWeek(DBProject esql){
     String finaldate = monthInput + "/" + dayInput + "/" + yearInput;
     System.out.println("Your inputted end date is: ");
     System.out.println(finaldate);
-    String endDate = finaldate;
+    java.sql.Date endDate = toDate(yearInput, monthInput, dayInput);
 
 
-            String query;
                 try {
                         System.out.println(
          "\n\n----------------------------------------------\n" +
          "              Highest Prices                       \n" +
          "----------------------------------------------\n");
 
-         query = "SELECT * FROM Room R, Booking B WHERE B.bookingDate >= \'" + startDate + "\' AND B.bookingDate <= \'" + endDate + "\' ORDER BY B.price DESC LIMIT " + k + ";";
-         esql.executeQuery(query);
+         topKHighestRoomPriceForADateRange(esql, k, startDate, endDate);
          System.out.println(
          "\n\n----------------------------------------------\n");
                 } catch (Exception e) {
@@ -1513,6 +2553,33 @@ public static void listHotelRoomBookingsForAWeek(DBProject esql){
       
          
    }//end topKHighestRoomPriceForADateRange
+
+   /**
+    * Writes the k highest priced bookings in a date range.
+    *
+    * @throws java.sql.SQLException when the query fails
+    */
+   public static void topKHighestRoomPriceForADateRange(DBProject esql, int k, java.sql.Date startDate,
+                                                        java.sql.Date endDate) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         if (esql._engine != null){
+            esql._engine.topRoomPrices(esql._sink, k, epochDay(startDate), epochDay(endDate));
+            return;
+         }//end if
+         if (esql._prices.isBuilt()){
+            try{
+               esql._prices.writeTop(esql._sink, k, epochDay(startDate), epochDay(endDate));
+            }catch (IOException e){
+               throw new SQLException ("Unable to write result: " + e.getMessage ());
+            }//end try
+            return;
+         }//end if
+         esql.executeReport(Queries.TOP_K_ROOM_PRICES, startDate, endDate, k);
+      }finally{
+         esql._stats.op(Operation.TOP_K_ROOM_PRICES, start);
+      }//end try
+   }//end topKHighestRoomPriceForADateRange
    
    public static void topKHighestPriceBookingsForACustomer(DBProject esql){
 	  // Given a customer ID, List Top K highest booking price for a customer 
@@ -1542,15 +2609,13 @@ public static void listHotelRoomBookingsForAWeek(DBProject esql){
         }
 
 
-        String query;
                 try {
                         System.out.println(
          "\n\n----------------------------------------------\n" +
          "        Customer's Highest Booking Prices                       \n" +
          "----------------------------------------------\n");
 
-         query = "SELECT B.price FROM Booking B, Customer C WHERE C.customerID = " + customerID + " ORDER BY price DESC LIMIT " + k + ";"; 
-         esql.executeQuery(query);
+         topKHighestPriceBookingsForACustomer(esql, customerID, k);
          System.out.println(
          "\n\n----------------------------------------------\n");
                 } catch (Exception e) {
@@ -1559,6 +2624,24 @@ public static void listHotelRoomBookingsForAWeek(DBProject esql){
 
 
    }//end topKHighestPriceBookingsForACustomer
+
+   /**
+    * Writes the k highest booking prices of a customer.
+    *
+    * @throws java.sql.SQLException when the query fails
+    */
+   public static void topKHighestPriceBookingsForACustomer(DBProject esql, int customerID, int k) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         if (esql._engine != null){
+            esql._engine.topCustomerPrices(esql._sink, customerID, k);
+            return;
+         }//end if
+         esql.executeReport(Queries.TOP_K_CUSTOMER_PRICES, customerID, k);
+      }finally{
+         esql._stats.op(Operation.TOP_K_CUSTOMER_PRICES, start);
+      }//end try
+   }//end topKHighestPriceBookingsForACustomer
    
    public static void totalCostForCustomer(DBProject esql){//DONE
 	  // Given a hotelID, customerID and date range get the total cost incurred by the customer
@@ -1649,7 +2732,7 @@ public static void listHotelRoomBookingsForAWeek(DBProject esql){
         String finaldate = inputmonth + "/" + inputday + "/" + inputyear;
         System.out.println("Your inputted date is (In the format of MM/dd/yyyy ) : ");
         System.out.println(finaldate);
-        String startDate = finaldate;
+        java.sql.Date startDate = toDate(inputyear, inputmonth, inputday);
 
 	while(true){
 	   
@@ -1713,18 +2796,16 @@ public static void listHotelRoomBookingsForAWeek(DBProject esql){
         String finishdate = inputmonth + "/" + inputday + "/" + inputyear;
         System.out.println("Your inputted date is (In the format of MM/dd/yyyy ) : ");
         System.out.println(finishdate);
-        String endDate = finishdate;
+        java.sql.Date endDate = toDate(inputyear, inputmonth, inputday);
 
 
 
-	String query;
 		try{
          System.out.println(
       "\n\n-------------------------------------\n" +
       "              Customer Total                           \n" +
       "------------------------------------------\n");
-			query = "SELECT C.customerID, SUM(B.price) FROM Customer C, Booking B WHERE B.hotelID = " + hotelID + " AND C.customerID = " + customerID +  " AND B.bookingDate >= \'" + startDate + "\' AND B.bookingDate <= \'" + endDate + "\' GROUP BY C.customerID;";
-         esql.executeQuery(query);
+         totalCostForCustomer(esql, hotelID, customerID, startDate, endDate);
          System.out.println(
             "\n\n-------------------------------------\n");
 		}catch(Exception e){
@@ -1733,16 +2814,42 @@ public static void listHotelRoomBookingsForAWeek(DBProject esql){
 
 
    }//end totalCostForCustomer
+
+   /**
+    * Writes the total a customer spent at a hotel in a date range.
+    *
+    * @throws java.sql.SQLException when the query fails
+    */
+   public static void totalCostForCustomer(DBProject esql, int hotelID, int customerID, java.sql.Date startDate,
+                                           java.sql.Date endDate) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         if (esql._engine != null){
+            esql._engine.customerTotalCost(esql._sink, hotelID, customerID, epochDay(startDate), epochDay(endDate));
+            return;
+         }//end if
+         if (esql._spend.isBuilt()){
+            try{
+               esql._spend.writeTotal(esql._sink, customerID, hotelID, epochDay(startDate), epochDay(endDate));
+            }catch (IOException e){
+               throw new SQLException ("Unable to write result: " + e.getMessage ());
+            }//end try
+            return;
+         }//end if
+         esql.executeReport(Queries.CUSTOMER_TOTAL_COST, hotelID, customerID, startDate, endDate);
+      }finally{
+         esql._stats.op(Operation.CUSTOMER_TOTAL_COST, start);
+      }//end try
+   }//end totalCostForCustomer
    
    public static void listRepairsMade(DBProject esql){//DONE
 	  // Given a Maintenance company name list all the repairs along with repairType, hotelID and roomNo
       // Your code goes here.
-  	String name;
-	String query;
+  	int cmpID;
 	while (true){
 		System.out.println("Please enter a company: ");
      	try {
-	    name = in.readLine();
+	    cmpID = Integer.parseInt(in.readLine());
        	     break;
     	 } catch (Exception e) {
       	  System.out.println("Your input is invalid!");
@@ -1756,8 +2863,10 @@ try{
       "\n\n-------------------------------------\n" +
       "              REPAIRS Made                             \n" +
       "------------------------------------------\n");
-      query = "SELECT M.name, R.rID, R.repairType, R.hotelID, R.roomNo FROM Repair R, MaintenanceCompany M WHERE M.cmpID = " + name + " AND M.cmpID = R.mCompany;";
-     esql.executeQuery(query);
+     String page = listRepairsMade(esql, cmpID, null);
+     while (page != null && nextPage()){
+        page = listRepairsMade(esql, cmpID, page);
+     }//end while
      System.out.println(
          "\n\n-------------------------------------\n");
   } catch (Exception e) {
@@ -1766,15 +2875,88 @@ try{
 
 }//end listRepairsMade 
 
+   /**
+    * Writes the repairs made by a maintenance company.
+    *
+    * @throws java.sql.SQLException when the query fails
+    */
+   public static void listRepairsMade(DBProject esql, int cmpID) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         if (esql._engine != null){
+            esql._engine.repairsByCompany(esql._sink, cmpID, Integer.MIN_VALUE);
+            return;
+         }//end if
+         esql.executeReport(Queries.REPAIRS_BY_COMPANY, cmpID);
+      }finally{
+         esql._stats.op(Operation.REPAIRS_BY_COMPANY, start);
+      }//end try
+   }//end listRepairsMade
+
+   /**
+    * Writes one page of the repairs made by a maintenance company, ordered
+    * by repair id.  The page starts after the last row of the previous
+    * page, so each page costs the same.
+    *
+    * @param page the token returned for the previous page, or null for the
+    *        first page
+    * @return the token of the next page, or null after the last page
+    * @throws java.sql.SQLException when the query fails
+    * @throws IllegalArgumentException when the token is not one of this
+    *         company
+    */
+   public static String listRepairsMade(DBProject esql, int cmpID, String page) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         Object[] listing = { Operation.REPAIRS_BY_COMPANY.getCode(), cmpID };
+         int after = Integer.MIN_VALUE;
+         if (page != null){
+            after = Integer.parseInt(Page.key(page, listing, 1)[0]);
+         }//end if
+         // the key is rid, the second column.
+         Page rows = new Page(esql._sink, esql._pageSize, 1);
+         if (esql._engine != null){
+            esql._engine.repairsByCompany(rows, cmpID, after);
+         }else{
+            esql.executeReport(rows, Queries.REPAIRS_BY_COMPANY_PAGE, cmpID, after, rows.limit());
+         }//end if
+         return rows.hasMore() ? Page.token(listing[0], listing[1], rows.lastKey()[0]) : null;
+      }finally{
+         esql._stats.op(Operation.REPAIRS_BY_COMPANY, start);
+      }//end try
+   }//end listRepairsMade
+
+   /*
+    * Asks whether to show the next page of a listing.
+    * @return false when the user stops, or at the end of the input
+    **/
+   private static boolean nextPage() throws IOException {
+      System.out.print("Press Enter for the next page, or q to stop: ");
+      String line = in.readLine();
+      return line != null && !line.trim().toLowerCase().startsWith("q");
+   }//end nextPage
+
    
    public static void topKMaintenanceCompany(DBProject esql){//DONE
 	  // List Top K Maintenance Company Names based on total repair count (descending order)
-  String k;
-  String query;
+  int k;
   while(true) {
      System.out.println("Please enter a range: ");
      try {
-        k = in.readLine();
+        k = Integer.parseInt(in.readLine());
+        break;
+     } catch (Exception e) {
+        System.out.println("Your input is invalid!");
+        continue;
+     }
+  }
+  int window;
+  while(true) {
+     System.out.println("Please enter a window in days (30, 90 or 365; blank for all time): ");
+     try {
+        String line = in.readLine().trim();
+        window = line.isEmpty() ? 0 : Integer.parseInt(line);
+        RepairLeaderboard.window(window);
         break;
      } catch (Exception e) {
         System.out.println("Your input is invalid!");
@@ -1788,8 +2970,7 @@ try{
       "\n\n-------------------------------------\n" +
       "              FIND REPAIRS PER YEAR      	               \n" +
       "------------------------------------------\n");
-     query = "SELECT M.name, COUNT(DISTINCT R.rID)\nFROM MaintenanceCompany M, Repair R WHERE M.cmpID = R.mCompany GROUP BY M.name ORDER BY COUNT(DISTINCT R.rID) DESC LIMIT " + k + ";";
-     esql.executeQuery(query);
+     topKMaintenanceCompany(esql, k, window);
      System.out.println(
          "\n\n-------------------------------------\n");
   } catch (Exception e) {
@@ -1798,6 +2979,40 @@ try{
       
 	 
    }//end topKMaintenanceCompany
+
+   /**
+    * Writes the k maintenance companies with the most repairs, all-time or
+    * over the window of days ending today.
+    *
+    * @param window 0 for all-time, or one of RepairLeaderboard.WINDOWS
+    * @throws java.sql.SQLException when the query fails
+    */
+   public static void topKMaintenanceCompany(DBProject esql, int k, int window) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         RepairLeaderboard.window(window);
+         if (esql._engine != null){
+            esql._engine.topCompanies(esql._sink, k, window);
+            return;
+         }//end if
+         if (esql._leaderboard.isBuilt()){
+            try{
+               esql._leaderboard.writeTop(esql._sink, k, window);
+            }catch (IOException e){
+               throw new SQLException ("Unable to write result: " + e.getMessage ());
+            }//end try
+            return;
+         }//end if
+         if (window == 0){
+            esql.executeReport(Queries.TOP_K_MAINTENANCE_COMPANIES, k);
+         }else{
+            java.sql.Date today = today();
+            esql.executeReport(Queries.TOP_K_MAINTENANCE_COMPANIES_SINCE, addDays(today, -window), today, k);
+         }//end if
+      }finally{
+         esql._stats.op(Operation.TOP_K_MAINTENANCE_COMPANIES, start);
+      }//end try
+   }//end topKMaintenanceCompany
    
    public static void numberOfRepairsForEachRoomPerYear(DBProject esql){
 	  // Given a hotelID, roomNo, get the count of repairs per year
@@ -1825,19 +3040,35 @@ try{
   }
   
    
-   String query;
    try {
       System.out.println(
       "\n\n-------------------------------------\n" +
       "              FIND REPAIRS PER YEAR      	               \n" +
       "------------------------------------------\n");
-      query = "SELECT EXTRACT (YEAR FROM R.repairDate), COUNT(R.repairType) FROM Repair R WHERE R.roomNo = " + roomNum + " AND R.hotelID = " + hotelID + " GROUP BY EXTRACT(YEAR FROM R.repairDate) ORDER BY EXTRACT(YEAR FROM R.repairDate) DESC";
-      esql.executeQuery(query);
+      numberOfRepairsForEachRoomPerYear(esql, hotelID, roomNum);
       System.out.println(
          "\n\n-------------------------------------\n");
   } catch (Exception e) {
      System.err.println(e.getMessage());
   }
-   }//end listRepairsMade
+   }//end numberOfRepairsForEachRoomPerYear
+
+   /**
+    * Writes the number of repairs per year of a hotel room.
+    *
+    * @throws java.sql.SQLException when the query fails
+    */
+   public static void numberOfRepairsForEachRoomPerYear(DBProject esql, int hotelID, int roomNo) throws SQLException {
+      long start = System.nanoTime();
+      try{
+         if (esql._engine != null){
+            esql._engine.repairsPerYear(esql._sink, hotelID, roomNo);
+            return;
+         }//end if
+         esql.executeReport(Queries.REPAIRS_PER_YEAR, roomNo, hotelID);
+      }finally{
+         esql._stats.op(Operation.REPAIRS_PER_YEAR, start);
+      }//end try
+   }//end numberOfRepairsForEachRoomPerYear
 
 }//end DBProject
@@ -0,0 +1,469 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes synthetic versions of the nine data/*.csv files at a scale
+ * factor: factor 1 has the row counts of the shipped data (1000 hotels,
+ * 10 rooms and 5 staff per hotel, 2000 customers, 20 companies, 4000
+ * bookings, 2000 repairs with one request each, 2000 assignments), and
+ * every count grows linearly with the factor.  The files load with
+ * BulkLoader like the shipped ones.
+ *
+ * Every foreign key in sql/create.sql holds: staff work for existing
+ * hotels, each hotel has exactly one Manager (so constraints.sql can fill
+ * Hotel.manager), bookings, repairs and assignments point at existing
+ * rooms, customers, companies and HouseCleaning staff of the room's hotel,
+ * and request i is raised by the manager of the hotel of repair i.  No
+ * room is booked twice on the same day.  Each table also gets the ID 0
+ * placeholder row the ON DELETE SET DEFAULT keys fall back to.
+ *
+ * The data is skewed the way front-desk data is: booking volume grows
+ * year over year and peaks in summer and on weekends; hotels and customers
+ * are picked from Zipf distributions, so a few hotels are busy and many
+ * customers come back; prices depend on the room type, season and year,
+ * with a long upper tail; and a few maintenance companies get most of the
+ * repairs.
+ *
+ * Each file is written by its own thread, row by row through a buffered
+ * stream.  Rows are derived from their IDs and a running random stream,
+ * so memory use does not grow with the scale factor (bookings keep the
+ * rooms taken on the current day only).  Output is a function of the
+ * factor and the seed.
+ *
+ * Usage: java DataGenerator &lt;scale factor&gt; &lt;output dir&gt; [&lt;seed&gt;]
+ *
+ */
+public class DataGenerator {
+
+   // rows per unit of scale factor.
+   static final int HOTELS = 1000;
+   static final int ROOMS_PER_HOTEL = 10;
+   static final int CUSTOMERS = 2000;
+   static final int COMPANIES = 20;
+   static final int BOOKINGS = 4000;
+   static final int REPAIRS = 2000;
+   static final int ASSIGNMENTS = 2000;
+
+   // the span of booking, repair and request dates.
+   static final int FIRST_DAY = DBProject.epochDay (2000, 1, 1);
+   static final int LAST_DAY = DBProject.epochDay (2018, 12, 31);
+
+   // the staff of every hotel, in SSN order.
+   private static final String[] ROLES = { "Manager", "Receptionist", "Receptionist", "HouseCleaning", "HouseCleaning" };
+   private static final int[] MANAGERS = { 0 };
+   private static final int[] HOUSE_CLEANING = { 3, 4 };
+   private static final String[] GENDERS = { "Male", "Female", "Other" };
+   private static final String[] REPAIR_TYPES = { "Small", "Medium", "Large" };
+
+   private final int _scale;
+   private final File _dir;
+   private final long _seed;
+
+   private final int _hotels;
+   private final int _customers;
+   private final int _companies;
+
+   /**
+    * @param scale the scale factor, 1 for the size of the shipped data
+    * @param dir the folder the csv files are written to
+    * @param seed the random seed
+    */
+   public DataGenerator (int scale, File dir, long seed) {
+      if (scale < 1){
+         throw new IllegalArgumentException ("The scale factor must be at least 1: " + scale);
+      }//end if
+      this._scale = scale;
+      this._dir = dir;
+      this._seed = seed;
+      this._hotels = HOTELS * scale;
+      this._customers = CUSTOMERS * scale;
+      this._companies = COMPANIES * scale;
+   }//end DataGenerator
+
+   public static void main (String[] args) throws Exception {
+      if (args.length < 2 || args.length > 3){
+         System.err.println ("Usage: java DataGenerator <scale factor> <output dir> [<seed>]");
+         return;
+      }//end if
+      DataGenerator generator = new DataGenerator (Integer.parseInt (args[0]), new File (args[1]),
+                                                   args.length == 3 ? Long.parseLong (args[2]) : 1L);
+      generator.run ();
+   }//end main
+
+   /**
+    * A csv file and how its rows are made.
+    */
+   abstract class Table implements Callable<Long> {
+      final String file;
+      final int index;
+
+      Table (String file, int index) {
+         this.file = file;
+         this.index = index;
+      }//end Table
+
+      /**
+       * Writes the rows after the placeholder row.
+       *
+       * @return the number of rows written
+       */
+      abstract long rows (Writer out, Random random) throws IOException;
+
+      String label () {
+         return this.file;
+      }//end label
+
+      public Long call () throws IOException {
+         Writer out = new BufferedWriter (new OutputStreamWriter (
+            new FileOutputStream (new File (DataGenerator.this._dir, this.file)), "UTF-8"), 1 << 20);
+         try{
+            return rows (out, new Random (DataGenerator.this._seed * 31 + this.index));
+         }finally{
+            out.close ();
+         }//end try
+      }//end call
+   }//end Table
+
+   /**
+    * Writes every file, in parallel, and prints the row counts.
+    *
+    * @throws java.lang.Exception when a file cannot be written
+    */
+   public void run () throws Exception {
+      if (!this._dir.isDirectory () && !this._dir.mkdirs ()){
+         throw new IOException ("Unable to create " + this._dir);
+      }//end if
+      List<Table> tables = tables ();
+      long start = System.nanoTime ();
+      ExecutorService pool = Executors.newFixedThreadPool (
+         Math.min (tables.size (), Runtime.getRuntime ().availableProcessors ()));
+      try{
+         List<Future<Long>> results = new ArrayList<Future<Long>> ();
+         for (Table table : tables){
+            results.add (pool.submit (table));
+         }//end for
+         long total = 0;
+         for (int i = 0; i < tables.size (); ++i){
+            long rows = results.get (i).get ();
+            total += rows;
+            System.out.printf ("%-24s %12d rows%n", tables.get (i).label (), rows);
+         }//end for
+         System.out.printf ("scale %d: %d rows in %.1f s%n", this._scale, total,
+                            (System.nanoTime () - start) / 1e9);
+      }finally{
+         pool.shutdown ();
+      }//end try
+   }//end run
+
+   List<Table> tables () {
+      List<Table> tables = new ArrayList<Table> ();
+      tables.add (new Table ("hotel.csv", 1) {
+         long rows (Writer out, Random random) throws IOException {
+            out.write ("0,default,\\N\n");
+            for (int h = 1; h <= _hotels; ++h){
+               out.write (h + "," + word (random, 6) + ",\\N\n");
+            }//end for
+            return _hotels + 1;
+         }
+      });
+      tables.add (new Table ("staff.csv", 2) {
+         long rows (Writer out, Random random) throws IOException {
+            out.write ("0,default,default,default,Manager,0\n");
+            int ssn = 0;
+            for (int h = 1; h <= _hotels; ++h){
+               for (String role : ROLES){
+                  out.write (++ssn + "," + word (random, 4) + "," + word (random, 4) + ","
+                             + word (random, 6) + "," + role + "," + h + "\n");
+               }//end for
+            }//end for
+            return ssn + 1;
+         }
+      });
+      tables.add (new Table ("room.csv", 3) {
+         long rows (Writer out, Random random) throws IOException {
+            out.write ("0,0,default\n");
+            for (int h = 1; h <= _hotels; ++h){
+               for (int r = 1; r <= ROOMS_PER_HOTEL; ++r){
+                  out.write (h + "," + r + "," + roomType (h, r) + "\n");
+               }//end for
+            }//end for
+            return (long) _hotels * ROOMS_PER_HOTEL + 1;
+         }
+      });
+      tables.add (new Table ("customer.csv", 4) {
+         long rows (Writer out, Random random) throws IOException {
+            out.write ("0,default,default,default,0,1/1/2000,Male\n");
+            int firstDob = DBProject.epochDay (1930, 1, 1);
+            int dobs = DBProject.epochDay (2000, 12, 31) - firstDob + 1;
+            for (int c = 1; c <= _customers; ++c){
+               long phone = 2000000000L + (long) (random.nextDouble () * 7999999999L);
+               out.write (c + "," + word (random, 4) + "," + word (random, 4) + "," + word (random, 6) + ","
+                          + phone + "," + mdy (firstDob + random.nextInt (dobs)) + ","
+                          + GENDERS[random.nextInt (GENDERS.length)] + "\n");
+            }//end for
+            return _customers + 1;
+         }
+      });
+      tables.add (new Table ("maintenanceCompany.csv", 5) {
+         long rows (Writer out, Random random) throws IOException {
+            out.write ("0,default,default,TRUE\n");
+            for (int m = 1; m <= _companies; ++m){
+               out.write (m + "," + word (random, 4) + "," + word (random, 6) + ","
+                          + (random.nextInt (5) == 0 ? "FALSE" : "TRUE") + "\n");
+            }//end for
+            return _companies + 1;
+         }
+      });
+      tables.add (new Table ("booking.csv", 6) {
+         long rows (Writer out, Random random) throws IOException {
+            out.write ("0,0,0,0,1/1/2000,0,0\n");
+            return bookings (out, random);
+         }
+      });
+      tables.add (new Table ("repair.csv", 7) {
+         String label () {
+            return "repair.csv, request.csv";
+         }
+         long rows (Writer out, Random random) throws IOException {
+            // request i is raised for repair i, so both files come from the
+            // same pass.
+            Writer requests = new BufferedWriter (new OutputStreamWriter (
+               new FileOutputStream (new File (_dir, "request.csv")), "UTF-8"), 1 << 20);
+            try{
+               out.write ("0,0,0,0,1/1/2000,default,Small\n");
+               requests.write ("0,0,0,1/1/2000,default\n");
+               return repairs (out, requests, random);
+            }finally{
+               requests.close ();
+            }//end try
+         }
+      });
+      tables.add (new Table ("assigned.csv", 8) {
+         long rows (Writer out, Random random) throws IOException {
+            out.write ("0,0,0,0\n");
+            int assignments = ASSIGNMENTS * _scale;
+            for (int a = 1; a <= assignments; ++a){
+               int h = 1 + random.nextInt (_hotels);
+               out.write (a + "," + staff (h, HOUSE_CLEANING, random) + "," + h + ","
+                          + (1 + random.nextInt (ROOMS_PER_HOTEL)) + "\n");
+            }//end for
+            return assignments + 1;
+         }
+      });
+      return tables;
+   }//end tables
+
+   /*
+    * Writes the bookings day by day: each day gets its share of the total
+    * by its weight (growth, season, weekday), and its rooms are drawn from
+    * a Zipf distribution over hotels, skipping rooms already taken that day.
+    * @return the number of rows written, placeholder included
+    **/
+   private long bookings (Writer out, Random random) throws IOException {
+      long total = (long) BOOKINGS * this._scale;
+      double sum = 0;
+      for (int day = FIRST_DAY; day <= LAST_DAY; ++day){
+         sum += bookingWeight (day);
+      }//end for
+      int hotelPrime = coprime (this._hotels);
+      int customerPrime = coprime (this._customers);
+      int rooms = this._hotels * ROOMS_PER_HOTEL;
+      Set<Long> taken = new HashSet<Long> ();
+      double due = 0;
+      long bID = 0;
+      for (int day = FIRST_DAY; day <= LAST_DAY && bID < total; ++day){
+         due += total * bookingWeight (day) / sum;
+         long target = day == LAST_DAY ? total : Math.min ((long) due, total);
+         long count = Math.min (target - bID, rooms / 2);
+         String date = mdy (day);
+         double season = season (day);
+         double inflation = Math.pow (1.03, DBProject.civil (day)[0] - 2000);
+         taken.clear ();
+         for (long i = 0; i < count; ++i){
+            int h;
+            int r;
+            do{
+               h = permute (zipf (random, this._hotels, 0.9), this._hotels, hotelPrime);
+               r = 1 + random.nextInt (ROOMS_PER_HOTEL);
+            }while (!taken.add ((long) h * ROOMS_PER_HOTEL + r));
+            int customer = permute (zipf (random, this._customers, 0.6), this._customers, customerPrime);
+            String type = roomType (h, r);
+            int people = 1 + random.nextInt (type.equals ("Suite") ? 4 : type.equals ("Deluxe") ? 3 : 2);
+            out.write (++bID + "," + customer + "," + h + "," + r + "," + date + "," + people + ","
+                       + DBProject.fromCents (price (random, type, season, inflation)) + "\n");
+         }//end for
+      }//end for
+      return bID + 1;
+   }//end bookings
+
+   /*
+    * Writes the repairs day by day, slowly growing in number as the hotels
+    * age, with one request per repair dated up to a month before it.
+    * @return the number of repair rows written, placeholder included
+    **/
+   private long repairs (Writer out, Writer requests, Random random) throws IOException {
+      long total = (long) REPAIRS * this._scale;
+      double sum = 0;
+      for (int day = FIRST_DAY; day <= LAST_DAY; ++day){
+         sum += repairWeight (day);
+      }//end for
+      int companyPrime = coprime (this._companies);
+      double due = 0;
+      long rID = 0;
+      for (int day = FIRST_DAY; day <= LAST_DAY && rID < total; ++day){
+         due += total * repairWeight (day) / sum;
+         long count = (day == LAST_DAY ? total : Math.min ((long) due, total)) - rID;
+         String date = mdy (day);
+         for (long i = 0; i < count; ++i){
+            int h = 1 + random.nextInt (this._hotels);
+            int company = permute (zipf (random, this._companies, 1.1), this._companies, companyPrime);
+            out.write (++rID + "," + h + "," + (1 + random.nextInt (ROOMS_PER_HOTEL)) + "," + company + ","
+                       + date + "," + word (random, 4) + "," + REPAIR_TYPES[random.nextInt (REPAIR_TYPES.length)]
+                       + "\n");
+            requests.write (rID + "," + staff (h, MANAGERS, random) + "," + rID + ","
+                            + mdy (Math.max (FIRST_DAY, day - random.nextInt (31))) + "," + word (random, 4)
+                            + "\n");
+         }//end for
+      }//end for
+      return rID + 1;
+   }//end repairs
+
+   /*
+    * Relative booking volume of a day: 12% growth a year, a summer peak
+    * at the middle of July, and busier Fridays and Saturdays.
+    **/
+   static double bookingWeight (int day) {
+      // 1970-01-01 was a Thursday; 0 is Sunday.
+      int weekday = ((day + 4) % 7 + 7) % 7;
+      return Math.pow (1.12, DBProject.civil (day)[0] - 2000) * season (day)
+         * (weekday == 5 || weekday == 6 ? 1.3 : 1.0);
+   }//end bookingWeight
+
+   static double repairWeight (int day) {
+      return Math.pow (1.05, DBProject.civil (day)[0] - 2000);
+   }//end repairWeight
+
+   /*
+    * Seasonal factor between 0.5 in mid January and 1.5 in mid July.
+    **/
+   static double season (int day) {
+      int year = DBProject.civil (day)[0];
+      int dayOfYear = day - DBProject.epochDay (year, 1, 1);
+      return 1.0 + 0.5 * Math.cos (2 * Math.PI * (dayOfYear - 196) / 365.25);
+   }//end season
+
+   /*
+    * A nightly price in cents: a base per room type, scaled by season and
+    * inflation, with log-normal noise that gives the long upper tail, and
+    * kept within Numeric(6,2).
+    **/
+   static long price (Random random, String type, double season, double inflation) {
+      double base = type.equals ("Suite") ? 450 : type.equals ("Deluxe") ? 220 : 90;
+      double price = base * (0.75 + 0.5 * season) * inflation * Math.exp (0.35 * random.nextGaussian ());
+      return Math.max (2000L, Math.min (999999L, Math.round (price * 100)));
+   }//end price
+
+   /*
+    * The type of a room, fixed by its key so bookings agree with room.csv:
+    * half Economy, three in ten Suite, one in five Deluxe.
+    **/
+   static String roomType (int hotelID, int roomNo) {
+      int bucket = (int) ((mix ((long) hotelID * 1000003L + roomNo) >>> 1) % 10);
+      return bucket < 5 ? "Economy" : bucket < 8 ? "Suite" : "Deluxe";
+   }//end roomType
+
+   /*
+    * The SSN of a staff member of a hotel, picked among the given
+    * positions in ROLES.
+    **/
+   static int staff (int hotelID, int[] positions, Random random) {
+      return (hotelID - 1) * ROLES.length + 1 + positions[random.nextInt (positions.length)];
+   }//end staff
+
+   /*
+    * A rank in 1..n from a Zipf-like power law with exponent s, by
+    * inverting its continuous approximation; no table of n weights is kept.
+    **/
+   static int zipf (Random random, int n, double s) {
+      double u = random.nextDouble ();
+      double x;
+      if (Math.abs (s - 1.0) < 1e-9){
+         x = Math.exp (u * Math.log (n + 1.0));
+      }else{
+         double a = 1.0 - s;
+         x = Math.pow ((Math.pow (n + 1.0, a) - 1.0) * u + 1.0, 1.0 / a);
+      }//end if
+      return (int) Math.max (1, Math.min (n, (long) x));
+   }//end zipf
+
+   /*
+    * Maps a rank to an ID so that the popular IDs are spread over 1..n
+    * instead of being the lowest ones.
+    **/
+   static int permute (int rank, int n, int prime) {
+      return (int) ((rank - 1L) * prime % n) + 1;
+   }//end permute
+
+   /*
+    * A multiplier coprime to n, so that permute() is a bijection, near the
+    * golden ratio of n so that neighbouring ranks land far apart.
+    **/
+   static int coprime (int n) {
+      int p = Math.max (1, (int) (n * 0.6180339887));
+      while (gcd (p, n) != 1){
+         ++p;
+      }//end while
+      return p;
+   }//end coprime
+
+   private static int gcd (int a, int b) {
+      while (b != 0){
+         int t = a % b;
+         a = b;
+         b = t;
+      }//end while
+      return a;
+   }//end gcd
+
+   /*
+    * The splitmix64 finalizer.
+    **/
+   static long mix (long z) {
+      z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+      z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+      return z ^ (z >>> 31);
+   }//end mix
+
+   /*
+    * A date as m/d/yyyy, the format of the shipped files.
+    **/
+   static String mdy (int epochDay) {
+      int[] ymd = DBProject.civil (epochDay);
+      return ymd[1] + "/" + ymd[2] + "/" + ymd[0];
+   }//end mdy
+
+   /*
+    * Random lower case letters, like the names in the shipped files.
+    **/
+   static String word (Random random, int length) {
+      char[] chars = new char[length];
+      for (int i = 0; i < length; ++i){
+         chars[i] = (char) ('a' + random.nextInt (26));
+      }//end for
+      return new String (chars);
+   }//end word
+
+}//end DataGenerator
@@ -0,0 +1,102 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out primary keys for the entity tables from the id sequences in
+ * sql/create.sql, using hi-lo allocation: one nextval reserves a block of
+ * BLOCK_SIZE consecutive ids that this client then assigns locally.  Ids
+ * are therefore unique across concurrent clients without scanning the
+ * table, and only one in BLOCK_SIZE inserts pays a round trip.  Ids left
+ * in a block when the program exits are simply never used.
+ *
+ */
+public class IdAllocator {
+
+   // must match the INCREMENT BY of the sequences in sql/create.sql.
+   public static final int BLOCK_SIZE = 50;
+
+   public static final String HOTEL = "hotel_id_seq";
+   public static final String STAFF = "staff_id_seq";
+   public static final String CUSTOMER = "customer_id_seq";
+   public static final String MAINTENANCE_COMPANY = "maintenancecompany_id_seq";
+   public static final String BOOKING = "booking_id_seq";
+   public static final String REPAIR = "repair_id_seq";
+   public static final String REQUEST = "request_id_seq";
+   public static final String ASSIGNED = "assigned_id_seq";
+
+   private static final String NEXT_BLOCK = "SELECT nextval(CAST(? AS regclass))";
+
+   /**
+    * The ids reserved for one sequence: next up to, excluding, limit.  The
+    * lock is held across the nextval round trip, so it is a ReentrantLock:
+    * a server session on a virtual thread blocking inside synchronized
+    * would pin its carrier thread.
+    */
+   private static class Block {
+      final Lock lock = new ReentrantLock ();
+      long next = 0;
+      long limit = 0;
+   }//end Block
+
+   private final ConnectionPool _pool;
+   private final Map<String, Block> _blocks = new HashMap<String, Block> ();
+
+   public IdAllocator (ConnectionPool pool) {
+      this._pool = pool;
+   }//end IdAllocator
+
+   /**
+    * Returns a new id for the table backed by a sequence.
+    *
+    * @param sequence one of the sequence name constants
+    * @return an id no other client has been or will be given
+    * @throws java.sql.SQLException when a new block cannot be reserved
+    */
+   public int next (String sequence) throws SQLException {
+      Block block;
+      synchronized (this._blocks){
+         block = this._blocks.get (sequence);
+         if (block == null){
+            block = new Block ();
+            this._blocks.put (sequence, block);
+         }//end if
+      }//end synchronized
+      block.lock.lock ();
+      try{
+         if (block.next == block.limit){
+            block.next = reserve (sequence);
+            block.limit = block.next + BLOCK_SIZE;
+         }//end if
+         long id = block.next++;
+         if (id > Integer.MAX_VALUE){
+            throw new SQLException ("Sequence " + sequence + " exhausted the integer id range");
+         }//end if
+         return (int) id;
+      }finally{
+         block.lock.unlock ();
+      }//end try
+   }//end next
+
+   private long reserve (String sequence) throws SQLException {
+      PooledConnection conn = this._pool.borrow ();
+      try{
+         PreparedStatement stmt = conn.prepare (NEXT_BLOCK);
+         stmt.setString (1, sequence);
+         ResultSet rs = stmt.executeQuery ();
+         try{
+            rs.next ();
+            return rs.getLong (1);
+         }finally{
+            rs.close ();
+         }//end try
+      }finally{
+         this._pool.release (conn);
+      }//end try
+   }//end reserve
+
+}//end IdAllocator
@@ -0,0 +1,568 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Recommends the secondary indexes for the DBProject workload.
+ *
+ * Every lookup template of Queries is run under EXPLAIN ANALYZE, first with
+ * only the primary keys in place and then once per candidate index, on each
+ * of the given databases (one per data scale).  For every candidate the
+ * cost it adds to inserts is measured as well, by copying rows of its table.
+ * All of this happens inside transactions that are rolled back, so the
+ * databases are left as they were; the existing indexes are dropped for the
+ * duration of each trial, which locks the tables, so run the advisor
+ * against scratch copies of the data.
+ *
+ * A candidate is kept when, at the largest scale, it makes some template
+ * at least advisor.minGain (default 0.25) faster and its read benefit
+ * outweighs its insert cost weighted by advisor.writeRatio (inserts per
+ * lookup, default 0.1).  Of the kept candidates only the best one per
+ * template survives, and an index that is a prefix of another survivor is
+ * dropped.  The result is printed as a report and written as SQL: DROP
+ * INDEX for every existing secondary index not recommended, then CREATE
+ * INDEX for the recommended set.
+ *
+ * Usage: java IndexAdvisor &lt;port&gt; &lt;user&gt; &lt;dbname&gt;[,&lt;dbname&gt;...] [&lt;output.sql&gt;]
+ *        with the databases listed from the smallest scale to the largest.
+ *
+ */
+public class IndexAdvisor {
+
+   /**
+    * Sample key values drawn from the data, used to bind the templates.
+    */
+   static class Sample {
+      int hotelID;
+      int roomNo;
+      int customer;
+      java.sql.Date date;
+      int repairHotelID;
+      int repairRoomNo;
+      int company;
+      int staff;
+   }//end Sample
+
+   /**
+    * A query template of the workload and how to bind it from a sample.
+    */
+   static abstract class Template {
+      final String name;
+      final String sql;
+
+      Template (String name, String sql) {
+         this.name = name;
+         this.sql = sql;
+      }//end Template
+
+      abstract Object[] params (Sample s);
+   }//end Template
+
+   /**
+    * An index that may be recommended.
+    */
+   static class Candidate {
+      final String table;
+      final String[] columns;
+
+      Candidate (String table, String... columns) {
+         this.table = table;
+         this.columns = columns;
+      }//end Candidate
+
+      String name () {
+         StringBuilder name = new StringBuilder ("inx").append (this.table.toLowerCase ());
+         for (String column : this.columns){
+            name.append ('_').append (column.toLowerCase ());
+         }//end for
+         return name.toString ();
+      }//end name
+
+      String create () {
+         StringBuilder sql = new StringBuilder ("CREATE INDEX IF NOT EXISTS ").append (name ())
+            .append (" ON ").append (this.table).append (" USING BTREE(");
+         for (int i = 0; i < this.columns.length; ++i){
+            sql.append (i == 0 ? "" : ", ").append (this.columns[i]);
+         }//end for
+         return sql.append (')').toString ();
+      }//end create
+
+      boolean isPrefixOf (Candidate other) {
+         if (!this.table.equalsIgnoreCase (other.table) || this.columns.length > other.columns.length){
+            return false;
+         }//end if
+         for (int i = 0; i < this.columns.length; ++i){
+            if (!this.columns[i].equalsIgnoreCase (other.columns[i])){
+               return false;
+            }//end if
+         }//end for
+         return true;
+      }//end isPrefixOf
+   }//end Candidate
+
+   // the lookups of the menu operations; the inserts are measured separately.
+   static final Template[] TEMPLATES = {
+      new Template ("5/find-booking", Queries.FIND_CUSTOMER_BOOKING) {
+         Object[] params (Sample s) { return new Object[] { s.hotelID, s.roomNo, s.customer }; }
+      },
+      new Template ("6/show-assignments", Queries.SHOW_ASSIGNMENTS_OF_STAFF) {
+         Object[] params (Sample s) { return new Object[] { s.staff }; }
+      },
+      new Template ("8/available-rooms", Queries.AVAILABLE_ROOMS) {
+         Object[] params (Sample s) { return new Object[] { s.hotelID, s.date, DBProject.addDays (s.date, 6) }; }
+      },
+      new Template ("9/booked-rooms", Queries.BOOKED_ROOMS) {
+         Object[] params (Sample s) { return new Object[] { s.hotelID }; }
+      },
+      new Template ("10/bookings-for-week", Queries.BOOKINGS_FOR_WEEK) {
+         Object[] params (Sample s) { return new Object[] { s.hotelID, s.date, DBProject.addDays (s.date, 6) }; }
+      },
+      new Template ("10/bookings-for-week-page", Queries.BOOKINGS_FOR_WEEK_PAGE) {
+         Object[] params (Sample s) {
+            return new Object[] { s.hotelID, s.date, DBProject.addDays (s.date, 6), s.date, s.roomNo, 51 };
+         }
+      },
+      new Template ("11/top-k-room-prices", Queries.TOP_K_ROOM_PRICES) {
+         Object[] params (Sample s) { return new Object[] { s.date, DBProject.addDays (s.date, 30), 10 }; }
+      },
+      new Template ("12/top-k-customer-prices", Queries.TOP_K_CUSTOMER_PRICES) {
+         Object[] params (Sample s) { return new Object[] { s.customer, 10 }; }
+      },
+      new Template ("13/customer-total-cost", Queries.CUSTOMER_TOTAL_COST) {
+         Object[] params (Sample s) {
+            return new Object[] { s.hotelID, s.customer, DBProject.addDays (s.date, -365), DBProject.addDays (s.date, 365) };
+         }
+      },
+      new Template ("14/repairs-by-company", Queries.REPAIRS_BY_COMPANY) {
+         Object[] params (Sample s) { return new Object[] { s.company }; }
+      },
+      new Template ("14/repairs-by-company-page", Queries.REPAIRS_BY_COMPANY_PAGE) {
+         Object[] params (Sample s) { return new Object[] { s.company, 0, 51 }; }
+      },
+      new Template ("15/top-k-companies", Queries.TOP_K_MAINTENANCE_COMPANIES) {
+         Object[] params (Sample s) { return new Object[] { 5 }; }
+      },
+      new Template ("16/repairs-per-year", Queries.REPAIRS_PER_YEAR) {
+         Object[] params (Sample s) { return new Object[] { s.repairRoomNo, s.repairHotelID }; }
+      },
+   };
+
+   // indexes worth trying: the columns the templates filter, join, group
+   // and sort on, in the orders that match their predicates.
+   static final Candidate[] CANDIDATES = {
+      new Candidate ("Booking", "hotelID"),
+      new Candidate ("Booking", "bookingDate"),
+      new Candidate ("Booking", "customer"),
+      new Candidate ("Booking", "price"),
+      new Candidate ("Booking", "hotelID", "bookingDate", "roomNo"),
+      new Candidate ("Booking", "hotelID", "roomNo", "bookingDate"),
+      new Candidate ("Booking", "customer", "price"),
+      new Candidate ("Booking", "customer", "hotelID", "bookingDate", "price"),
+      new Candidate ("Booking", "bookingDate", "price"),
+      new Candidate ("Repair", "mCompany"),
+      new Candidate ("Repair", "mCompany", "rID"),
+      new Candidate ("Repair", "hotelID", "roomNo"),
+      new Candidate ("Repair", "hotelID", "roomNo", "repairDate"),
+      new Candidate ("Assigned", "staffID"),
+      new Candidate ("Staff", "employerID"),
+      new Candidate ("Request", "repairID"),
+   };
+
+   // copies rows of a table under fresh keys to time inserts; dates are
+   // shifted so that (hotelID, roomNo, bookingDate) stays unique.
+   static final Map<String, String> COPY_ROWS = new LinkedHashMap<String, String> ();
+   static {
+      COPY_ROWS.put ("booking",
+         "INSERT INTO Booking SELECT bID + m.id, customer, hotelID, roomNo, bookingDate + 36500, noOfPeople, price " +
+         "FROM Booking, (SELECT COALESCE(MAX(bID), 0) AS id FROM Booking) m ORDER BY bID LIMIT ?");
+      COPY_ROWS.put ("repair",
+         "INSERT INTO Repair SELECT rID + m.id, hotelID, roomNo, mCompany, repairDate, description, repairType " +
+         "FROM Repair, (SELECT COALESCE(MAX(rID), 0) AS id FROM Repair) m ORDER BY rID LIMIT ?");
+      COPY_ROWS.put ("assigned",
+         "INSERT INTO Assigned SELECT asgID + m.id, staffID, hotelID, roomNo " +
+         "FROM Assigned, (SELECT COALESCE(MAX(asgID), 0) AS id FROM Assigned) m ORDER BY asgID LIMIT ?");
+      COPY_ROWS.put ("staff",
+         "INSERT INTO Staff SELECT SSN + m.id, fName, lName, address, role, employerID " +
+         "FROM Staff, (SELECT COALESCE(MAX(SSN), 0) AS id FROM Staff) m ORDER BY SSN LIMIT ?");
+      COPY_ROWS.put ("request",
+         "INSERT INTO Request SELECT reqID + m.id, managerID, repairID, requestDate, description " +
+         "FROM Request, (SELECT COALESCE(MAX(reqID), 0) AS id FROM Request) m ORDER BY reqID LIMIT ?");
+   }//end static
+
+   private static final String SECONDARY_INDEXES =
+      "SELECT i.relname, t.relname FROM pg_index x " +
+      "JOIN pg_class i ON i.oid = x.indexrelid JOIN pg_class t ON t.oid = x.indrelid " +
+      "JOIN pg_namespace n ON n.oid = t.relnamespace " +
+      "WHERE n.nspname = current_schema() AND NOT x.indisprimary AND NOT x.indisunique " +
+      // the per-partition copies of an index on a partitioned table go with it.
+      "AND NOT EXISTS (SELECT 1 FROM pg_inherits h WHERE h.inhrelid = i.oid) " +
+      "ORDER BY t.relname, i.relname";
+
+   private static final String SAMPLE_BOOKINGS =
+      "SELECT hotelID, roomNo, customer, bookingDate FROM Booking ORDER BY random() LIMIT ?";
+   private static final String SAMPLE_REPAIRS =
+      "SELECT hotelID, roomNo, mCompany FROM Repair ORDER BY random() LIMIT ?";
+   private static final String SAMPLE_STAFF =
+      "SELECT staffID FROM Assigned ORDER BY random() LIMIT ?";
+
+   private static final int SAMPLES = Integer.getInteger ("advisor.samples", 7);
+   private static final int WRITE_ROWS = Integer.getInteger ("advisor.writeRows", 2000);
+   private static final double MIN_GAIN = Double.parseDouble (System.getProperty ("advisor.minGain", "0.25"));
+   private static final double WRITE_RATIO = Double.parseDouble (System.getProperty ("advisor.writeRatio", "0.1"));
+
+   /**
+    * Measurements on one database: template times in milliseconds by
+    * configuration (0 is the primary keys only, i + 1 is CANDIDATES[i]),
+    * and insert cost in microseconds per row.
+    */
+   static class Scale {
+      final String dbname;
+      final double[][] millis = new double[CANDIDATES.length + 1][TEMPLATES.length];
+      final boolean[][] used = new boolean[CANDIDATES.length + 1][TEMPLATES.length];
+      final Map<String, Double> baseWriteMicros = new LinkedHashMap<String, Double> ();
+      final double[] writeMicros = new double[CANDIDATES.length];
+
+      Scale (String dbname) {
+         this.dbname = dbname;
+      }//end Scale
+   }//end Scale
+
+   private final List<Scale> _scales = new ArrayList<Scale> ();
+   private final Set<String> _existing = new TreeSet<String> ();
+
+   public static void main (String[] args) throws Exception {
+      if (args.length < 3 || args.length > 4){
+         System.err.println ("Usage: java IndexAdvisor <port> <user> <dbname>[,<dbname>...] [<output.sql>]");
+         return;
+      }//end if
+      Class.forName ("org.postgresql.Driver");
+      IndexAdvisor advisor = new IndexAdvisor ();
+      for (String dbname : args[2].split (",")){
+         String url = "jdbc:postgresql://localhost:" + args[0] + "/" + dbname;
+         ConnectionPool pool = new ConnectionPool (url, args[1], "", 1, 1, 60000L, 30000L);
+         try{
+            advisor.measure (dbname, pool);
+         }finally{
+            pool.close ();
+         }//end try
+      }//end for
+      List<Candidate> chosen = advisor.recommend ();
+      advisor.report (chosen);
+      Writer out = args.length == 4 ? new FileWriter (args[3]) : new PrintWriter (System.out);
+      try{
+         advisor.writeSql (chosen, out);
+      }finally{
+         out.flush ();
+         if (args.length == 4){
+            out.close ();
+         }//end if
+      }//end try
+   }//end main
+
+   /**
+    * Runs every template under every configuration on one database.
+    *
+    * @param dbname the database name, used in the report
+    * @param pool a pool connected to it
+    * @throws java.sql.SQLException when a trial fails
+    */
+   public void measure (String dbname, ConnectionPool pool) throws SQLException {
+      Scale scale = new Scale (dbname);
+      PooledConnection conn = pool.borrow ();
+      Connection c = conn.getConnection ();
+      try{
+         c.setAutoCommit (false);
+         Map<String, String> existing = secondaryIndexes (c);
+         this._existing.addAll (existing.keySet ());
+         Sample[] samples = samples (c);
+
+         for (int config = 0; config <= CANDIDATES.length; ++config){
+            Candidate candidate = config == 0 ? null : CANDIDATES[config - 1];
+            Statement stmt = c.createStatement ();
+            try{
+               for (String index : existing.keySet ()){
+                  stmt.execute ("DROP INDEX " + index);
+               }//end for
+               if (candidate != null){
+                  stmt.execute (candidate.create ());
+                  stmt.execute ("ANALYZE " + candidate.table);
+               }//end if
+               for (int t = 0; t < TEMPLATES.length; ++t){
+                  scale.millis[config][t] = explain (conn, TEMPLATES[t], samples,
+                     candidate == null ? null : candidate.name (), scale.used[config], t);
+               }//end for
+               if (candidate == null){
+                  for (String table : COPY_ROWS.keySet ()){
+                     scale.baseWriteMicros.put (table, insertMicros (c, table));
+                  }//end for
+               }else{
+                  scale.writeMicros[config - 1] = insertMicros (c, candidate.table.toLowerCase ())
+                     - scale.baseWriteMicros.get (candidate.table.toLowerCase ());
+               }//end if
+            }finally{
+               stmt.close ();
+               c.rollback ();
+            }//end try
+            System.err.printf ("%s: %d/%d%n", dbname, config, CANDIDATES.length);
+         }//end for
+      }finally{
+         try{
+            c.rollback ();
+            c.setAutoCommit (true);
+         }finally{
+            pool.release (conn);
+         }//end try
+      }//end try
+      this._scales.add (scale);
+   }//end measure
+
+   /**
+    * Picks the recommended indexes from the measurements of the largest
+    * scale.
+    *
+    * @return the recommended candidates, in CANDIDATES order
+    */
+   public List<Candidate> recommend () {
+      Scale largest = this._scales.get (this._scales.size () - 1);
+      double[] base = largest.millis[0];
+
+      // best worthwhile candidate per template.
+      Set<Candidate> chosen = new LinkedHashSet<Candidate> ();
+      for (int t = 0; t < TEMPLATES.length; ++t){
+         int best = -1;
+         for (int i = 0; i < CANDIDATES.length; ++i){
+            double ms = largest.millis[i + 1][t];
+            if (ms > base[t] * (1.0 - MIN_GAIN) || benefit (largest, i) <= cost (largest, i)){
+               continue;
+            }//end if
+            if (best < 0 || ms < largest.millis[best + 1][t]){
+               best = i;
+            }//end if
+         }//end for
+         if (best >= 0){
+            chosen.add (CANDIDATES[best]);
+         }//end if
+      }//end for
+
+      // an index that is a prefix of another chosen one is redundant.
+      List<Candidate> minimal = new ArrayList<Candidate> ();
+      for (Candidate candidate : chosen){
+         boolean redundant = false;
+         for (Candidate other : chosen){
+            if (other != candidate && candidate.isPrefixOf (other)){
+               redundant = true;
+               break;
+            }//end if
+         }//end for
+         if (!redundant){
+            minimal.add (candidate);
+         }//end if
+      }//end for
+      return minimal;
+   }//end recommend
+
+   /**
+    * Prints the measurements of every scale and the recommendation.
+    */
+   public void report (List<Candidate> chosen) {
+      for (Scale scale : this._scales){
+         System.out.println ();
+         System.out.println ("== " + scale.dbname + " (ms per lookup; * = index used)");
+         System.out.printf ("%-48s", "index");
+         for (Template template : TEMPLATES){
+            System.out.printf (" %9s", template.name.substring (0, template.name.indexOf ('/')));
+         }//end for
+         System.out.printf (" %12s%n", "insert us/row");
+         for (int config = 0; config <= CANDIDATES.length; ++config){
+            System.out.printf ("%-48s", config == 0 ? "(primary keys only)" : CANDIDATES[config - 1].name ());
+            for (int t = 0; t < TEMPLATES.length; ++t){
+               System.out.printf (" %8.2f%s", scale.millis[config][t], scale.used[config][t] ? "*" : " ");
+            }//end for
+            System.out.printf (" %12.2f%n", config == 0 ? 0.0 : scale.writeMicros[config - 1]);
+         }//end for
+      }//end for
+      System.out.println ();
+      System.out.println ("recommended:");
+      for (Candidate candidate : chosen){
+         System.out.println ("   " + candidate.create ());
+      }//end for
+   }//end report
+
+   /**
+    * Writes the DROP INDEX statements for the existing secondary indexes
+    * not recommended, then the CREATE INDEX statements.
+    */
+   public void writeSql (List<Candidate> chosen, Writer out) throws IOException {
+      Set<String> keep = new LinkedHashSet<String> ();
+      for (Candidate candidate : chosen){
+         keep.add (candidate.name ());
+      }//end for
+      out.write ("-- generated by IndexAdvisor\n");
+      for (String index : this._existing){
+         if (!keep.contains (index)){
+            out.write ("DROP INDEX IF EXISTS " + index + ";\n");
+         }//end if
+      }//end for
+      out.write ("\n");
+      for (Candidate candidate : chosen){
+         out.write (candidate.create () + ";\n");
+      }//end for
+   }//end writeSql
+
+   /*
+    * Summed lookup time saved by candidate i over all templates, in
+    * microseconds per round of lookups.
+    **/
+   private static double benefit (Scale scale, int i) {
+      double saved = 0.0;
+      for (int t = 0; t < TEMPLATES.length; ++t){
+         saved += Math.max (0.0, scale.millis[0][t] - scale.millis[i + 1][t]) * 1000.0;
+      }//end for
+      return saved;
+   }//end benefit
+
+   /*
+    * Insert time added by candidate i, weighted by inserts per lookup round.
+    **/
+   private static double cost (Scale scale, int i) {
+      return Math.max (0.0, scale.writeMicros[i]) * WRITE_RATIO * TEMPLATES.length;
+   }//end cost
+
+   /*
+    * Median execution time of a template over the samples, as reported by
+    * EXPLAIN ANALYZE; marks whether the plan used the given index.
+    **/
+   private static double explain (PooledConnection conn, Template template, Sample[] samples,
+                                  String index, boolean[] used, int t) throws SQLException {
+      PreparedStatement stmt = conn.prepare ("EXPLAIN ANALYZE " + template.sql);
+      double[] millis = new double[samples.length];
+      for (int run = -1; run < samples.length; ++run){
+         // run -1 only warms the buffer cache.
+         DBProject.bind (stmt, template.params (samples[Math.max (run, 0)]));
+         ResultSet rs = stmt.executeQuery ();
+         try{
+            while (rs.next ()){
+               String line = rs.getString (1);
+               if (index != null && line.contains (index)){
+                  used[t] = true;
+               }//end if
+               int at = line.indexOf ("Execution Time:");
+               if (at < 0){
+                  at = line.indexOf ("Total runtime:");
+               }//end if
+               if (at >= 0 && run >= 0){
+                  String value = line.substring (line.indexOf (':', at) + 1).trim ();
+                  millis[run] = Double.parseDouble (value.substring (0, value.indexOf (' ')));
+               }//end if
+            }//end while
+         }finally{
+            rs.close ();
+         }//end try
+      }//end for
+      Arrays.sort (millis);
+      return millis[millis.length / 2];
+   }//end explain
+
+   /*
+    * Microseconds per row to insert copies of WRITE_ROWS rows of a table.
+    **/
+   private static double insertMicros (Connection c, String table) throws SQLException {
+      Statement savepoint = c.createStatement ();
+      PreparedStatement stmt = c.prepareStatement (COPY_ROWS.get (table));
+      try{
+         savepoint.execute ("SAVEPOINT advisor_write");
+         stmt.setInt (1, WRITE_ROWS);
+         long t0 = System.nanoTime ();
+         int rows = stmt.executeUpdate ();
+         long elapsed = System.nanoTime () - t0;
+         savepoint.execute ("ROLLBACK TO SAVEPOINT advisor_write");
+         return rows == 0 ? 0.0 : elapsed / 1000.0 / rows;
+      }finally{
+         stmt.close ();
+         savepoint.close ();
+      }//end try
+   }//end insertMicros
+
+   /*
+    * The secondary indexes of the current schema, with their tables.
+    **/
+   private static Map<String, String> secondaryIndexes (Connection c) throws SQLException {
+      Map<String, String> indexes = new LinkedHashMap<String, String> ();
+      Statement stmt = c.createStatement ();
+      try{
+         ResultSet rs = stmt.executeQuery (SECONDARY_INDEXES);
+         while (rs.next ()){
+            indexes.put (rs.getString (1), rs.getString (2));
+         }//end while
+         rs.close ();
+      }finally{
+         stmt.close ();
+      }//end try
+      return indexes;
+   }//end secondaryIndexes
+
+   /*
+    * Draws SAMPLES random key combinations from Booking, Repair and Assigned.
+    **/
+   private static Sample[] samples (Connection c) throws SQLException {
+      Sample[] samples = new Sample[SAMPLES];
+      for (int i = 0; i < SAMPLES; ++i){
+         samples[i] = new Sample ();
+         samples[i].date = DBProject.toDate (2015, 1, 1);
+      }//end for
+      PreparedStatement stmt = c.prepareStatement (SAMPLE_BOOKINGS);
+      try{
+         stmt.setInt (1, SAMPLES);
+         ResultSet rs = stmt.executeQuery ();
+         for (int i = 0; i < SAMPLES && rs.next (); ++i){
+            samples[i].hotelID = rs.getInt (1);
+            samples[i].roomNo = rs.getInt (2);
+            samples[i].customer = rs.getInt (3);
+            samples[i].date = rs.getDate (4);
+         }//end for
+         rs.close ();
+      }finally{
+         stmt.close ();
+      }//end try
+      stmt = c.prepareStatement (SAMPLE_REPAIRS);
+      try{
+         stmt.setInt (1, SAMPLES);
+         ResultSet rs = stmt.executeQuery ();
+         for (int i = 0; i < SAMPLES && rs.next (); ++i){
+            samples[i].repairHotelID = rs.getInt (1);
+            samples[i].repairRoomNo = rs.getInt (2);
+            samples[i].company = rs.getInt (3);
+         }//end for
+         rs.close ();
+      }finally{
+         stmt.close ();
+      }//end try
+      stmt = c.prepareStatement (SAMPLE_STAFF);
+      try{
+         stmt.setInt (1, SAMPLES);
+         ResultSet rs = stmt.executeQuery ();
+         for (int i = 0; i < SAMPLES && rs.next (); ++i){
+            samples[i].staff = rs.getInt (1);
+         }//end for
+         rs.close ();
+      }finally{
+         stmt.close ();
+      }//end try
+      return samples;
+   }//end samples
+
+}//end IndexAdvisor
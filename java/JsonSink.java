@@ -0,0 +1,103 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes results to a file as JSON lines: one object per row, keyed by the
+ * column names, e.g.
+ * <pre>   {"roomno":"5","bookingdate":"2015-05-12"}</pre>
+ * Values are the strings the database returns for them, or null for SQL
+ * NULL; a job reading the file knows the types of the report's columns.
+ * Successive results follow each other in the file.
+ *
+ */
+public class JsonSink extends ChannelSink {
+
+   private static final char[] HEX = "0123456789abcdef".toCharArray ();
+
+   // the quoted column names, each followed by its colon.
+   private String[] _keys = new String[0];
+   private int _cell = 0;
+
+   /**
+    * @param file the file receiving the results
+    * @throws java.io.IOException when the file cannot be created
+    */
+   public JsonSink (File file) throws IOException {
+      super (file);
+   }//end JsonSink
+
+   public void begin (String[] columns) throws IOException {
+      this._keys = new String[columns.length];
+      StringBuilder key = new StringBuilder ();
+      for (int i = 0; i < columns.length; ++i){
+         key.setLength (0);
+         quote (key, columns[i]);
+         this._keys[i] = key.append (':').toString ();
+      }//end for
+      this._cell = 0;
+   }//end begin
+
+   public void cell (String value) throws IOException {
+      put (this._cell == 0 ? '{' : ',');
+      putUtf8 (this._cell < this._keys.length ? this._keys[this._cell] : "\"" + this._cell + "\":");
+      ++this._cell;
+      if (value == null){
+         putUtf8 ("null");
+         return;
+      }//end if
+      put ('"');
+      int from = 0;
+      for (int i = 0, n = value.length (); i < n; ++i){
+         char c = value.charAt (i);
+         if (c == '"' || c == '\\' || c < 0x20){
+            putUtf8 (value.substring (from, i));
+            escape (c);
+            from = i + 1;
+         }//end if
+      }//end for
+      putUtf8 (from == 0 ? value : value.substring (from));
+      put ('"');
+   }//end cell
+
+   public void endRow () throws IOException {
+      if (this._cell == 0){
+         put ('{');
+      }//end if
+      put ('}');
+      put ('\n');
+      this._cell = 0;
+   }//end endRow
+
+   private void escape (char c) throws IOException {
+      put ('\\');
+      switch (c){
+         case '"': put ('"'); break;
+         case '\\': put ('\\'); break;
+         case '\n': put ('n'); break;
+         case '\r': put ('r'); break;
+         case '\t': put ('t'); break;
+         default:
+            put ('u');
+            put ('0');
+            put ('0');
+            put (HEX[c >> 4]);
+            put (HEX[c & 0xf]);
+      }//end switch
+   }//end escape
+
+   private static void quote (StringBuilder out, String s) {
+      out.append ('"');
+      for (int i = 0, n = s.length (); i < n; ++i){
+         char c = s.charAt (i);
+         if (c == '"' || c == '\\'){
+            out.append ('\\').append (c);
+         }else if (c < 0x20){
+            out.append ("\\u00").append (HEX[c >> 4]).append (HEX[c & 0xf]);
+         }else{
+            out.append (c);
+         }//end if
+      }//end for
+      out.append ('"');
+   }//end quote
+
+}//end JsonSink
@@ -0,0 +1,105 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds.
+ *
+ * Values are counted in log-linear buckets: every power of two is split
+ * into 32 equal sub-buckets, so any recorded value is reported within about
+ * 3% while the whole range up to Long.MAX_VALUE fits in under 2000 counters.
+ * Recording is a few atomic increments and safe from any number of
+ * threads.
+ *
+ */
+public class LatencyHistogram {
+
+   private static final int SUB_BITS = 5;
+   private static final int SUB = 1 << SUB_BITS;
+   private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB;
+
+   private final AtomicLongArray _counts = new AtomicLongArray (BUCKETS);
+   private final AtomicLong _count = new AtomicLong ();
+   private final AtomicLong _sum = new AtomicLong ();
+   private final AtomicLong _max = new AtomicLong ();
+
+   /**
+    * Records one latency.
+    *
+    * @param nanos the latency in nanoseconds; negative values count as 0
+    */
+   public void record (long nanos) {
+      long value = Math.max (0L, nanos);
+      this._counts.incrementAndGet (index (value));
+      this._count.incrementAndGet ();
+      this._sum.addAndGet (value);
+      long max = this._max.get ();
+      while (value > max && !this._max.compareAndSet (max, value)){
+         max = this._max.get ();
+      }//end while
+   }//end record
+
+   /**
+    * @return the number of recorded latencies
+    */
+   public long getCount () {
+      return this._count.get ();
+   }//end getCount
+
+   /**
+    * @return the largest recorded latency in nanoseconds
+    */
+   public long getMax () {
+      return this._max.get ();
+   }//end getMax
+
+   /**
+    * @return the mean latency in nanoseconds
+    */
+   public double getMean () {
+      long count = this._count.get ();
+      return count == 0 ? 0.0 : (double) this._sum.get () / count;
+   }//end getMean
+
+   /**
+    * The latency below which the given fraction of the recorded ones fall.
+    *
+    * @param fraction e.g. 0.99 for the 99th percentile
+    * @return the latency in nanoseconds, the middle of its bucket
+    */
+   public long percentile (double fraction) {
+      long count = this._count.get ();
+      if (count == 0){
+         return 0L;
+      }//end if
+      long rank = Math.max (1L, (long) Math.ceil (fraction * count));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; ++i){
+         seen += this._counts.get (i);
+         if (seen >= rank){
+            return Math.min (lowest (i) + width (i) / 2, getMax ());
+         }//end if
+      }//end for
+      return getMax ();
+   }//end percentile
+
+   private static int index (long value) {
+      if (value < SUB){
+         return (int) value;
+      }//end if
+      int shift = 63 - Long.numberOfLeadingZeros (value) - SUB_BITS;
+      return (shift + 1) * SUB + (int) (value >>> shift) - SUB;
+   }//end index
+
+   private static long lowest (int index) {
+      if (index < SUB){
+         return index;
+      }//end if
+      int shift = index / SUB - 1;
+      return (long) (SUB + index % SUB) << shift;
+   }//end lowest
+
+   private static long width (int index) {
+      return index < SUB ? 1L : 1L << (index / SUB - 1);
+   }//end width
+
+}//end LatencyHistogram
@@ -0,0 +1,437 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Simulates many front-desk clerks working at once.  Each of N sessions
+ * loops over operations drawn from a weighted mix, with IDs, rooms and
+ * dates drawn from the ranges found in data/*.csv, against one shared
+ * DBProject (the same sessions the server mode hands out).  Every interval
+ * the throughput, latency percentiles and error / conflict rates of that
+ * interval are printed; a per-operation summary follows at the end.
+ *
+ * A failure is counted as a conflict when the database refused it for a
+ * concurrency reason (unique or exclusion violation, serialization failure
+ * or deadlock, SQL states 23505, 23P01, 40001 and 40P01) and as an error
+ * otherwise.  Only successful operations are counted in the latencies.
+ *
+ * Settings (system properties):
+ *    load.sessions   concurrent sessions (default 50)
+ *    load.time       run time in seconds (default 60)
+ *    load.interval   report interval in seconds (default 5)
+ *    load.think      pause between operations of a session in ms (default 0)
+ *    load.mix        operation weights, method or menu number = weight
+ *    load.data       the folder holding the csv files (default ../data)
+ *    load.seed       random seed (default 1)
+ *
+ * The write operations insert rows, so point it at a scratch database.
+ *
+ * Usage: java LoadGenerator &lt;dbname&gt; &lt;port&gt; &lt;user&gt;
+ *
+ */
+public class LoadGenerator {
+
+   static final String DEFAULT_MIX =
+      "bookRoom=30,addRepair=10,numberOfAvailableRooms=25,listHotelRoomBookingsForAWeek=20," +
+      "topKHighestRoomPriceForADateRange=5,topKMaintenanceCompany=5,totalCostForCustomer=5";
+
+   private static final int SESSIONS = Integer.getInteger ("load.sessions", 50);
+   private static final long TIME = Long.getLong ("load.time", 60L);
+   private static final long INTERVAL = Long.getLong ("load.interval", 5L);
+   private static final long THINK = Long.getLong ("load.think", 0L);
+   private static final long SEED = Long.getLong ("load.seed", 1L);
+
+   private static final int OPS = Operation.values ().length;
+
+   /**
+    * The ranges the generated parameters are drawn from, read from the
+    * data files.
+    */
+   static final class Ranges {
+      // every room, as parallel arrays.
+      int[] hotels;
+      int[] rooms;
+      int customers;
+      int companies;
+      int firstDay = Integer.MAX_VALUE;
+      int lastDay = Integer.MIN_VALUE;
+      String[] repairTypes;
+   }//end Ranges
+
+   /**
+    * The counters of one reporting interval (or of the whole run).
+    */
+   static final class Counters {
+      final LatencyHistogram all = new LatencyHistogram ();
+      final LatencyHistogram[] ops = new LatencyHistogram[OPS];
+      final AtomicLongArray errors = new AtomicLongArray (OPS);
+      final AtomicLongArray conflicts = new AtomicLongArray (OPS);
+      final long started = System.nanoTime ();
+
+      Counters () {
+         for (int i = 0; i < OPS; ++i){
+            this.ops[i] = new LatencyHistogram ();
+         }//end for
+      }//end Counters
+
+      long failures (AtomicLongArray counts) {
+         long sum = 0;
+         for (int i = 0; i < OPS; ++i){
+            sum += counts.get (i);
+         }//end for
+         return sum;
+      }//end failures
+   }//end Counters
+
+   private final DBProject _esql;
+   private final Ranges _ranges;
+   private final Operation[] _mix;
+   private final int[] _weights;
+   private final int _totalWeight;
+   private final PrintStream _out;
+
+   private final AtomicReference<Counters> _interval = new AtomicReference<Counters> (new Counters ());
+   private final Counters _total = new Counters ();
+   private volatile boolean _stop = false;
+
+   /**
+    * @param esql the database the sessions run against
+    * @param ranges where the generated IDs and dates come from
+    * @param mix the operation weights, e.g. "bookRoom=3,8=1"
+    * @param out where the reports are printed
+    */
+   public LoadGenerator (DBProject esql, Ranges ranges, String mix, PrintStream out) {
+      this._esql = esql;
+      this._ranges = ranges;
+      this._out = out;
+      List<Operation> ops = new ArrayList<Operation> ();
+      List<Integer> weights = new ArrayList<Integer> ();
+      int total = 0;
+      for (String entry : mix.split (",")){
+         int eq = entry.indexOf ('=');
+         if (eq < 0){
+            throw new IllegalArgumentException ("Expected operation=weight in load.mix: " + entry);
+         }//end if
+         Operation op = Operation.lookup (entry.substring (0, eq).trim ());
+         int weight;
+         try{
+            weight = Integer.parseInt (entry.substring (eq + 1).trim ());
+         }catch (NumberFormatException e){
+            throw new IllegalArgumentException ("Weight is not an integer: " + entry);
+         }//end try
+         if (weight <= 0){
+            continue;
+         }//end if
+         // rejects operations the generator cannot make parameters for.
+         params (op, new Random (0));
+         total += weight;
+         ops.add (op);
+         weights.add (total);
+      }//end for
+      if (total == 0){
+         throw new IllegalArgumentException ("load.mix has no operation with a positive weight");
+      }//end if
+      this._mix = ops.toArray (new Operation[ops.size ()]);
+      this._weights = new int[weights.size ()];
+      for (int i = 0; i < this._weights.length; ++i){
+         this._weights[i] = weights.get (i);
+      }//end for
+      this._totalWeight = total;
+   }//end LoadGenerator
+
+   public static void main (String[] args) throws Exception {
+      if (args.length != 3){
+         System.err.println ("Usage: java LoadGenerator <dbname> <port> <user>");
+         return;
+      }//end if
+      Ranges ranges = readRanges (new File (System.getProperty ("load.data", "../data")));
+      Class.forName ("org.postgresql.Driver");
+      DBProject esql = new DBProject (args[0], args[1], args[2], "");
+      try{
+         esql.buildIndexes ();
+         LoadGenerator load = new LoadGenerator (esql, ranges, System.getProperty ("load.mix", DEFAULT_MIX),
+                                                 System.out);
+         load.run (SESSIONS, TIME * 1000L, INTERVAL * 1000L);
+         System.out.println (esql.getPool ().stats ());
+         System.out.println (esql.getCache ().stats ());
+      }finally{
+         esql.cleanup ();
+      }//end try
+   }//end main
+
+   /**
+    * Runs the sessions for the given time, reporting every interval.
+    *
+    * @param sessions the number of concurrent sessions
+    * @param millis how long to run
+    * @param intervalMillis how often to report
+    * @throws java.lang.InterruptedException when interrupted while waiting
+    */
+   public void run (int sessions, long millis, long intervalMillis) throws InterruptedException {
+      this._out.printf ("%d sessions for %d s, mix %s%n", sessions, millis / 1000, describeMix ());
+      this._out.printf ("%8s %10s %10s %10s %10s %10s %8s %8s%n",
+                        "time(s)", "ops/s", "mean(ms)", "p50(ms)", "p95(ms)", "p99(ms)", "err/s", "confl/s");
+      Thread[] threads = new Thread[sessions];
+      for (int i = 0; i < sessions; ++i){
+         final DBProject session = this._esql.session (new NullSink ());
+         final Random random = new Random (SEED + i);
+         threads[i] = new Thread (new Runnable () {
+            public void run () {
+               work (session, random);
+            }
+         }, "load-" + i);
+         threads[i].start ();
+      }//end for
+
+      long start = System.nanoTime ();
+      long end = System.currentTimeMillis () + millis;
+      long now;
+      while ((now = System.currentTimeMillis ()) < end){
+         Thread.sleep (Math.min (intervalMillis, end - now));
+         report ((System.nanoTime () - start) / 1e9, this._interval.getAndSet (new Counters ()));
+      }//end while
+      this._stop = true;
+      for (Thread thread : threads){
+         thread.join ();
+      }//end for
+      summary ((System.nanoTime () - start) / 1e9);
+   }//end run
+
+   /*
+    * One session: runs operations from the mix until stopped.
+    **/
+   private void work (DBProject session, Random random) {
+      while (!this._stop){
+         Operation op = pick (random);
+         Params p = params (op, random);
+         long t0 = System.nanoTime ();
+         Throwable failure = null;
+         try{
+            op.run (session, p);
+         }catch (Exception e){
+            failure = e;
+         }//end try
+         long elapsed = System.nanoTime () - t0;
+         Counters interval = this._interval.get ();
+         int i = op.ordinal ();
+         if (failure == null){
+            interval.all.record (elapsed);
+            interval.ops[i].record (elapsed);
+            this._total.all.record (elapsed);
+            this._total.ops[i].record (elapsed);
+         }else if (isConflict (failure)){
+            interval.conflicts.incrementAndGet (i);
+            this._total.conflicts.incrementAndGet (i);
+         }else{
+            interval.errors.incrementAndGet (i);
+            this._total.errors.incrementAndGet (i);
+         }//end if
+         if (THINK > 0){
+            try{
+               Thread.sleep (THINK);
+            }catch (InterruptedException e){
+               return;
+            }//end try
+         }//end if
+      }//end while
+   }//end work
+
+   private Operation pick (Random random) {
+      int r = random.nextInt (this._totalWeight);
+      int i = 0;
+      while (this._weights[i] <= r){
+         ++i;
+      }//end while
+      return this._mix[i];
+   }//end pick
+
+   /*
+    * Draws the parameters of one operation from the data ranges.
+    **/
+   Params params (Operation op, Random random) {
+      Ranges r = this._ranges;
+      int room = random.nextInt (r.rooms.length);
+      int day = r.firstDay + random.nextInt (r.lastDay - r.firstDay + 1);
+      Params p = new Params ();
+      switch (op){
+         case BOOK_ROOM:
+            return p.put ("customer", 1 + random.nextInt (r.customers)).put ("hotel", r.hotels[room])
+               .put ("room", r.rooms[room]).put ("date", DBProject.fromEpochDay (day))
+               .put ("people", 1 + random.nextInt (4)).put ("price", 50 + random.nextInt (1950));
+         case ADD_REPAIR:
+            return p.put ("hotel", r.hotels[room]).put ("room", r.rooms[room])
+               .put ("company", 1 + random.nextInt (r.companies)).put ("date", DBProject.fromEpochDay (day))
+               .put ("description", "load").put ("type", r.repairTypes[random.nextInt (r.repairTypes.length)]);
+         case AVAILABLE_ROOMS:
+         case BOOKINGS_FOR_WEEK:
+            return p.put ("hotel", r.hotels[room]).put ("date", DBProject.fromEpochDay (day));
+         case BOOKED_ROOMS:
+            return p.put ("hotel", r.hotels[room]);
+         case TOP_K_ROOM_PRICES:
+            return p.put ("k", 10).put ("from", DBProject.fromEpochDay (day))
+               .put ("to", DBProject.fromEpochDay (day + 30));
+         case TOP_K_CUSTOMER_PRICES:
+            return p.put ("customer", 1 + random.nextInt (r.customers)).put ("k", 10);
+         case CUSTOMER_TOTAL_COST:
+            return p.put ("hotel", r.hotels[room]).put ("customer", 1 + random.nextInt (r.customers))
+               .put ("from", DBProject.fromEpochDay (day)).put ("to", DBProject.fromEpochDay (day + 365));
+         case REPAIRS_BY_COMPANY:
+            return p.put ("company", 1 + random.nextInt (r.companies));
+         case TOP_K_MAINTENANCE_COMPANIES:
+            return p.put ("k", 5).put ("window", 365);
+         case REPAIRS_PER_YEAR:
+            return p.put ("hotel", r.hotels[room]).put ("room", r.rooms[room]);
+         default:
+            throw new IllegalArgumentException ("The load generator does not drive " + op.getMethod ());
+      }//end switch
+   }//end params
+
+   /*
+    * True for failures caused by concurrent sessions rather than by the
+    * request itself.
+    **/
+   static boolean isConflict (Throwable failure) {
+      if (!(failure instanceof SQLException)){
+         return false;
+      }//end if
+      String state = ((SQLException) failure).getSQLState ();
+      if (state != null){
+         return state.equals ("23505") || state.equals ("23P01") || state.equals ("40001") || state.equals ("40P01");
+      }//end if
+      // the 7.3 driver does not always report the state; fall back to the text.
+      String message = String.valueOf (failure.getMessage ()).toLowerCase ();
+      return message.contains ("duplicate key") || message.contains ("conflicting key")
+         || message.contains ("could not serialize") || message.contains ("deadlock");
+   }//end isConflict
+
+   private void report (double seconds, Counters c) {
+      double elapsed = (System.nanoTime () - c.started) / 1e9;
+      this._out.printf ("%8.1f %10.1f %10.3f %10.3f %10.3f %10.3f %8.1f %8.1f%n",
+                        seconds, c.all.getCount () / elapsed, c.all.getMean () / 1e6,
+                        c.all.percentile (0.50) / 1e6, c.all.percentile (0.95) / 1e6,
+                        c.all.percentile (0.99) / 1e6,
+                        c.failures (c.errors) / elapsed, c.failures (c.conflicts) / elapsed);
+   }//end report
+
+   private void summary (double seconds) {
+      Counters c = this._total;
+      this._out.println ();
+      this._out.printf ("%d operations in %.1f s (%.1f ops/s), %d errors, %d conflicts%n",
+                        c.all.getCount (), seconds, c.all.getCount () / seconds,
+                        c.failures (c.errors), c.failures (c.conflicts));
+      this._out.printf ("%-4s %-36s %9s %9s %9s %10s %10s %10s %10s%n",
+                        "#", "operation", "ok", "errors", "conflicts",
+                        "mean(ms)", "p50(ms)", "p99(ms)", "max(ms)");
+      for (Operation op : this._mix){
+         int i = op.ordinal ();
+         LatencyHistogram h = c.ops[i];
+         this._out.printf ("%-4d %-36s %9d %9d %9d %10.3f %10.3f %10.3f %10.3f%n",
+                           op.getCode (), op.getMethod (), h.getCount (), c.errors.get (i),
+                           c.conflicts.get (i), h.getMean () / 1e6, h.percentile (0.50) / 1e6,
+                           h.percentile (0.99) / 1e6, h.getMax () / 1e6);
+      }//end for
+   }//end summary
+
+   private String describeMix () {
+      StringBuilder out = new StringBuilder ();
+      int previous = 0;
+      for (int i = 0; i < this._mix.length; ++i){
+         out.append (i == 0 ? "" : ",").append (this._mix[i].getMethod ()).append ('=')
+            .append (this._weights[i] - previous);
+         previous = this._weights[i];
+      }//end for
+      return out.toString ();
+   }//end describeMix
+
+   /**
+    * Reads the ID ranges from the csv files in a folder: the rooms, the
+    * highest customer and company IDs, the span of booking dates and the
+    * repair types.  The placeholder rows with ID 0 are skipped.
+    *
+    * @param data the folder holding room.csv, customer.csv and the others
+    * @return the ranges
+    * @throws java.io.IOException when a file cannot be read
+    */
+   static Ranges readRanges (File data) throws IOException {
+      final Ranges r = new Ranges ();
+      final List<int[]> rooms = new ArrayList<int[]> ();
+      final List<String> types = new ArrayList<String> ();
+      final int[] max = new int[2];
+      scan (new File (data, "room.csv"), new Row () {
+         public void row (String[] f) {
+            if (!f[0].equals ("0")){
+               rooms.add (new int[] { Integer.parseInt (f[0]), Integer.parseInt (f[1]) });
+            }//end if
+         }
+      });
+      scan (new File (data, "customer.csv"), new Row () {
+         public void row (String[] f) {
+            max[0] = Math.max (max[0], Integer.parseInt (f[0]));
+         }
+      });
+      scan (new File (data, "maintenanceCompany.csv"), new Row () {
+         public void row (String[] f) {
+            max[1] = Math.max (max[1], Integer.parseInt (f[0]));
+         }
+      });
+      scan (new File (data, "booking.csv"), new Row () {
+         public void row (String[] f) {
+            if (!f[0].equals ("0")){
+               int day = DBProject.epochDay (Params.parseDate (f[4]));
+               r.firstDay = Math.min (r.firstDay, day);
+               r.lastDay = Math.max (r.lastDay, day);
+            }//end if
+         }
+      });
+      scan (new File (data, "repair.csv"), new Row () {
+         public void row (String[] f) {
+            if (!f[0].equals ("0") && !types.contains (f[6])){
+               types.add (f[6]);
+            }//end if
+         }
+      });
+      if (rooms.isEmpty () || max[0] == 0 || max[1] == 0 || r.firstDay > r.lastDay || types.isEmpty ()){
+         throw new IOException ("No rooms, customers, companies, bookings or repairs in " + data);
+      }//end if
+      r.hotels = new int[rooms.size ()];
+      r.rooms = new int[rooms.size ()];
+      for (int i = 0; i < rooms.size (); ++i){
+         r.hotels[i] = rooms.get (i)[0];
+         r.rooms[i] = rooms.get (i)[1];
+      }//end for
+      r.customers = max[0];
+      r.companies = max[1];
+      r.repairTypes = types.toArray (new String[types.size ()]);
+      return r;
+   }//end readRanges
+
+   /**
+    * Receives the comma separated fields of one csv line.
+    */
+   interface Row {
+      void row (String[] fields);
+   }//end Row
+
+   private static void scan (File file, Row row) throws IOException {
+      BufferedReader in = new BufferedReader (new FileReader (file), 1 << 16);
+      try{
+         String line;
+         while ((line = in.readLine ()) != null){
+            if (line.length () > 0){
+               row.row (line.split (",", -1));
+            }//end if
+         }//end while
+      }finally{
+         in.close ();
+      }//end try
+   }//end scan
+
+}//end LoadGenerator
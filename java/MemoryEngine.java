@@ -0,0 +1,770 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An embedded, read-only query engine answering the report options 8 to
+ * 16 from the data/*.csv files instead of the database.  Selected with
+ * -Ddbproject.backend=memory, reading the files of dbproject.data
+ * (default ../data).
+ *
+ * The nine tables are loaded into columns of primitive arrays: ids and
+ * counts as int, dates as epoch days, prices as long cents, and text as
+ * shared strings, CHAR(n) values padded to n like the database returns
+ * them.  A report scans the columns it needs, split across all processors
+ * once a table has PARALLEL_ROWS rows, and joins the small tables through
+ * hash maps built at load time (company id -> row, the customer ids).
+ *
+ * Every report writes the same columns, values, order and empty results
+ * as its query in Queries, so the two backends can be compared row for
+ * row.  Where the SQL leaves the order of ties open, both order them by
+ * the id (see Queries.REPAIRS_BY_COMPANY and
+ * Queries.TOP_K_MAINTENANCE_COMPANIES).
+ *
+ */
+public class MemoryEngine {
+
+   /** Tables with at least this many rows are scanned in parallel. */
+   static final int PARALLEL_ROWS = 1 << 15;
+
+   static final int NULL = Integer.MIN_VALUE;
+
+   // file and columns of the nine tables; types are int, long, bool (an
+   // int of 0 or 1), date, money, text and charN.
+   static final String[][] TABLES = {
+      { "hotel.csv", "hotelID int", "address text", "manager int" },
+      { "staff.csv", "SSN int", "fName char30", "lName char30", "address text", "role text", "employerID int" },
+      { "room.csv", "hotelID int", "roomNo int", "roomType char10" },
+      { "customer.csv", "customerID int", "fName char30", "lName char30", "Address text", "phNo long",
+        "DOB date", "gender text" },
+      { "maintenanceCompany.csv", "cmpID int", "name char30", "address text", "isCertified bool" },
+      { "booking.csv", "bID int", "customer int", "hotelID int", "roomNo int", "bookingDate date",
+        "noOfPeople int", "price money" },
+      { "repair.csv", "rID int", "hotelID int", "roomNo int", "mCompany int", "repairDate date",
+        "description text", "repairType char10" },
+      { "request.csv", "reqID int", "managerID int", "repairID int", "requestDate date", "description text" },
+      { "assigned.csv", "asgID int", "staffID int", "hotelID int", "roomNo int" },
+   };
+
+   /**
+    * One table held column by column.
+    */
+   static final class Table {
+      final String file;
+      final String[] names;
+      final String[] types;
+      final Object[] columns;
+      int rows = 0;
+
+      Table (String[] spec) {
+         this.file = spec[0];
+         this.names = new String[spec.length - 1];
+         this.types = new String[spec.length - 1];
+         this.columns = new Object[spec.length - 1];
+         for (int i = 1; i < spec.length; ++i){
+            String[] parts = spec[i].split (" ");
+            this.names[i - 1] = parts[0].toLowerCase ();
+            this.types[i - 1] = parts[1];
+         }//end for
+      }//end Table
+
+      int column (String name) {
+         for (int i = 0; i < this.names.length; ++i){
+            if (this.names[i].equalsIgnoreCase (name)){
+               return i;
+            }//end if
+         }//end for
+         throw new IllegalArgumentException (this.file + " has no column " + name);
+      }//end column
+
+      int[] ints (String name) {
+         return (int[]) this.columns[column (name)];
+      }//end ints
+
+      long[] longs (String name) {
+         return (long[]) this.columns[column (name)];
+      }//end longs
+
+      String[] texts (String name) {
+         return (String[]) this.columns[column (name)];
+      }//end texts
+   }//end Table
+
+   /**
+    * A scan of the rows [from, to) of a table, producing a partial result
+    * that is merged with those of the other ranges.
+    */
+   abstract static class Scan<T> {
+      abstract T scan (int from, int to);
+
+      abstract T merge (T a, T b);
+   }//end Scan
+
+   private final Map<String, Table> _tables = new HashMap<String, Table> ();
+   private final ExecutorService _workers;
+   private final int _threads;
+
+   // hash join build sides: company id -> MaintenanceCompany row, and the
+   // customer ids.
+   private final Map<Integer, Integer> _companies = new HashMap<Integer, Integer> ();
+   private final Set<Integer> _customers = new HashSet<Integer> ();
+
+   private MemoryEngine (int threads) {
+      this._threads = threads;
+      this._workers = Executors.newFixedThreadPool (threads, new ThreadFactory () {
+         public Thread newThread (Runnable r) {
+            Thread t = new Thread (r, "memory-engine");
+            t.setDaemon (true);
+            return t;
+         }
+      });
+   }//end MemoryEngine
+
+   /**
+    * Loads the nine tables, one file per processor at a time.
+    *
+    * @param data the directory holding the CSV files
+    * @return the engine
+    * @throws java.io.IOException when a file cannot be read or parsed
+    */
+   public static MemoryEngine load (File data) throws IOException {
+      final MemoryEngine engine = new MemoryEngine (Runtime.getRuntime ().availableProcessors ());
+      List<Future<Table>> loads = new ArrayList<Future<Table>> ();
+      for (final String[] spec : TABLES){
+         final File file = new File (data, spec[0]);
+         loads.add (engine._workers.submit (new Callable<Table> () {
+            public Table call () throws IOException {
+               return read (file, new Table (spec));
+            }
+         }));
+      }//end for
+      try{
+         for (Future<Table> load : loads){
+            Table table = load.get ();
+            engine._tables.put (table.file, table);
+         }//end for
+      }catch (InterruptedException e){
+         throw new IOException ("Interrupted while loading " + data);
+      }catch (ExecutionException e){
+         Throwable cause = e.getCause ();
+         if (cause instanceof IOException){
+            throw (IOException) cause;
+         }//end if
+         throw new IOException (cause.toString ());
+      }//end try
+
+      Table companies = engine.table ("maintenanceCompany.csv");
+      int[] cmpIDs = companies.ints ("cmpID");
+      for (int row = 0; row < companies.rows; ++row){
+         engine._companies.put (cmpIDs[row], row);
+      }//end for
+      Table customers = engine.table ("customer.csv");
+      int[] customerIDs = customers.ints ("customerID");
+      for (int row = 0; row < customers.rows; ++row){
+         engine._customers.add (customerIDs[row]);
+      }//end for
+      return engine;
+   }//end load
+
+   /**
+    * @return the row counts of the tables, e.g. for a start-up message
+    */
+   public String toString () {
+      StringBuilder text = new StringBuilder ("memory backend:");
+      for (String[] spec : TABLES){
+         text.append (' ').append (spec[0].substring (0, spec[0].length () - 4)).append ('=')
+            .append (this._tables.get (spec[0]).rows);
+      }//end for
+      return text.toString ();
+   }//end toString
+
+   // 8. rooms of a hotel without a booking on any day from..to
+   public void availableRooms (ResultSink sink, final int hotelID, final int from, final int to) throws SQLException {
+      Table bookings = table ("booking.csv");
+      final int[] hotels = bookings.ints ("hotelID");
+      final int[] rooms = bookings.ints ("roomNo");
+      final int[] days = bookings.ints ("bookingDate");
+      Set<Integer> booked = scan (bookings.rows, new Scan<Set<Integer>> () {
+         Set<Integer> scan (int start, int end) {
+            Set<Integer> found = new HashSet<Integer> ();
+            for (int row = start; row < end; ++row){
+               if (hotels[row] == hotelID && days[row] >= from && days[row] <= to){
+                  found.add (rooms[row]);
+               }//end if
+            }//end for
+            return found;
+         }
+
+         Set<Integer> merge (Set<Integer> a, Set<Integer> b) {
+            a.addAll (b);
+            return a;
+         }
+      });
+      Table room = table ("room.csv");
+      int[] roomHotels = room.ints ("hotelID");
+      int[] roomNos = room.ints ("roomNo");
+      long free = 0;
+      for (int row = 0; row < room.rows; ++row){
+         if (roomHotels[row] == hotelID && !booked.contains (roomNos[row])){
+            ++free;
+         }//end if
+      }//end for
+      write (sink, new String[] { "availablerooms" }, Arrays.<String[]> asList (new String[] { String.valueOf (free) }));
+   }//end availableRooms
+
+   // 9. bookings of a hotel
+   public void bookedRooms (ResultSink sink, final int hotelID) throws SQLException {
+      Table bookings = table ("booking.csv");
+      final int[] hotels = bookings.ints ("hotelID");
+      final int[] rooms = bookings.ints ("roomNo");
+      long count = scan (bookings.rows, new Scan<Long> () {
+         Long scan (int start, int end) {
+            long n = 0;
+            for (int row = start; row < end; ++row){
+               if (hotels[row] == hotelID && rooms[row] != NULL){
+                  ++n;
+               }//end if
+            }//end for
+            return n;
+         }
+
+         Long merge (Long a, Long b) {
+            return a + b;
+         }
+      });
+      write (sink, new String[] { "reservedrooms" }, Arrays.<String[]> asList (new String[] { String.valueOf (count) }));
+   }//end bookedRooms
+
+   // 10. distinct booked (day, room) of a hotel from..to, after a key
+   public void bookingsForWeek (ResultSink sink, final int hotelID, final int from, final int to,
+                                final int afterDay, final int afterRoom) throws SQLException {
+      Table bookings = table ("booking.csv");
+      final int[] hotels = bookings.ints ("hotelID");
+      final int[] rooms = bookings.ints ("roomNo");
+      final int[] days = bookings.ints ("bookingDate");
+      long[] keys = scan (bookings.rows, new Scan<long[]> () {
+         long[] scan (int start, int end) {
+            long[] found = new long[16];
+            int n = 0;
+            for (int row = start; row < end; ++row){
+               int day = days[row];
+               if (hotels[row] == hotelID && day >= from && day <= to
+                   && (day > afterDay || (day == afterDay && rooms[row] > afterRoom))){
+                  if (n == found.length){
+                     found = Arrays.copyOf (found, n * 2);
+                  }//end if
+                  found[n++] = ((long) day << 32) | (rooms[row] & 0xffffffffL);
+               }//end if
+            }//end for
+            return Arrays.copyOf (found, n);
+         }
+
+         long[] merge (long[] a, long[] b) {
+            long[] both = Arrays.copyOf (a, a.length + b.length);
+            System.arraycopy (b, 0, both, a.length, b.length);
+            return both;
+         }
+      });
+      Arrays.sort (keys);
+      List<String[]> rows = new ArrayList<String[]> ();
+      for (int i = 0; i < keys.length; ++i){
+         if (i > 0 && keys[i] == keys[i - 1]){
+            continue;
+         }//end if
+         int day = (int) (keys[i] >> 32);
+         rows.add (new String[] { String.valueOf ((int) keys[i]), DBProject.fromEpochDay (day).toString () });
+      }//end for
+      write (sink, new String[] { "roomno", "bookingdate" }, rows);
+   }//end bookingsForWeek
+
+   // 11. k most expensive bookings from..to, ties by bID
+   public void topRoomPrices (ResultSink sink, final int k, final int from, final int to) throws SQLException {
+      limit (k);
+      Table bookings = table ("booking.csv");
+      final int[] bIDs = bookings.ints ("bID");
+      final int[] days = bookings.ints ("bookingDate");
+      final long[] prices = bookings.longs ("price");
+      final Comparator<Integer> order = new Comparator<Integer> () {
+         public int compare (Integer a, Integer b) {
+            if (prices[a] != prices[b]){
+               return prices[a] > prices[b] ? -1 : 1;
+            }//end if
+            return bIDs[a] < bIDs[b] ? -1 : (bIDs[a] == bIDs[b] ? 0 : 1);
+         }
+      };
+      List<Integer> top = scan (bookings.rows, new Scan<List<Integer>> () {
+         List<Integer> scan (int start, int end) {
+            List<Integer> found = new ArrayList<Integer> ();
+            for (int row = start; row < end; ++row){
+               if (days[row] >= from && days[row] <= to){
+                  found.add (row);
+               }//end if
+            }//end for
+            return top (found, k, order);
+         }
+
+         List<Integer> merge (List<Integer> a, List<Integer> b) {
+            a.addAll (b);
+            return top (a, k, order);
+         }
+      });
+      Table table = bookings;
+      int[] hotels = table.ints ("hotelID");
+      int[] rooms = table.ints ("roomNo");
+      List<String[]> rows = new ArrayList<String[]> ();
+      for (int row : top){
+         rows.add (new String[] { String.valueOf (bIDs[row]), String.valueOf (hotels[row]), String.valueOf (rooms[row]),
+                                  DBProject.fromEpochDay (days[row]).toString (), DBProject.fromCents (prices[row]) });
+      }//end for
+      write (sink, new String[] { "bid", "hotelid", "roomno", "bookingdate", "price" }, rows);
+   }//end topRoomPrices
+
+   // 12. k highest booking prices of a customer
+   public void topCustomerPrices (ResultSink sink, final int customerID, int k) throws SQLException {
+      limit (k);
+      if (!this._customers.contains (customerID)){
+         write (sink, new String[] { "price" }, new ArrayList<String[]> ());
+         return;
+      }//end if
+      Table bookings = table ("booking.csv");
+      final int[] customers = bookings.ints ("customer");
+      final long[] prices = bookings.longs ("price");
+      long[] found = scan (bookings.rows, new Scan<long[]> () {
+         long[] scan (int start, int end) {
+            long[] matches = new long[16];
+            int n = 0;
+            for (int row = start; row < end; ++row){
+               if (customers[row] == customerID){
+                  if (n == matches.length){
+                     matches = Arrays.copyOf (matches, n * 2);
+                  }//end if
+                  matches[n++] = prices[row];
+               }//end if
+            }//end for
+            return Arrays.copyOf (matches, n);
+         }
+
+         long[] merge (long[] a, long[] b) {
+            long[] both = Arrays.copyOf (a, a.length + b.length);
+            System.arraycopy (b, 0, both, a.length, b.length);
+            return both;
+         }
+      });
+      Arrays.sort (found);
+      List<String[]> rows = new ArrayList<String[]> ();
+      for (int i = found.length - 1; i >= 0 && rows.size () < k; --i){
+         rows.add (new String[] { DBProject.fromCents (found[i]) });
+      }//end for
+      write (sink, new String[] { "price" }, rows);
+   }//end topCustomerPrices
+
+   // 13. a customer's total at a hotel from..to
+   public void customerTotalCost (ResultSink sink, final int hotelID, final int customerID, final int from,
+                                  final int to) throws SQLException {
+      Table bookings = table ("booking.csv");
+      final int[] hotels = bookings.ints ("hotelID");
+      final int[] customers = bookings.ints ("customer");
+      final int[] days = bookings.ints ("bookingDate");
+      final long[] prices = bookings.longs ("price");
+      // { bookings, cents }
+      long[] total = scan (bookings.rows, new Scan<long[]> () {
+         long[] scan (int start, int end) {
+            long[] sum = new long[2];
+            for (int row = start; row < end; ++row){
+               if (hotels[row] == hotelID && customers[row] == customerID && days[row] >= from && days[row] <= to){
+                  ++sum[0];
+                  sum[1] += prices[row];
+               }//end if
+            }//end for
+            return sum;
+         }
+
+         long[] merge (long[] a, long[] b) {
+            return new long[] { a[0] + b[0], a[1] + b[1] };
+         }
+      });
+      List<String[]> rows = new ArrayList<String[]> ();
+      if (total[0] > 0){
+         rows.add (new String[] { String.valueOf (customerID), DBProject.fromCents (total[1]) });
+      }//end if
+      write (sink, new String[] { "customerid", "sum" }, rows);
+   }//end customerTotalCost
+
+   // 14. repairs of a company in rID order, after a rID
+   public void repairsByCompany (ResultSink sink, final int cmpID, final int afterRID) throws SQLException {
+      Integer company = this._companies.get (cmpID);
+      String[] columns = { "name", "rid", "repairtype", "hotelid", "roomno" };
+      if (company == null){
+         write (sink, columns, new ArrayList<String[]> ());
+         return;
+      }//end if
+      Table repairs = table ("repair.csv");
+      final int[] rIDs = repairs.ints ("rID");
+      final int[] companies = repairs.ints ("mCompany");
+      List<Integer> found = scan (repairs.rows, new Scan<List<Integer>> () {
+         List<Integer> scan (int start, int end) {
+            List<Integer> matches = new ArrayList<Integer> ();
+            for (int row = start; row < end; ++row){
+               if (companies[row] == cmpID && rIDs[row] > afterRID){
+                  matches.add (row);
+               }//end if
+            }//end for
+            return matches;
+         }
+
+         List<Integer> merge (List<Integer> a, List<Integer> b) {
+            a.addAll (b);
+            return a;
+         }
+      });
+      Collections.sort (found, new Comparator<Integer> () {
+         public int compare (Integer a, Integer b) {
+            return rIDs[a] < rIDs[b] ? -1 : (rIDs[a] == rIDs[b] ? 0 : 1);
+         }
+      });
+      String name = table ("maintenanceCompany.csv").texts ("name")[company];
+      String[] types = repairs.texts ("repairType");
+      int[] hotels = repairs.ints ("hotelID");
+      int[] rooms = repairs.ints ("roomNo");
+      List<String[]> rows = new ArrayList<String[]> ();
+      for (int row : found){
+         rows.add (new String[] { name, String.valueOf (rIDs[row]), types[row], String.valueOf (hotels[row]),
+                                  String.valueOf (rooms[row]) });
+      }//end for
+      write (sink, columns, rows);
+   }//end repairsByCompany
+
+   // 15. k companies with the most repairs, all-time (window 0) or in the
+   //     window of days ending today, ties by cmpID
+   public void topCompanies (ResultSink sink, int k, int window) throws SQLException {
+      limit (k);
+      RepairLeaderboard.window (window);
+      final int to = window == 0 ? Integer.MAX_VALUE : DBProject.epochDay (DBProject.today ());
+      final int from = window == 0 ? Integer.MIN_VALUE : to - window + 1;
+      Table repairs = table ("repair.csv");
+      final int[] companies = repairs.ints ("mCompany");
+      final int[] days = repairs.ints ("repairDate");
+      Map<Integer, int[]> counts = scan (repairs.rows, new Scan<Map<Integer, int[]>> () {
+         Map<Integer, int[]> scan (int start, int end) {
+            Map<Integer, int[]> count = new HashMap<Integer, int[]> ();
+            for (int row = start; row < end; ++row){
+               if (days[row] >= from && days[row] <= to){
+                  int[] n = count.get (companies[row]);
+                  if (n == null){
+                     n = new int[1];
+                     count.put (companies[row], n);
+                  }//end if
+                  ++n[0];
+               }//end if
+            }//end for
+            return count;
+         }
+
+         Map<Integer, int[]> merge (Map<Integer, int[]> a, Map<Integer, int[]> b) {
+            for (Map.Entry<Integer, int[]> entry : b.entrySet ()){
+               int[] n = a.get (entry.getKey ());
+               if (n == null){
+                  a.put (entry.getKey (), entry.getValue ());
+               }else{
+                  n[0] += entry.getValue ()[0];
+               }//end if
+            }//end for
+            return a;
+         }
+      });
+      // joins the counts to the companies; repairs of unknown companies drop out.
+      final List<int[]> ranked = new ArrayList<int[]> ();
+      for (Map.Entry<Integer, int[]> entry : counts.entrySet ()){
+         Integer row = this._companies.get (entry.getKey ());
+         if (row != null){
+            ranked.add (new int[] { entry.getKey (), entry.getValue ()[0], row });
+         }//end if
+      }//end for
+      Collections.sort (ranked, new Comparator<int[]> () {
+         public int compare (int[] a, int[] b) {
+            if (a[1] != b[1]){
+               return a[1] > b[1] ? -1 : 1;
+            }//end if
+            return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+         }
+      });
+      String[] names = table ("maintenanceCompany.csv").texts ("name");
+      List<String[]> rows = new ArrayList<String[]> ();
+      for (int i = 0; i < ranked.size () && i < k; ++i){
+         rows.add (new String[] { names[ranked.get (i)[2]], String.valueOf (ranked.get (i)[1]) });
+      }//end for
+      write (sink, new String[] { "name", "count" }, rows);
+   }//end topCompanies
+
+   // 16. repairs of a room per year, latest year first
+   public void repairsPerYear (ResultSink sink, final int hotelID, final int roomNo) throws SQLException {
+      Table repairs = table ("repair.csv");
+      final int[] hotels = repairs.ints ("hotelID");
+      final int[] rooms = repairs.ints ("roomNo");
+      final int[] days = repairs.ints ("repairDate");
+      Map<Integer, int[]> years = scan (repairs.rows, new Scan<Map<Integer, int[]>> () {
+         Map<Integer, int[]> scan (int start, int end) {
+            Map<Integer, int[]> count = new HashMap<Integer, int[]> ();
+            for (int row = start; row < end; ++row){
+               if (hotels[row] == hotelID && rooms[row] == roomNo && days[row] != NULL){
+                  int year = DBProject.civil (days[row])[0];
+                  int[] n = count.get (year);
+                  if (n == null){
+                     n = new int[1];
+                     count.put (year, n);
+                  }//end if
+                  ++n[0];
+               }//end if
+            }//end for
+            return count;
+         }
+
+         Map<Integer, int[]> merge (Map<Integer, int[]> a, Map<Integer, int[]> b) {
+            for (Map.Entry<Integer, int[]> entry : b.entrySet ()){
+               int[] n = a.get (entry.getKey ());
+               if (n == null){
+                  a.put (entry.getKey (), entry.getValue ());
+               }else{
+                  n[0] += entry.getValue ()[0];
+               }//end if
+            }//end for
+            return a;
+         }
+      });
+      List<Integer> order = new ArrayList<Integer> (years.keySet ());
+      Collections.sort (order, Collections.reverseOrder ());
+      List<String[]> rows = new ArrayList<String[]> ();
+      for (int year : order){
+         rows.add (new String[] { String.valueOf (year), String.valueOf (years.get (year)[0]) });
+      }//end for
+      write (sink, new String[] { "date_part", "count" }, rows);
+   }//end repairsPerYear
+
+   Table table (String file) {
+      return this._tables.get (file);
+   }//end table
+
+   /*
+    * Runs a scan over rows 0..rows-1, split into one range per processor
+    * when the table is large enough.
+    **/
+   private <T> T scan (int rows, final Scan<T> scan) throws SQLException {
+      if (rows < PARALLEL_ROWS || this._threads == 1){
+         return scan.scan (0, rows);
+      }//end if
+      List<Future<T>> parts = new ArrayList<Future<T>> ();
+      int step = (rows + this._threads - 1) / this._threads;
+      for (int from = 0; from < rows; from += step){
+         final int start = from;
+         final int end = Math.min (rows, from + step);
+         parts.add (this._workers.submit (new Callable<T> () {
+            public T call () {
+               return scan.scan (start, end);
+            }
+         }));
+      }//end for
+      try{
+         T result = parts.get (0).get ();
+         for (int i = 1; i < parts.size (); ++i){
+            result = scan.merge (result, parts.get (i).get ());
+         }//end for
+         return result;
+      }catch (InterruptedException e){
+         throw new SQLException ("Interrupted");
+      }catch (ExecutionException e){
+         if (e.getCause () instanceof RuntimeException){
+            throw (RuntimeException) e.getCause ();
+         }//end if
+         throw new SQLException (e.getCause ().toString ());
+      }//end try
+   }//end scan
+
+   /*
+    * The first k rows of a list in an order, sorted.
+    **/
+   private static List<Integer> top (List<Integer> rows, int k, Comparator<Integer> order) {
+      if (rows.size () > 4 * k + 64){
+         // keeps the k best in a heap whose head is the worst of them.
+         PriorityQueue<Integer> heap = new PriorityQueue<Integer> (k + 1, Collections.reverseOrder (order));
+         for (Integer row : rows){
+            heap.add (row);
+            if (heap.size () > k){
+               heap.poll ();
+            }//end if
+         }//end for
+         rows = new ArrayList<Integer> (heap);
+      }//end if
+      Collections.sort (rows, order);
+      return new ArrayList<Integer> (rows.subList (0, Math.min (k, rows.size ())));
+   }//end top
+
+   /*
+    * Writes a result the way DBProject.printResult writes a query's:
+    * the column names only when there is a row.
+    **/
+   private static void write (ResultSink sink, String[] columns, List<String[]> rows) throws SQLException {
+      try{
+         if (!rows.isEmpty ()){
+            sink.begin (columns);
+         }//end if
+         for (String[] row : rows){
+            for (String cell : row){
+               sink.cell (cell);
+            }//end for
+            sink.endRow ();
+         }//end for
+         sink.end (rows.size ());
+      }catch (IOException e){
+         throw new SQLException ("Unable to write result: " + e.getMessage ());
+      }//end try
+   }//end write
+
+   private static void limit (int k) throws SQLException {
+      if (k < 0){
+         throw new SQLException ("LIMIT must not be negative");
+      }//end if
+   }//end limit
+
+   /*
+    * Reads a CSV file of data/ into a table: comma separated fields in
+    * the order of the table's columns, \N for NULL, as BulkLoader sends
+    * them to COPY.
+    **/
+   static Table read (File file, Table table) throws IOException {
+      int columns = table.names.length;
+      int capacity = 1024;
+      for (int c = 0; c < columns; ++c){
+         table.columns[c] = allocate (table.types[c], capacity);
+      }//end for
+      List<Map<String, String>> dictionaries = new ArrayList<Map<String, String>> ();
+      for (int c = 0; c < columns; ++c){
+         dictionaries.add (new HashMap<String, String> ());
+      }//end for
+
+      BufferedReader in = new BufferedReader (new FileReader (file), 1 << 16);
+      try{
+         String line;
+         int lineNo = 0;
+         while ((line = in.readLine ()) != null){
+            ++lineNo;
+            if (line.length () == 0){
+               continue;
+            }//end if
+            String[] fields = line.split (",", -1);
+            if (fields.length != columns){
+               throw new IOException (file + " line " + lineNo + ": expected " + columns + " fields");
+            }//end if
+            if (table.rows == capacity){
+               capacity *= 2;
+               for (int c = 0; c < columns; ++c){
+                  table.columns[c] = grow (table.columns[c], capacity);
+               }//end for
+            }//end if
+            int row = table.rows;
+            for (int c = 0; c < columns; ++c){
+               String field = fields[c];
+               boolean isNull = field.equals ("\\N");
+               String type = table.types[c];
+               try{
+                  if (type.equals ("int")){
+                     ((int[]) table.columns[c])[row] = isNull ? NULL : Integer.parseInt (field.trim ());
+                  }else if (type.equals ("long")){
+                     ((long[]) table.columns[c])[row] = isNull ? Long.MIN_VALUE : Long.parseLong (field.trim ());
+                  }else if (type.equals ("bool")){
+                     ((int[]) table.columns[c])[row] = isNull ? NULL : (bool (field) ? 1 : 0);
+                  }else if (type.equals ("date")){
+                     ((int[]) table.columns[c])[row] = isNull ? NULL : DBProject.epochDay (Params.parseDate (field.trim ()));
+                  }else if (type.equals ("money")){
+                     ((long[]) table.columns[c])[row] = isNull ? Long.MIN_VALUE
+                        : DBProject.cents (new java.math.BigDecimal (field.trim ()));
+                  }else{
+                     String value = null;
+                     if (!isNull){
+                        value = type.startsWith ("char") ? pad (field, Integer.parseInt (type.substring (4))) : field;
+                        String shared = dictionaries.get (c).get (value);
+                        if (shared == null){
+                           dictionaries.get (c).put (value, value);
+                        }else{
+                           value = shared;
+                        }//end if
+                     }//end if
+                     ((String[]) table.columns[c])[row] = value;
+                  }//end if
+               }catch (IllegalArgumentException e){
+                  throw new IOException (file + " line " + lineNo + ": bad " + table.names[c] + ": " + field);
+               }//end try
+            }//end for
+            ++table.rows;
+         }//end while
+      }finally{
+         in.close ();
+      }//end try
+      for (int c = 0; c < columns; ++c){
+         table.columns[c] = grow (table.columns[c], table.rows);
+      }//end for
+      return table;
+   }//end read
+
+   private static Object allocate (String type, int capacity) {
+      if (type.equals ("int") || type.equals ("bool") || type.equals ("date")){
+         return new int[capacity];
+      }else if (type.equals ("long") || type.equals ("money")){
+         return new long[capacity];
+      }//end if
+      return new String[capacity];
+   }//end allocate
+
+   private static Object grow (Object column, int capacity) {
+      if (column instanceof int[]){
+         return Arrays.copyOf ((int[]) column, capacity);
+      }else if (column instanceof long[]){
+         return Arrays.copyOf ((long[]) column, capacity);
+      }//end if
+      return Arrays.copyOf ((String[]) column, capacity);
+   }//end grow
+
+   private static boolean bool (String field) {
+      String value = field.trim ().toLowerCase ();
+      if (value.equals ("true") || value.equals ("t") || value.equals ("1") || value.equals ("yes")){
+         return true;
+      }//end if
+      if (value.equals ("false") || value.equals ("f") || value.equals ("0") || value.equals ("no")){
+         return false;
+      }//end if
+      throw new IllegalArgumentException (field);
+   }//end bool
+
+   /*
+    * A CHAR(n) value as the database returns it: blank padded to n, or cut
+    * to n when its tail is blank.
+    **/
+   private static String pad (String value, int n) {
+      if (value.length () >= n){
+         return value.substring (0, Math.max (n, value.replaceAll ("\\s+$", "").length ()));
+      }//end if
+      StringBuilder padded = new StringBuilder (n).append (value);
+      while (padded.length () < n){
+         padded.append (' ');
+      }//end while
+      return padded.toString ();
+   }//end pad
+
+}//end MemoryEngine
@@ -0,0 +1,20 @@
+/**
+ * A result sink that discards every row, used when only the timing of an
+ * operation matters.
+ *
+ */
+public class NullSink implements ResultSink {
+
+   public void begin (String[] columns) {
+   }//end begin
+
+   public void cell (String value) {
+   }//end cell
+
+   public void endRow () {
+   }//end endRow
+
+   public void end (int rows) {
+   }//end end
+
+}//end NullSink
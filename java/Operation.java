@@ -0,0 +1,172 @@
+import java.sql.SQLException;
+
+/**
+ * The sixteen menu operations, addressable by menu number or method name,
+ * with the parameter names they take when driven from a script rather than
+ * from the interactive prompts.
+ *
+ */
+public enum Operation {
+
+   ADD_CUSTOMER (1, "addCustomer", "fname lname address phone dob gender") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.addCustomer (esql, p.getString ("fname"), p.getString ("lname"), p.getString ("address"),
+                                p.getLong ("phone"), p.getDate ("dob"), p.getString ("gender"));
+      }
+   },
+   ADD_ROOM (2, "addRoom", "hotel room type") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.addRoom (esql, p.getInt ("hotel"), p.getInt ("room"), p.getString ("type"));
+      }
+   },
+   ADD_MAINTENANCE_COMPANY (3, "addMaintenanceCompany", "name address certified") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.addMaintenanceCompany (esql, p.getString ("name"),
+                                          p.getString ("address"), p.getBoolean ("certified"));
+      }
+   },
+   ADD_REPAIR (4, "addRepair", "hotel room company date description type") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.addRepair (esql, p.getInt ("hotel"), p.getInt ("room"),
+                              p.getInt ("company"), p.getDate ("date"), p.getString ("description"),
+                              p.getString ("type"));
+      }
+   },
+   BOOK_ROOM (5, "bookRoom", "customer hotel room date people price") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.bookRoom (esql, p.getInt ("customer"), p.getInt ("hotel"),
+                             p.getInt ("room"), p.getDate ("date"), p.getInt ("people"), p.getDecimal ("price"));
+      }
+   },
+   ASSIGN_HOUSE_CLEANING (6, "assignHouseCleaningToRoom", "staff hotel room") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.assignHouseCleaningToRoom (esql, p.getInt ("staff"), p.getInt ("hotel"), p.getInt ("room"));
+      }
+   },
+   REPAIR_REQUEST (7, "repairRequest", "manager repair date description") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.repairRequest (esql, p.getInt ("manager"), p.getInt ("repair"),
+                                  p.getDate ("date"), p.getString ("description"));
+      }
+   },
+   AVAILABLE_ROOMS (8, "numberOfAvailableRooms", "hotel date") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.numberOfAvailableRooms (esql, p.getInt ("hotel"), p.getDate ("date", DBProject.today ()));
+      }
+   },
+   BOOKED_ROOMS (9, "numberOfBookedRooms", "hotel") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.numberOfBookedRooms (esql, p.getInt ("hotel"));
+      }
+   },
+   BOOKINGS_FOR_WEEK (10, "listHotelRoomBookingsForAWeek", "hotel date page") {
+      void run (DBProject esql, Params p) throws SQLException {
+         if (p.has ("page")){
+            esql.writeNextPage (DBProject.listHotelRoomBookingsForAWeek (esql, p.getInt ("hotel"), p.getDate ("date"),
+                                                                        page (p)));
+            return;
+         }//end if
+         DBProject.listHotelRoomBookingsForAWeek (esql, p.getInt ("hotel"), p.getDate ("date"));
+      }
+   },
+   TOP_K_ROOM_PRICES (11, "topKHighestRoomPriceForADateRange", "k from to") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.topKHighestRoomPriceForADateRange (esql, p.getInt ("k"), p.getDate ("from"), p.getDate ("to"));
+      }
+   },
+   TOP_K_CUSTOMER_PRICES (12, "topKHighestPriceBookingsForACustomer", "customer k") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.topKHighestPriceBookingsForACustomer (esql, p.getInt ("customer"), p.getInt ("k"));
+      }
+   },
+   CUSTOMER_TOTAL_COST (13, "totalCostForCustomer", "hotel customer from to") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.totalCostForCustomer (esql, p.getInt ("hotel"), p.getInt ("customer"),
+                                         p.getDate ("from"), p.getDate ("to"));
+      }
+   },
+   REPAIRS_BY_COMPANY (14, "listRepairsMade", "company page") {
+      void run (DBProject esql, Params p) throws SQLException {
+         if (p.has ("page")){
+            esql.writeNextPage (DBProject.listRepairsMade (esql, p.getInt ("company"), page (p)));
+            return;
+         }//end if
+         DBProject.listRepairsMade (esql, p.getInt ("company"));
+      }
+   },
+   TOP_K_MAINTENANCE_COMPANIES (15, "topKMaintenanceCompany", "k window") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.topKMaintenanceCompany (esql, p.getInt ("k"), p.getInt ("window", 0));
+      }
+   },
+   REPAIRS_PER_YEAR (16, "numberOfRepairsForEachRoomPerYear", "hotel room") {
+      void run (DBProject esql, Params p) throws SQLException {
+         DBProject.numberOfRepairsForEachRoomPerYear (esql, p.getInt ("hotel"), p.getInt ("room"));
+      }
+   };
+
+   private final int _code;
+   private final String _method;
+   private final String _usage;
+
+   Operation (int code, String method, String usage) {
+      this._code = code;
+      this._method = method;
+      this._usage = usage;
+   }//end Operation
+
+   /**
+    * Runs the operation with the given parameters.
+    *
+    * @param esql the database the operation runs against
+    * @param p the named parameters, see getUsage()
+    * @throws java.sql.SQLException when the operation's statement fails
+    */
+   abstract void run (DBProject esql, Params p) throws SQLException;
+
+   /**
+    * @return the menu number of the operation
+    */
+   public int getCode () {
+      return this._code;
+   }//end getCode
+
+   /**
+    * @return the name of the DBProject method implementing the operation
+    */
+   public String getMethod () {
+      return this._method;
+   }//end getMethod
+
+   /**
+    * @return the space separated parameter names the operation takes
+    */
+   public String getUsage () {
+      return this._usage;
+   }//end getUsage
+
+   /**
+    * Looks an operation up by menu number or method name.
+    *
+    * @param name e.g. "5" or "bookRoom"
+    * @return the operation
+    */
+   public static Operation lookup (String name) {
+      for (Operation op : values ()){
+         if (op._method.equalsIgnoreCase (name) || String.valueOf (op._code).equals (name)){
+            return op;
+         }//end if
+      }//end for
+      throw new IllegalArgumentException ("Unknown operation: " + name);
+   }//end lookup
+
+   /*
+    * The page parameter of a paginated listing: "first" (or empty) for the
+    * first page, else the next_page token the previous page returned.
+    **/
+   private static String page (Params p) {
+      String page = p.getString ("page").trim ();
+      return page.length () == 0 || page.equalsIgnoreCase ("first") ? null : page;
+   }//end page
+
+}//end Operation
@@ -0,0 +1,144 @@
+import java.io.IOException;
+
+/**
+ * One page of a keyset (seek) paginated listing.  The listing query asks
+ * for the rows after the key of the previous page's last row, in key order,
+ * with LIMIT size + 1; this sink passes the first size rows on, remembers
+ * the key of the last one, and uses the extra row only to learn that
+ * another page follows.  Every page is then an index range scan that
+ * starts at its key, so page N costs what page 1 costs, unlike OFFSET,
+ * which reads and drops all the rows before it.
+ *
+ * The continuation token handed to the caller is plain text: the menu
+ * number of the listing, the listing's own parameters and the last key,
+ * separated by colons, e.g. 14:7:5120 for the repairs of company 7 after
+ * repair 5120.  A token is only accepted by the listing and parameters it
+ * was made for.
+ *
+ */
+public class Page implements ResultSink {
+
+   private final ResultSink _out;
+   private final int _size;
+   // the result columns holding the key, in key order.
+   private final int[] _keys;
+
+   private int _rows = 0;
+   private int _cell = 0;
+   private final String[] _row;
+   private String[] _last = null;
+   private boolean _more = false;
+
+   /**
+    * @param out where the rows of the page are written
+    * @param size the rows per page
+    * @param keys the result columns holding the key, in key order
+    */
+   public Page (ResultSink out, int size, int... keys) {
+      if (size < 1){
+         throw new IllegalArgumentException ("The page size must be positive");
+      }//end if
+      this._out = out;
+      this._size = size;
+      this._keys = keys;
+      this._row = new String[keys.length];
+   }//end Page
+
+   /**
+    * @return the LIMIT the listing query takes: the page size plus the row
+    *         telling whether another page follows
+    */
+   public int limit () {
+      return this._size + 1;
+   }//end limit
+
+   /**
+    * @return whether the listing has rows after this page
+    */
+   public boolean hasMore () {
+      return this._more;
+   }//end hasMore
+
+   /**
+    * @return the key of the last row written, in key order, or null when
+    *         the page is empty
+    */
+   public String[] lastKey () {
+      return this._last;
+   }//end lastKey
+
+   public void begin (String[] columns) throws IOException {
+      this._out.begin (columns);
+   }//end begin
+
+   public void cell (String value) throws IOException {
+      if (this._rows < this._size){
+         this._out.cell (value);
+         for (int i = 0; i < this._keys.length; ++i){
+            if (this._keys[i] == this._cell){
+               this._row[i] = value;
+            }//end if
+         }//end for
+      }//end if
+      ++this._cell;
+   }//end cell
+
+   public void endRow () throws IOException {
+      if (this._rows < this._size){
+         this._out.endRow ();
+         this._last = this._row.clone ();
+      }else{
+         this._more = true;
+      }//end if
+      ++this._rows;
+      this._cell = 0;
+   }//end endRow
+
+   public void end (int rows) throws IOException {
+      this._out.end (Math.min (rows, this._size));
+   }//end end
+
+   /**
+    * Makes a continuation token.
+    *
+    * @param parts the menu number, the listing's parameters and the key
+    * @return the token
+    */
+   public static String token (Object... parts) {
+      StringBuilder token = new StringBuilder ();
+      for (Object part : parts){
+         if (token.length () > 0){
+            token.append (':');
+         }//end if
+         token.append (part);
+      }//end for
+      return token.toString ();
+   }//end token
+
+   /**
+    * Splits a continuation token made by token(), checking that it belongs
+    * to a listing.
+    *
+    * @param token the token
+    * @param prefix the menu number and the listing's parameters it must
+    *        start with
+    * @param keys the number of key values it must end with
+    * @return the key values
+    * @throws IllegalArgumentException when the token is not one of the
+    *         listing's
+    */
+   public static String[] key (String token, Object[] prefix, int keys) {
+      String[] parts = token.trim ().split (":", -1);
+      boolean valid = parts.length == prefix.length + keys;
+      for (int i = 0; valid && i < prefix.length; ++i){
+         valid = parts[i].equals (String.valueOf (prefix[i]));
+      }//end for
+      if (!valid){
+         throw new IllegalArgumentException ("Not a next page token of this listing: " + token);
+      }//end if
+      String[] key = new String[keys];
+      System.arraycopy (parts, prefix.length, key, 0, keys);
+      return key;
+   }//end key
+
+}//end Page
@@ -0,0 +1,180 @@
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named operation parameters parsed from a line such as
+ * <pre>   5 customer=12 hotel=381 room=5 date=2015-05-12 people=2 price=150</pre>
+ * Values containing spaces may be enclosed in double quotes.  The typed
+ * getters throw IllegalArgumentException for missing or malformed values.
+ *
+ */
+public class Params {
+
+   private final Map<String, String> _values = new HashMap<String, String> ();
+
+   /**
+    * Parses whitespace separated key=value tokens.
+    *
+    * @param text the tokens, e.g. "hotel=381 date=2015-05-12"
+    * @return the parsed parameters
+    */
+   public static Params parse (String text) {
+      Params params = new Params ();
+      int i = 0;
+      int n = text.length ();
+      while (i < n){
+         while (i < n && Character.isWhitespace (text.charAt (i))){
+            ++i;
+         }//end while
+         if (i == n){
+            break;
+         }//end if
+         int eq = text.indexOf ('=', i);
+         if (eq < 0){
+            throw new IllegalArgumentException ("Expected key=value at: " + text.substring (i));
+         }//end if
+         String key = text.substring (i, eq).trim ().toLowerCase ();
+         i = eq + 1;
+         String value;
+         if (i < n && text.charAt (i) == '"'){
+            int close = text.indexOf ('"', i + 1);
+            if (close < 0){
+               throw new IllegalArgumentException ("Unterminated quote for " + key);
+            }//end if
+            value = text.substring (i + 1, close);
+            i = close + 1;
+         }else{
+            int start = i;
+            while (i < n && !Character.isWhitespace (text.charAt (i))){
+               ++i;
+            }//end while
+            value = text.substring (start, i);
+         }//end if
+         params._values.put (key, value);
+      }//end while
+      return params;
+   }//end parse
+
+   /**
+    * Sets a parameter.
+    *
+    * @param key the parameter name
+    * @param value the value, converted with String.valueOf
+    * @return this, for chaining
+    */
+   public Params put (String key, Object value) {
+      this._values.put (key.toLowerCase (), String.valueOf (value));
+      return this;
+   }//end put
+
+   /**
+    * @param key the parameter name
+    * @return true if the parameter was given
+    */
+   public boolean has (String key) {
+      return this._values.containsKey (key);
+   }//end has
+
+   public String getString (String key) {
+      String value = this._values.get (key);
+      if (value == null){
+         throw new IllegalArgumentException ("Missing parameter: " + key);
+      }//end if
+      return value;
+   }//end getString
+
+   public String getString (String key, String fallback) {
+      String value = this._values.get (key);
+      return value == null ? fallback : value;
+   }//end getString
+
+   public int getInt (String key) {
+      String value = getString (key);
+      try{
+         return Integer.parseInt (value);
+      }catch (NumberFormatException e){
+         throw new IllegalArgumentException ("Parameter " + key + " is not an integer: " + value);
+      }//end try
+   }//end getInt
+
+   public int getInt (String key, int fallback) {
+      return has (key) ? getInt (key) : fallback;
+   }//end getInt
+
+   public long getLong (String key) {
+      String value = getString (key);
+      try{
+         return Long.parseLong (value);
+      }catch (NumberFormatException e){
+         throw new IllegalArgumentException ("Parameter " + key + " is not an integer: " + value);
+      }//end try
+   }//end getLong
+
+   public BigDecimal getDecimal (String key) {
+      String value = getString (key);
+      try{
+         return new BigDecimal (value);
+      }catch (NumberFormatException e){
+         throw new IllegalArgumentException ("Parameter " + key + " is not a number: " + value);
+      }//end try
+   }//end getDecimal
+
+   public boolean getBoolean (String key) {
+      String value = getString (key).toLowerCase ();
+      if (value.equals ("true") || value.equals ("y") || value.equals ("yes")){
+         return true;
+      }//end if
+      if (value.equals ("false") || value.equals ("n") || value.equals ("no")){
+         return false;
+      }//end if
+      throw new IllegalArgumentException ("Parameter " + key + " is not a boolean: " + value);
+   }//end getBoolean
+
+   public java.sql.Date getDate (String key) {
+      return parseDate (getString (key));
+   }//end getDate
+
+   public java.sql.Date getDate (String key, java.sql.Date fallback) {
+      return has (key) ? getDate (key) : fallback;
+   }//end getDate
+
+   /**
+    * Parses a date written either as yyyy-mm-dd or, like the data files,
+    * as m/d/yyyy.
+    *
+    * @param value the date text
+    * @return the date
+    */
+   public static java.sql.Date parseDate (String value) {
+      int year;
+      int month;
+      int day;
+      try{
+         int dash = value.indexOf ('-');
+         if (dash > 0){
+            int dash2 = value.indexOf ('-', dash + 1);
+            year = Integer.parseInt (value.substring (0, dash));
+            month = Integer.parseInt (value.substring (dash + 1, dash2));
+            day = Integer.parseInt (value.substring (dash2 + 1));
+         }else{
+            int slash = value.indexOf ('/');
+            int slash2 = value.indexOf ('/', slash + 1);
+            month = Integer.parseInt (value.substring (0, slash));
+            day = Integer.parseInt (value.substring (slash + 1, slash2));
+            year = Integer.parseInt (value.substring (slash2 + 1));
+         }//end if
+      }catch (RuntimeException e){
+         throw new IllegalArgumentException ("Not a date: " + value);
+      }//end try
+      if (month < 1 || month > 12 || day < 1 || day > 31 || year < 1 || year > 9999){
+         throw new IllegalArgumentException ("Not a date: " + value);
+      }//end if
+      return DBProject.toDate (year, month, day);
+   }//end parseDate
+
+   public String toString () {
+      return this._values.toString ();
+   }//end toString
+
+}//end Params
@@ -0,0 +1,201 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Creates the yearly partitions of Booking and Repair ahead of time, once
+ * sql/partition.sql has partitioned them.  Run it before every new year
+ * (a yearly or monthly cron job is enough): rows dated past the last
+ * partition are still accepted, but they go to the default partition,
+ * which every date range query has to read.
+ *
+ * For each of the two tables, every year from the current one through
+ * partition.years (default 2) years ahead gets a partition named like
+ * booking_y2027 if it has none.  A year that already has rows in the
+ * default partition is split out of it in one transaction: the default
+ * partition is detached, the year's partition created and filled with
+ * those rows, and the default partition attached again.  PostgreSQL could
+ * not create the partition otherwise.
+ *
+ * Usage: java PartitionMaintainer &lt;dbname&gt; &lt;port&gt; &lt;user&gt;
+ *
+ */
+public class PartitionMaintainer {
+
+   // partitioned table, its partition key, and the prefix of its partitions.
+   static final String[][] TABLES = {
+      { "Booking", "bookingDate", "booking" },
+      { "Repair", "repairDate", "repair" },
+   };
+
+   private static final String PARTITIONS =
+      "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+      "JOIN pg_class p ON p.oid = i.inhparent JOIN pg_namespace n ON n.oid = p.relnamespace " +
+      "WHERE n.nspname = current_schema() AND p.relname = ?";
+
+   private static final String IS_PARTITIONED =
+      "SELECT 1 FROM pg_partitioned_table t JOIN pg_class c ON c.oid = t.partrelid " +
+      "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+      "WHERE n.nspname = current_schema() AND c.relname = ?";
+
+   private final Connection _conn;
+
+   /**
+    * @param conn a connection to the database; its auto-commit mode is
+    *        changed while a year is split out of the default partition
+    */
+   public PartitionMaintainer (Connection conn) {
+      this._conn = conn;
+   }//end PartitionMaintainer
+
+   public static void main (String[] args) throws Exception {
+      if (args.length != 3){
+         System.err.println ("Usage: java PartitionMaintainer <dbname> <port> <user>");
+         return;
+      }//end if
+      Class.forName ("org.postgresql.Driver");
+      String url = "jdbc:postgresql://localhost:" + args[1] + "/" + args[0];
+      ConnectionPool pool = new ConnectionPool (url, args[2], "", 1, 1, 60000L, 30000L);
+      try{
+         PooledConnection conn = pool.borrow ();
+         try{
+            int year = DBProject.civil (DBProject.epochDay (DBProject.today ()))[0];
+            int ahead = Integer.getInteger ("partition.years", 2);
+            PartitionMaintainer maintainer = new PartitionMaintainer (conn.getConnection ());
+            for (String[] table : TABLES){
+               maintainer.ensure (table[0], table[1], table[2], year, year + ahead);
+            }//end for
+         }finally{
+            pool.release (conn);
+         }//end try
+      }finally{
+         pool.close ();
+      }//end try
+   }//end main
+
+   /**
+    * Creates the missing yearly partitions of a table.
+    *
+    * @param table the partitioned table
+    * @param column its partition key
+    * @param prefix the name prefix of its partitions
+    * @param from the first year
+    * @param to the last year
+    * @return the number of partitions created
+    * @throws java.sql.SQLException when a partition cannot be created
+    */
+   public int ensure (String table, String column, String prefix, int from, int to) throws SQLException {
+      if (!exists (IS_PARTITIONED, table.toLowerCase ())){
+         System.out.println (table + " is not partitioned; run sql/partition.sql first");
+         return 0;
+      }//end if
+      Set<String> partitions = partitions (table.toLowerCase ());
+      String fallback = prefix + "_default";
+      int created = 0;
+      for (int year = from; year <= to; ++year){
+         String name = prefix + "_y" + year;
+         if (partitions.contains (name)){
+            continue;
+         }//end if
+         String bounds = String.format ("FOR VALUES FROM ('%d-01-01') TO ('%d-01-01')", year, year + 1);
+         String range = String.format ("%s >= '%d-01-01' AND %s < '%d-01-01'", column, year, column, year + 1);
+         long moved = 0;
+         if (partitions.contains (fallback) && count (fallback, range) > 0){
+            moved = split (table, name, bounds, fallback, range);
+         }else{
+            execute ("CREATE TABLE " + name + " PARTITION OF " + table + " " + bounds);
+         }//end if
+         System.out.println ("created " + name + (moved > 0 ? ", moved " + moved + " rows from " + fallback : ""));
+         ++created;
+      }//end for
+      if (created == 0){
+         System.out.println (table + ": partitions through " + to + " exist");
+      }//end if
+      return created;
+   }//end ensure
+
+   /*
+    * Moves the rows of a year out of the default partition into a new
+    * partition of their own, in one transaction.
+    * @return the number of rows moved
+    **/
+   private long split (String table, String name, String bounds, String fallback, String range) throws SQLException {
+      boolean autoCommit = this._conn.getAutoCommit ();
+      this._conn.setAutoCommit (false);
+      try{
+         Statement stmt = this._conn.createStatement ();
+         try{
+            stmt.execute ("ALTER TABLE " + table + " DETACH PARTITION " + fallback);
+            stmt.execute ("CREATE TABLE " + name + " PARTITION OF " + table + " " + bounds);
+            long moved = stmt.executeUpdate ("INSERT INTO " + name + " SELECT * FROM " + fallback + " WHERE " + range);
+            stmt.executeUpdate ("DELETE FROM " + fallback + " WHERE " + range);
+            stmt.execute ("ALTER TABLE " + table + " ATTACH PARTITION " + fallback + " DEFAULT");
+            this._conn.commit ();
+            return moved;
+         }finally{
+            stmt.close ();
+         }//end try
+      }catch (SQLException e){
+         this._conn.rollback ();
+         throw e;
+      }finally{
+         this._conn.setAutoCommit (autoCommit);
+      }//end try
+   }//end split
+
+   private Set<String> partitions (String table) throws SQLException {
+      Set<String> names = new HashSet<String> ();
+      PreparedStatement stmt = this._conn.prepareStatement (PARTITIONS);
+      try{
+         stmt.setString (1, table);
+         ResultSet rs = stmt.executeQuery ();
+         while (rs.next ()){
+            names.add (rs.getString (1));
+         }//end while
+         rs.close ();
+      }finally{
+         stmt.close ();
+      }//end try
+      return names;
+   }//end partitions
+
+   private boolean exists (String query, String table) throws SQLException {
+      PreparedStatement stmt = this._conn.prepareStatement (query);
+      try{
+         stmt.setString (1, table);
+         ResultSet rs = stmt.executeQuery ();
+         boolean found = rs.next ();
+         rs.close ();
+         return found;
+      }finally{
+         stmt.close ();
+      }//end try
+   }//end exists
+
+   private long count (String partition, String range) throws SQLException {
+      Statement stmt = this._conn.createStatement ();
+      try{
+         ResultSet rs = stmt.executeQuery ("SELECT COUNT(*) FROM " + partition + " WHERE " + range);
+         rs.next ();
+         long count = rs.getLong (1);
+         rs.close ();
+         return count;
+      }finally{
+         stmt.close ();
+      }//end try
+   }//end count
+
+   private void execute (String sql) throws SQLException {
+      Statement stmt = this._conn.createStatement ();
+      try{
+         stmt.execute (sql);
+      }finally{
+         stmt.close ();
+      }//end try
+   }//end execute
+
+}//end PartitionMaintainer
@@ -0,0 +1,171 @@
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A physical connection owned by a ConnectionPool.  Callers obtain one with
+ * ConnectionPool.borrow() and must hand it back with ConnectionPool.release().
+ *
+ * Each connection keeps its own cache of prepared statements keyed by the
+ * SQL template, so a template is parsed and planned once per connection
+ * rather than once per call.  The shipped pg73 driver only does that when
+ * asked: it fills the template in on the client unless
+ * PGStatement.setUseServerPrepare(true) is called, so cached statements
+ * are switched to server-side PREPARE/EXECUTE (PostgreSQL 7.3 and later).
+ *
+ */
+public class PooledConnection {
+
+   // the physical connection.
+   private final Connection _connection;
+
+   // the pool that owns this connection, used to report cache hits and misses.
+   private final ConnectionPool _owner;
+
+   // prepared statements by SQL template, least recently used first.
+   private final LinkedHashMap<String, PreparedStatement> _statements;
+
+   // the last time (System.currentTimeMillis) the connection was returned.
+   private long _lastUsed;
+
+   // PGStatement.setUseServerPrepare, or null when the driver has none.
+   private static final Method USE_SERVER_PREPARE = useServerPrepare ();
+
+   /**
+    * Wraps an already opened physical connection.
+    *
+    * @param owner the pool the connection belongs to
+    * @param connection the physical connection
+    */
+   PooledConnection (ConnectionPool owner, Connection connection) {
+      this._owner = owner;
+      this._connection = connection;
+      this._statements = new LinkedHashMap<String, PreparedStatement> (16, 0.75f, true);
+      this._lastUsed = System.currentTimeMillis ();
+   }//end PooledConnection
+
+   /**
+    * @return the physical connection
+    */
+   public Connection getConnection () {
+      return this._connection;
+   }//end getConnection
+
+   /**
+    * Returns the cached prepared statement for a SQL template, preparing and
+    * caching it on first use.  The statement stays open and must not be
+    * closed by the caller.
+    *
+    * @param template the SQL text with ? placeholders
+    * @return the prepared statement
+    * @throws java.sql.SQLException when the statement cannot be prepared
+    */
+   public PreparedStatement prepare (String template) throws SQLException {
+      PreparedStatement stmt = this._statements.get (template);
+      if (stmt != null){
+         this._owner.recordStatementHit ();
+         return stmt;
+      }//end if
+      this._owner.recordStatementMiss ();
+      stmt = this._connection.prepareStatement (template);
+      serverPrepare (stmt);
+      this._statements.put (template, stmt);
+      if (this._statements.size () > this._owner.getStatementCacheSize ()){
+         Iterator<Map.Entry<String, PreparedStatement>> eldest = this._statements.entrySet ().iterator ();
+         closeQuietly (eldest.next ().getValue ());
+         eldest.remove ();
+      }//end if
+      return stmt;
+   }//end prepare
+
+   /**
+    * @return how long, in milliseconds, the connection has been idle
+    */
+   long idleMillis () {
+      return System.currentTimeMillis () - this._lastUsed;
+   }//end idleMillis
+
+   /**
+    * Marks the connection as just used.
+    */
+   void touch () {
+      this._lastUsed = System.currentTimeMillis ();
+   }//end touch
+
+   /**
+    * Checks that the server still answers on this connection.
+    *
+    * @return true if a trivial query round trip succeeds
+    */
+   boolean isHealthy () {
+      try{
+         if (this._connection.isClosed ()){
+            return false;
+         }//end if
+         Statement stmt = this._connection.createStatement ();
+         try{
+            ResultSet rs = stmt.executeQuery ("SELECT 1");
+            boolean ok = rs.next ();
+            rs.close ();
+            return ok;
+         }finally{
+            stmt.close ();
+         }//end try
+      }catch (SQLException e){
+         return false;
+      }//end try
+   }//end isHealthy
+
+   /**
+    * Closes the physical connection, ignoring errors.
+    */
+   void close () {
+      for (PreparedStatement stmt : this._statements.values ()){
+         closeQuietly (stmt);
+      }//end for
+      this._statements.clear ();
+      try{
+         this._connection.close ();
+      }catch (SQLException e){
+         // ignored.
+      }//end try
+   }//end close
+
+   /*
+    * Has the driver prepare a statement on the server, when it supports
+    * that; the statement works the same either way.
+    **/
+   private static void serverPrepare (PreparedStatement stmt) {
+      if (USE_SERVER_PREPARE == null || !USE_SERVER_PREPARE.getDeclaringClass ().isInstance (stmt)){
+         return;
+      }//end if
+      try{
+         USE_SERVER_PREPARE.invoke (stmt, Boolean.TRUE);
+      }catch (Exception e){
+         // older server or driver; the statement is filled in on the client.
+      }//end try
+   }//end serverPrepare
+
+   private static Method useServerPrepare () {
+      try{
+         return Class.forName ("org.postgresql.PGStatement").getMethod ("setUseServerPrepare", boolean.class);
+      }catch (Exception e){
+         return null;
+      }//end try
+   }//end useServerPrepare
+
+   private static void closeQuietly (Statement stmt) {
+      try{
+         stmt.close ();
+      }catch (SQLException e){
+         // ignored.
+      }//end try
+   }//end closeQuietly
+
+}//end PooledConnection
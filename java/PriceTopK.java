@@ -0,0 +1,233 @@
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * The bookings of every day, each day's bookings kept sorted by price, for
+ * the "top k highest booking prices in a date range" report.
+ *
+ * A query looks only at the days in its range: a heap holding one cursor
+ * per day yields the most expensive remaining booking k times, so the cost
+ * is the number of days in the range plus k heap steps, independent of the
+ * size of Booking.  Built once from Booking and kept current by bookRoom;
+ * ties on price are broken by booking ID, as in Queries.TOP_K_ROOM_PRICES.
+ *
+ */
+public class PriceTopK {
+
+   private static final String LOAD_BOOKINGS =
+      "SELECT bID, hotelID, roomNo, bookingDate, price FROM Booking";
+
+   /**
+    * The bookings of one day, most expensive first.
+    */
+   private static class Bucket {
+      final int day;
+      int size = 0;
+      long[] cents = new long[4];
+      int[] bIDs = new int[4];
+      int[] hotelIDs = new int[4];
+      int[] roomNos = new int[4];
+
+      Bucket (int day) {
+         this.day = day;
+      }//end Bucket
+
+      boolean before (long cents, int bID, int i) {
+         return cents > this.cents[i] || (cents == this.cents[i] && bID < this.bIDs[i]);
+      }//end before
+
+      void grow () {
+         if (this.size == this.cents.length){
+            int capacity = this.size * 2;
+            this.cents = Arrays.copyOf (this.cents, capacity);
+            this.bIDs = Arrays.copyOf (this.bIDs, capacity);
+            this.hotelIDs = Arrays.copyOf (this.hotelIDs, capacity);
+            this.roomNos = Arrays.copyOf (this.roomNos, capacity);
+         }//end if
+      }//end grow
+
+      void append (int bID, int hotelID, int roomNo, long cents) {
+         grow ();
+         set (this.size++, bID, hotelID, roomNo, cents);
+      }//end append
+
+      void insert (int bID, int hotelID, int roomNo, long cents) {
+         grow ();
+         int lo = 0;
+         int hi = this.size;
+         while (lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if (before (cents, bID, mid)){
+               hi = mid;
+            }else{
+               lo = mid + 1;
+            }//end if
+         }//end while
+         int tail = this.size - lo;
+         System.arraycopy (this.cents, lo, this.cents, lo + 1, tail);
+         System.arraycopy (this.bIDs, lo, this.bIDs, lo + 1, tail);
+         System.arraycopy (this.hotelIDs, lo, this.hotelIDs, lo + 1, tail);
+         System.arraycopy (this.roomNos, lo, this.roomNos, lo + 1, tail);
+         set (lo, bID, hotelID, roomNo, cents);
+         ++this.size;
+      }//end insert
+
+      void set (int i, int bID, int hotelID, int roomNo, long cents) {
+         this.cents[i] = cents;
+         this.bIDs[i] = bID;
+         this.hotelIDs[i] = hotelID;
+         this.roomNos[i] = roomNo;
+      }//end set
+
+      /*
+       * Sorts the bucket once after a bulk of appends.
+       **/
+      void sort () {
+         Integer[] order = new Integer[this.size];
+         for (int i = 0; i < order.length; ++i){
+            order[i] = i;
+         }//end for
+         Arrays.sort (order, new Comparator<Integer> () {
+            public int compare (Integer a, Integer b) {
+               if (cents[a] != cents[b]){
+                  return cents[a] > cents[b] ? -1 : 1;
+               }//end if
+               return bIDs[a] < bIDs[b] ? -1 : (bIDs[a] == bIDs[b] ? 0 : 1);
+            }
+         });
+         long[] c = new long[this.cents.length];
+         int[] b = new int[c.length];
+         int[] h = new int[c.length];
+         int[] r = new int[c.length];
+         for (int i = 0; i < order.length; ++i){
+            c[i] = this.cents[order[i]];
+            b[i] = this.bIDs[order[i]];
+            h[i] = this.hotelIDs[order[i]];
+            r[i] = this.roomNos[order[i]];
+         }//end for
+         this.cents = c;
+         this.bIDs = b;
+         this.hotelIDs = h;
+         this.roomNos = r;
+      }//end sort
+   }//end Bucket
+
+   // epoch day -> bookings of that day.
+   private final TreeMap<Integer, Bucket> _days = new TreeMap<Integer, Bucket> ();
+   private boolean _built = false;
+
+   /**
+    * Loads every booking.  Replaces any previous contents.
+    *
+    * @param pool the pool to read Booking through
+    * @throws java.sql.SQLException when the table cannot be read
+    */
+   public synchronized void build (ConnectionPool pool) throws SQLException {
+      this._days.clear ();
+      PooledConnection conn = pool.borrow ();
+      try{
+         PreparedStatement stmt = conn.prepare (LOAD_BOOKINGS);
+         ResultSet rs = stmt.executeQuery ();
+         try{
+            while (rs.next ()){
+               bucket (DBProject.epochDay (rs.getDate (4))).append (
+                  rs.getInt (1), rs.getInt (2), rs.getInt (3), DBProject.cents (rs.getBigDecimal (5)));
+            }//end while
+         }finally{
+            rs.close ();
+         }//end try
+      }finally{
+         pool.release (conn);
+      }//end try
+      for (Bucket bucket : this._days.values ()){
+         bucket.sort ();
+      }//end for
+      this._built = true;
+   }//end build
+
+   /**
+    * @return true once build() has completed
+    */
+   public synchronized boolean isBuilt () {
+      return this._built;
+   }//end isBuilt
+
+   /**
+    * Records a new booking.
+    */
+   public synchronized void onBooking (int bID, int hotelID, int roomNo, int day, long cents) {
+      if (this._built){
+         bucket (day).insert (bID, hotelID, roomNo, cents);
+      }//end if
+   }//end onBooking
+
+   /**
+    * Writes the k most expensive bookings made for the days from..to in the
+    * same shape as Queries.TOP_K_ROOM_PRICES.
+    *
+    * @param sink where the rows go
+    * @param k the number of bookings
+    * @param from the first day, as an epoch day
+    * @param to the last day, as an epoch day
+    */
+   public synchronized void writeTop (ResultSink sink, int k, int from, int to) throws IOException {
+      final Bucket[] buckets = from > to
+         ? new Bucket[0]
+         : this._days.subMap (from, true, to, true).values ().toArray (new Bucket[0]);
+      final int[] next = new int[buckets.length];
+      PriorityQueue<Integer> heap = new PriorityQueue<Integer> (Math.max (1, buckets.length), new Comparator<Integer> () {
+         public int compare (Integer a, Integer b) {
+            Bucket x = buckets[a];
+            Bucket y = buckets[b];
+            int i = next[a];
+            int j = next[b];
+            if (x.cents[i] != y.cents[j]){
+               return x.cents[i] > y.cents[j] ? -1 : 1;
+            }//end if
+            return x.bIDs[i] < y.bIDs[j] ? -1 : (x.bIDs[i] == y.bIDs[j] ? 0 : 1);
+         }
+      });
+      for (int d = 0; d < buckets.length; ++d){
+         if (buckets[d].size > 0){
+            heap.add (d);
+         }//end if
+      }//end for
+
+      int rows = 0;
+      while (rows < k && !heap.isEmpty ()){
+         int d = heap.poll ();
+         Bucket bucket = buckets[d];
+         int i = next[d];
+         if (rows == 0){
+            sink.begin (new String[] { "bid", "hotelid", "roomno", "bookingdate", "price" });
+         }//end if
+         sink.cell (String.valueOf (bucket.bIDs[i]));
+         sink.cell (String.valueOf (bucket.hotelIDs[i]));
+         sink.cell (String.valueOf (bucket.roomNos[i]));
+         sink.cell (DBProject.fromEpochDay (bucket.day).toString ());
+         sink.cell (DBProject.fromCents (bucket.cents[i]));
+         sink.endRow ();
+         ++rows;
+         if (++next[d] < bucket.size){
+            heap.add (d);
+         }//end if
+      }//end while
+      sink.end (rows);
+   }//end writeTop
+
+   private Bucket bucket (int day) {
+      Bucket bucket = this._days.get (day);
+      if (bucket == null){
+         bucket = new Bucket (day);
+         this._days.put (day, bucket);
+      }//end if
+      return bucket;
+   }//end bucket
+
+}//end PriceTopK
@@ -0,0 +1,149 @@
+/**
+ * SQL templates used by the DBProject menu operations.  Every value supplied
+ * by the user is bound to a ? placeholder through DBProject.executeQuery /
+ * DBProject.executeUpdate, so each template is prepared once per pooled
+ * connection and then reused.
+ *
+ * Booking and Repair may be range partitioned by bookingDate / repairDate
+ * (sql/partition.sql).  Templates over them filter on the bare date column
+ * compared with bound dates, which lets PostgreSQL skip the partitions
+ * outside the range, and lookups by bID / rID also give the row's date so
+ * that they read a single partition.
+ *
+ */
+public final class Queries {
+
+   private Queries () {
+   }//end Queries
+
+   // 1. Add new customer
+   public static final String ADD_CUSTOMER =
+      "INSERT INTO Customer(customerID, fName, lName, Address, phNo, DOB, gender) " +
+      "VALUES (?, ?, ?, ?, ?, ?, CAST(? AS GenderType))";
+   public static final String SHOW_CUSTOMER =
+      "SELECT * FROM Customer WHERE customerID = ?";
+
+   // 2. Add new room
+   public static final String ADD_ROOM =
+      "INSERT INTO Room(hotelID, roomNo, roomType) VALUES (?, ?, ?)";
+   public static final String SHOW_ROOMS_OF_HOTEL =
+      "SELECT * FROM Room WHERE hotelID = ? ORDER BY roomNo";
+
+   // 3. Add new maintenance company
+   public static final String ADD_MAINTENANCE_COMPANY =
+      "INSERT INTO MaintenanceCompany (cmpID, name, address, isCertified) VALUES (?, ?, ?, ?)";
+   public static final String SHOW_MAINTENANCE_COMPANY =
+      "SELECT * FROM MaintenanceCompany WHERE cmpID = ?";
+
+   // 4. Add new repair; the same statement counts it in RepairYearCount
+   //    (ON CONFLICT needs PostgreSQL 9.5 or later)
+   public static final String ADD_REPAIR =
+      "WITH R AS (" +
+      "INSERT INTO Repair (rID, hotelID, roomNo, mCompany, repairDate, description, repairType) " +
+      "VALUES (?, ?, ?, ?, ?, ?, ?) RETURNING hotelID, roomNo, repairDate) " +
+      "INSERT INTO RepairYearCount (hotelID, roomNo, year, repairs) " +
+      "SELECT R.hotelID, R.roomNo, EXTRACT(YEAR FROM R.repairDate)::integer, 1 FROM R " +
+      "ON CONFLICT (hotelID, roomNo, year) DO UPDATE SET repairs = RepairYearCount.repairs + 1";
+   public static final String SHOW_REPAIR =
+      "SELECT * FROM Repair WHERE rID = ? AND repairDate = ?";
+
+   // 5. Add new booking
+   public static final String FIND_CUSTOMER_BOOKING =
+      "SELECT bID FROM Booking WHERE hotelID = ? AND roomNo = ? AND customer = ?";
+   public static final String ADD_BOOKING =
+      "INSERT INTO Booking (bID, customer, hotelID, roomNo, bookingDate, noOfPeople, price) " +
+      "VALUES (?, ?, ?, ?, ?, ?, ?)";
+   public static final String SHOW_BOOKING =
+      "SELECT * FROM Booking WHERE bID = ? AND bookingDate = ?";
+   // a booking of a bulk import, skipped (0 rows) when its room is already
+   // booked that day; the last three values repeat hotelID, roomNo, bookingDate
+   public static final String IMPORT_BOOKING =
+      "INSERT INTO Booking (bID, customer, hotelID, roomNo, bookingDate, noOfPeople, price) " +
+      "SELECT ?, ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM Booking B " +
+      "WHERE B.hotelID = ? AND B.roomNo = ? AND B.bookingDate = ?)";
+
+   // 6. Assign house cleaning staff to a room
+   public static final String ADD_ASSIGNMENT =
+      "INSERT INTO Assigned (asgID, staffID, hotelID, roomNo) VALUES (?, ?, ?, ?)";
+   public static final String SHOW_ASSIGNMENTS_OF_STAFF =
+      "SELECT * FROM Assigned WHERE staffID = ?";
+
+   // 7. Raise a repair request
+   public static final String ADD_REQUEST =
+      "INSERT INTO Request (reqID, managerID, repairID, requestDate, description) " +
+      "VALUES (?, ?, ?, ?, ?)";
+   public static final String SHOW_REQUEST =
+      "SELECT * FROM Request WHERE reqID = ?";
+
+   // 8. Get number of available rooms (free on every day of a date range);
+   //    answered from AvailabilityIndex once it is built
+   public static final String AVAILABLE_ROOMS =
+      "SELECT COUNT(*) AS AvailableRooms FROM Room R WHERE R.hotelID = ? " +
+      "AND NOT EXISTS (SELECT 1 FROM Booking B WHERE B.hotelID = R.hotelID AND B.roomNo = R.roomNo " +
+      "AND B.bookingDate >= ? AND B.bookingDate <= ?)";
+
+   // 9. Get number of booked rooms
+   public static final String BOOKED_ROOMS =
+      "SELECT COUNT(B.roomNo) AS ReservedRooms FROM Booking B WHERE B.hotelID = ?";
+
+   // 10. Get hotel bookings for a week; answered from AvailabilityIndex
+   //     once it is built
+   public static final String BOOKINGS_FOR_WEEK =
+      "SELECT DISTINCT B.roomNo, B.bookingDate FROM Booking B " +
+      "WHERE B.hotelID = ? AND B.bookingDate >= ? AND B.bookingDate <= ? " +
+      "ORDER BY B.bookingDate, B.roomNo";
+   // one page of the week, after the (bookingDate, roomNo) key of the last
+   // row of the previous page; the bookingDate bound repeats the key's date
+   // so that the partitions before it are skipped
+   public static final String BOOKINGS_FOR_WEEK_PAGE =
+      "SELECT DISTINCT B.roomNo, B.bookingDate FROM Booking B " +
+      "WHERE B.hotelID = ? AND B.bookingDate >= ? AND B.bookingDate <= ? " +
+      "AND (B.bookingDate, B.roomNo) > (?, ?) " +
+      "ORDER BY B.bookingDate, B.roomNo LIMIT ?";
+
+   // 11. Get top k rooms with highest price for a date range; answered from
+   //     PriceTopK once it is built
+   public static final String TOP_K_ROOM_PRICES =
+      "SELECT B.bID, B.hotelID, B.roomNo, B.bookingDate, B.price FROM Booking B " +
+      "WHERE B.bookingDate >= ? AND B.bookingDate <= ? ORDER BY B.price DESC, B.bID LIMIT ?";
+
+   // 12. Get top k highest booking price for a customer
+   public static final String TOP_K_CUSTOMER_PRICES =
+      "SELECT B.price FROM Booking B, Customer C " +
+      "WHERE C.customerID = ? AND B.customer = C.customerID ORDER BY B.price DESC LIMIT ?";
+
+   // 13. Get customer total cost occurred for a given date range; answered
+   //     from SpendIndex once it is built
+   public static final String CUSTOMER_TOTAL_COST =
+      "SELECT B.customer AS customerID, SUM(B.price) FROM Booking B " +
+      "WHERE B.hotelID = ? AND B.customer = ? AND B.bookingDate >= ? AND B.bookingDate <= ? " +
+      "GROUP BY B.customer";
+
+   // 14. List the repairs made by maintenance company
+   public static final String REPAIRS_BY_COMPANY =
+      "SELECT M.name, R.rID, R.repairType, R.hotelID, R.roomNo " +
+      "FROM Repair R, MaintenanceCompany M WHERE M.cmpID = ? AND M.cmpID = R.mCompany ORDER BY R.rID";
+   // one page of them, after the rID of the last row of the previous page
+   public static final String REPAIRS_BY_COMPANY_PAGE =
+      "SELECT M.name, R.rID, R.repairType, R.hotelID, R.roomNo " +
+      "FROM Repair R, MaintenanceCompany M WHERE M.cmpID = ? AND M.cmpID = R.mCompany " +
+      "AND R.rID > ? ORDER BY R.rID LIMIT ?";
+
+   // 15. Get top k maintenance companies based on repair count, all-time or
+   //     over the last n days; answered from RepairLeaderboard once it is built
+   public static final String TOP_K_MAINTENANCE_COMPANIES =
+      "SELECT M.name, COUNT(R.rID) FROM MaintenanceCompany M, Repair R " +
+      "WHERE M.cmpID = R.mCompany GROUP BY M.cmpID, M.name ORDER BY COUNT(R.rID) DESC, M.cmpID LIMIT ?";
+   public static final String TOP_K_MAINTENANCE_COMPANIES_SINCE =
+      "SELECT M.name, COUNT(R.rID) FROM MaintenanceCompany M, Repair R " +
+      "WHERE M.cmpID = R.mCompany AND R.repairDate > ? AND R.repairDate <= ? " +
+      "GROUP BY M.cmpID, M.name ORDER BY COUNT(R.rID) DESC, M.cmpID LIMIT ?";
+
+   // 16. Get number of repairs occurred per year for a given hotel room, read
+   //     from the RepairYearCount summary under the column names of the old
+   //     EXTRACT/COUNT query
+   public static final String REPAIRS_PER_YEAR =
+      "SELECT Y.year AS date_part, Y.repairs AS count FROM RepairYearCount Y " +
+      "WHERE Y.roomNo = ? AND Y.hotelID = ? ORDER BY Y.year DESC";
+
+}//end Queries
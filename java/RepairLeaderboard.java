@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Repair counts per maintenance company, all-time and over the rolling
+ * windows of the last 30, 90 and 365 days, kept ranked so that the top k
+ * companies of any window are read straight off the front of a list.
+ *
+ * Built once from MaintenanceCompany and Repair and kept current by
+ * addMaintenanceCompany and addRepair.  Each count change moves the company
+ * by neighbour swaps until its list is in order again, so an update costs
+ * the number of companies it overtakes (usually none or a few ties), not a
+ * sort.  Repairs of the last 365 days, and any dated in the future, are
+ * also kept by day so that the windows can slide as the date changes: a
+ * day leaving a window is subtracted, a day entering it is added.
+ *
+ */
+public class RepairLeaderboard {
+
+   /** The windows, in days; 0 is all-time. */
+   public static final int[] WINDOWS = { 0, 30, 90, 365 };
+
+   private static final String LOAD_COMPANIES = "SELECT cmpID, name FROM MaintenanceCompany";
+   private static final String LOAD_REPAIRS = "SELECT mCompany, repairDate FROM Repair";
+
+   private static final int LONGEST = WINDOWS[WINDOWS.length - 1];
+
+   // companies by dense index.
+   private int[] _cmpIDs = new int[16];
+   private String[] _names = new String[16];
+   private int _companies = 0;
+   private final Map<Integer, Integer> _index = new HashMap<Integer, Integer> ();
+
+   // per window: count by company, companies by rank, rank by company.
+   private int[][] _counts = new int[WINDOWS.length][16];
+   private int[][] _order = new int[WINDOWS.length][16];
+   private int[][] _rank = new int[WINDOWS.length][16];
+
+   // company indices of the repairs on each day after _today - LONGEST.
+   private final TreeMap<Integer, List<Integer>> _recent = new TreeMap<Integer, List<Integer>> ();
+   private int _today;
+   private boolean _built = false;
+
+   /**
+    * Loads every company and repair.  Replaces any previous contents.
+    *
+    * @param pool the pool to read MaintenanceCompany and Repair through
+    * @throws java.sql.SQLException when the tables cannot be read
+    */
+   public synchronized void build (ConnectionPool pool) throws SQLException {
+      this._cmpIDs = new int[16];
+      this._names = new String[16];
+      this._companies = 0;
+      this._index.clear ();
+      this._counts = new int[WINDOWS.length][16];
+      this._order = new int[WINDOWS.length][16];
+      this._rank = new int[WINDOWS.length][16];
+      this._recent.clear ();
+      this._today = DBProject.epochDay (DBProject.today ());
+
+      PooledConnection conn = pool.borrow ();
+      try{
+         PreparedStatement stmt = conn.prepare (LOAD_COMPANIES);
+         ResultSet rs = stmt.executeQuery ();
+         try{
+            while (rs.next ()){
+               company (rs.getInt (1), rs.getString (2));
+            }//end while
+         }finally{
+            rs.close ();
+         }//end try
+         stmt = conn.prepare (LOAD_REPAIRS);
+         rs = stmt.executeQuery ();
+         try{
+            while (rs.next ()){
+               Integer c = this._index.get (rs.getInt (1));
+               if (c == null){
+                  continue;
+               }//end if
+               int day = DBProject.epochDay (rs.getDate (2));
+               for (int w = 0; w < WINDOWS.length; ++w){
+                  if (inWindow (w, day, this._today)){
+                     ++this._counts[w][c];
+                  }//end if
+               }//end for
+               remember (c, day);
+            }//end while
+         }finally{
+            rs.close ();
+         }//end try
+      }finally{
+         pool.release (conn);
+      }//end try
+
+      // one sort per window after the bulk load; updates keep the order.
+      for (int w = 0; w < WINDOWS.length; ++w){
+         final int w0 = w;
+         Integer[] order = new Integer[this._companies];
+         for (int c = 0; c < order.length; ++c){
+            order[c] = c;
+         }//end for
+         Arrays.sort (order, new Comparator<Integer> () {
+            public int compare (Integer a, Integer b) {
+               return a.equals (b) ? 0 : (ahead (w0, a, b) ? -1 : 1);
+            }
+         });
+         for (int pos = 0; pos < order.length; ++pos){
+            this._order[w][pos] = order[pos];
+            this._rank[w][order[pos]] = pos;
+         }//end for
+      }//end for
+      this._built = true;
+   }//end build
+
+   /**
+    * @return true once build() has completed
+    */
+   public synchronized boolean isBuilt () {
+      return this._built;
+   }//end isBuilt
+
+   /**
+    * Records a new maintenance company.
+    */
+   public synchronized void onCompany (int cmpID, String name) {
+      if (this._built){
+         company (cmpID, name);
+      }//end if
+   }//end onCompany
+
+   /**
+    * Records a repair made by a company on a day.
+    */
+   public synchronized void onRepair (int cmpID, int day) {
+      if (!this._built){
+         return;
+      }//end if
+      Integer c = this._index.get (cmpID);
+      if (c == null){
+         return;
+      }//end if
+      for (int w = 0; w < WINDOWS.length; ++w){
+         if (inWindow (w, day, this._today)){
+            bump (w, c, 1);
+         }//end if
+      }//end for
+      remember (c, day);
+   }//end onRepair
+
+   /**
+    * Checks that a number of days names one of the windows.
+    *
+    * @param days the window length, 0 for all-time
+    * @return the index of the window in WINDOWS
+    */
+   public static int window (int days) {
+      for (int w = 0; w < WINDOWS.length; ++w){
+         if (WINDOWS[w] == days){
+            return w;
+         }//end if
+      }//end for
+      throw new IllegalArgumentException ("Window must be one of " + Arrays.toString (WINDOWS) + " days: " + days);
+   }//end window
+
+   /**
+    * Writes the k companies with the most repairs in a window ending today,
+    * in the same shape as Queries.TOP_K_MAINTENANCE_COMPANIES.  Companies
+    * without repairs in the window are left out, as the SQL join does.
+    *
+    * @param sink where the rows go
+    * @param k the number of companies
+    * @param days the window length, 0 for all-time
+    */
+   public synchronized void writeTop (ResultSink sink, int k, int days) throws IOException {
+      int w = window (days);
+      advance (DBProject.epochDay (DBProject.today ()));
+      int[] count = this._counts[w];
+      int[] order = this._order[w];
+      int rows = 0;
+      while (rows < k && rows < this._companies && count[order[rows]] > 0){
+         if (rows == 0){
+            sink.begin (new String[] { "name", "count" });
+         }//end if
+         sink.cell (this._names[order[rows]]);
+         sink.cell (String.valueOf (count[order[rows]]));
+         sink.endRow ();
+         ++rows;
+      }//end while
+      sink.end (rows);
+   }//end writeTop
+
+   /*
+    * Slides the windows forward to a new today: repairs on the days that
+    * left a window are subtracted, those on the days that entered it added.
+    **/
+   private void advance (int today) {
+      if (today <= this._today){
+         return;
+      }//end if
+      for (int w = 0; w < WINDOWS.length; ++w){
+         int length = WINDOWS[w];
+         if (length == 0){
+            continue;
+         }//end if
+         // days (old - length, min(old, new - length)] leave the window.
+         int from = this._today - length;
+         int to = Math.min (this._today, today - length);
+         if (to > from){
+            for (List<Integer> repairs : this._recent.subMap (from, false, to, true).values ()){
+               for (int c : repairs){
+                  bump (w, c, -1);
+               }//end for
+            }//end for
+         }//end if
+         // days (max(old, new - length), new] enter it.
+         from = Math.max (this._today, today - length);
+         for (List<Integer> repairs : this._recent.subMap (from, false, today, true).values ()){
+            for (int c : repairs){
+               bump (w, c, 1);
+            }//end for
+         }//end for
+      }//end for
+      this._today = today;
+      this._recent.headMap (today - LONGEST, true).clear ();
+   }//end advance
+
+   /*
+    * Changes a company's count in one window and restores the ranking by
+    * swapping it past the neighbours it overtook or fell behind.  A delta
+    * of 0 places a company just added at the bottom.
+    **/
+   private void bump (int w, int c, int delta) {
+      int[] count = this._counts[w];
+      int[] order = this._order[w];
+      int[] rank = this._rank[w];
+      count[c] += delta;
+      int pos = rank[c];
+      if (delta >= 0){
+         while (pos > 0 && ahead (w, c, order[pos - 1])){
+            swap (order, rank, pos, pos - 1);
+            --pos;
+         }//end while
+      }else{
+         while (pos + 1 < this._companies && ahead (w, order[pos + 1], c)){
+            swap (order, rank, pos, pos + 1);
+            ++pos;
+         }//end while
+      }//end if
+   }//end bump
+
+   /*
+    * Whether company a ranks before company b in a window: more repairs
+    * first, ties by cmpID, as Queries.TOP_K_MAINTENANCE_COMPANIES orders.
+    **/
+   private boolean ahead (int w, int a, int b) {
+      int[] count = this._counts[w];
+      if (count[a] != count[b]){
+         return count[a] > count[b];
+      }//end if
+      return this._cmpIDs[a] < this._cmpIDs[b];
+   }//end ahead
+
+   private static void swap (int[] order, int[] rank, int i, int j) {
+      int a = order[i];
+      int b = order[j];
+      order[i] = b;
+      order[j] = a;
+      rank[b] = i;
+      rank[a] = j;
+   }//end swap
+
+   private boolean inWindow (int w, int day, int today) {
+      // all-time counts repairs dated after today too, as the query does.
+      return WINDOWS[w] == 0 || (day <= today && day > today - WINDOWS[w]);
+   }//end inWindow
+
+   private void remember (int c, int day) {
+      if (day <= this._today - LONGEST){
+         return;
+      }//end if
+      List<Integer> repairs = this._recent.get (day);
+      if (repairs == null){
+         repairs = new ArrayList<Integer> (2);
+         this._recent.put (day, repairs);
+      }//end if
+      repairs.add (c);
+   }//end remember
+
+   /*
+    * Adds a company with no repairs at the bottom of every ranking.
+    **/
+   private void company (int cmpID, String name) {
+      if (this._index.containsKey (cmpID)){
+         return;
+      }//end if
+      int c = this._companies++;
+      if (c == this._cmpIDs.length){
+         int size = c * 2;
+         this._cmpIDs = Arrays.copyOf (this._cmpIDs, size);
+         this._names = Arrays.copyOf (this._names, size);
+         for (int w = 0; w < WINDOWS.length; ++w){
+            this._counts[w] = Arrays.copyOf (this._counts[w], size);
+            this._order[w] = Arrays.copyOf (this._order[w], size);
+            this._rank[w] = Arrays.copyOf (this._rank[w], size);
+         }//end for
+      }//end if
+      this._cmpIDs[c] = cmpID;
+      this._names[c] = name;
+      this._index.put (cmpID, c);
+      for (int w = 0; w < WINDOWS.length; ++w){
+         this._order[w][c] = c;
+         this._rank[w][c] = c;
+         bump (w, c, 0);
+      }//end for
+   }//end company
+
+}//end RepairLeaderboard
@@ -0,0 +1,342 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A bounded LRU cache of report results, keyed by query template and
+ * parameter values.
+ *
+ * Each entry remembers the tables its template reads and the version of
+ * each of those tables when the query started.  A write through
+ * DBProject.executeUpdate bumps the version of every table it modifies, so
+ * the entries that depend on it become stale and are dropped the next time
+ * they are looked up, while entries over other tables stay valid.  Only
+ * writes made through this process are seen.
+ *
+ * The cache holds at most maxBytes of estimated result size (system
+ * property dbproject.cache.bytes, default 16 MB; 0 disables it).  A result
+ * larger than a quarter of that is streamed without being kept.
+ *
+ */
+public class ResultCache {
+
+   // table names following FROM / JOIN / a comma in a FROM list.
+   private static final Pattern READS = Pattern.compile (
+      "(?i)(?:\\bFROM|\\bJOIN|,)\\s+([A-Za-z_][A-Za-z0-9_]*)");
+   // tables modified by INSERT / UPDATE / DELETE, including inside WITH.
+   private static final Pattern WRITES = Pattern.compile (
+      "(?i)\\b(?:INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|TRUNCATE(?:\\s+TABLE)?|COPY)\\s+([A-Za-z_][A-Za-z0-9_]*)");
+
+   // rough per-object overheads used for the size estimate.
+   private static final int ENTRY_OVERHEAD = 128;
+   private static final int STRING_OVERHEAD = 40;
+
+   /**
+    * A cache key: the template and its parameter values.
+    */
+   private static final class Key {
+      final String template;
+      final Object[] params;
+      final int hash;
+
+      Key (String template, Object[] params) {
+         this.template = template;
+         this.params = params.clone ();
+         this.hash = template.hashCode () * 31 + Arrays.hashCode (this.params);
+      }//end Key
+
+      public int hashCode () {
+         return this.hash;
+      }//end hashCode
+
+      public boolean equals (Object o) {
+         if (!(o instanceof Key)){
+            return false;
+         }//end if
+         Key other = (Key) o;
+         return this.template.equals (other.template) && Arrays.equals (this.params, other.params);
+      }//end equals
+   }//end Key
+
+   /**
+    * A cached result.
+    */
+   private static final class Entry {
+      final String[] tables;
+      final long[] versions;
+      final String[] columns;
+      final String[][] rows;
+      final long bytes;
+
+      Entry (String[] tables, long[] versions, String[] columns, String[][] rows, long bytes) {
+         this.tables = tables;
+         this.versions = versions;
+         this.columns = columns;
+         this.rows = rows;
+         this.bytes = bytes;
+      }//end Entry
+   }//end Entry
+
+   private final long _maxBytes;
+   private long _bytes = 0;
+   private final LinkedHashMap<Key, Entry> _entries = new LinkedHashMap<Key, Entry> (64, 0.75f, true);
+   // table (lower case) -> number of writes seen.
+   private final Map<String, Long> _versions = new HashMap<String, Long> ();
+   // template -> tables it reads, parsed once.
+   private final Map<String, String[]> _reads = new HashMap<String, String[]> ();
+
+   private long _hits = 0;
+   private long _misses = 0;
+   private long _evictions = 0;
+   private long _invalidations = 0;
+
+   /**
+    * Creates a cache sized by the system property dbproject.cache.bytes.
+    */
+   public ResultCache () {
+      this (Long.getLong ("dbproject.cache.bytes", 16L << 20));
+   }//end ResultCache
+
+   /**
+    * @param maxBytes the estimated size the cached results may take, 0 to disable
+    */
+   public ResultCache (long maxBytes) {
+      this._maxBytes = maxBytes;
+   }//end ResultCache
+
+   /**
+    * @return false when the cache was configured with no room
+    */
+   public boolean isEnabled () {
+      return this._maxBytes > 0;
+   }//end isEnabled
+
+   /**
+    * Writes a cached result to the sink if there is a current one.
+    *
+    * @param template the query template
+    * @param params its parameter values
+    * @param sink where the rows go
+    * @return the number of rows written, or -1 on a miss
+    */
+   public int replay (String template, Object[] params, ResultSink sink) throws IOException {
+      Entry entry;
+      synchronized (this){
+         Key key = new Key (template, params);
+         entry = this._entries.get (key);
+         if (entry != null && !current (entry)){
+            remove (key);
+            ++this._invalidations;
+            entry = null;
+         }//end if
+         if (entry == null){
+            ++this._misses;
+            return -1;
+         }//end if
+         ++this._hits;
+      }//end synchronized
+      // entries are immutable, so they are written outside the lock.
+      if (entry.rows.length > 0){
+         sink.begin (entry.columns);
+      }//end if
+      for (String[] row : entry.rows){
+         for (String cell : row){
+            sink.cell (cell);
+         }//end for
+         sink.endRow ();
+      }//end for
+      sink.end (entry.rows.length);
+      return entry.rows.length;
+   }//end replay
+
+   /**
+    * Wraps a sink so that the result written through it is also cached.
+    * The versions of the tables read are taken now, before the query runs,
+    * so that a write racing with the query leaves the entry stale.
+    *
+    * @param template the query template
+    * @param params its parameter values
+    * @param sink the sink the result is forwarded to
+    * @return the recording sink
+    */
+   public synchronized ResultSink record (String template, Object[] params, ResultSink sink) {
+      String[] tables = reads (template);
+      long[] versions = new long[tables.length];
+      for (int i = 0; i < tables.length; ++i){
+         versions[i] = version (tables[i]);
+      }//end for
+      return new Recorder (new Key (template, params), tables, versions, sink);
+   }//end record
+
+   /**
+    * Marks the tables an update statement modifies as changed.  A statement
+    * whose targets cannot be recognized (DDL, for instance) empties the
+    * cache.
+    *
+    * @param sql the update statement
+    */
+   public synchronized void invalidate (String sql) {
+      Matcher m = WRITES.matcher (sql);
+      boolean found = false;
+      while (m.find ()){
+         String table = m.group (1).toLowerCase (Locale.ROOT);
+         this._versions.put (table, version (table) + 1);
+         found = true;
+      }//end while
+      if (!found){
+         this._invalidations += this._entries.size ();
+         this._entries.clear ();
+         this._bytes = 0;
+      }//end if
+   }//end invalidate
+
+   /**
+    * @return a one-line summary of the cache metrics
+    */
+   public synchronized String stats () {
+      return String.format (
+         "cache: entries=%d bytes=%d max=%d hits=%d misses=%d evictions=%d invalidations=%d",
+         this._entries.size (), this._bytes, this._maxBytes, this._hits, this._misses,
+         this._evictions, this._invalidations);
+   }//end stats
+
+   public synchronized long getHits () {
+      return this._hits;
+   }//end getHits
+
+   public synchronized long getMisses () {
+      return this._misses;
+   }//end getMisses
+
+   public synchronized long getEvictions () {
+      return this._evictions;
+   }//end getEvictions
+
+   private synchronized void put (Key key, Entry entry) {
+      if (!current (entry)){
+         return;
+      }//end if
+      Entry old = this._entries.put (key, entry);
+      if (old != null){
+         this._bytes -= old.bytes;
+      }//end if
+      this._bytes += entry.bytes;
+      Iterator<Map.Entry<Key, Entry>> eldest = this._entries.entrySet ().iterator ();
+      while (this._bytes > this._maxBytes && eldest.hasNext ()){
+         Entry victim = eldest.next ().getValue ();
+         eldest.remove ();
+         this._bytes -= victim.bytes;
+         ++this._evictions;
+      }//end while
+   }//end put
+
+   private void remove (Key key) {
+      Entry old = this._entries.remove (key);
+      if (old != null){
+         this._bytes -= old.bytes;
+      }//end if
+   }//end remove
+
+   private boolean current (Entry entry) {
+      for (int i = 0; i < entry.tables.length; ++i){
+         if (version (entry.tables[i]) != entry.versions[i]){
+            return false;
+         }//end if
+      }//end for
+      return true;
+   }//end current
+
+   private long version (String table) {
+      Long version = this._versions.get (table);
+      return version == null ? 0L : version.longValue ();
+   }//end version
+
+   private String[] reads (String template) {
+      String[] tables = this._reads.get (template);
+      if (tables == null){
+         List<String> found = new ArrayList<String> ();
+         Matcher m = READS.matcher (template);
+         while (m.find ()){
+            String table = m.group (1).toLowerCase (Locale.ROOT);
+            if (!found.contains (table) && !table.equals ("select")){
+               found.add (table);
+            }//end if
+         }//end while
+         tables = found.toArray (new String[found.size ()]);
+         this._reads.put (template, tables);
+      }//end if
+      return tables;
+   }//end reads
+
+   /**
+    * Forwards a result to a sink while keeping a copy, which is cached
+    * when the result ends unless it grew past a quarter of the cache.
+    */
+   private final class Recorder implements ResultSink {
+      private final Key _key;
+      private final String[] _tables;
+      private final long[] _versions;
+      private final ResultSink _target;
+      private String[] _columns = new String[0];
+      private List<String[]> _rows = new ArrayList<String[]> ();
+      private String[] _row;
+      private int _cell;
+      private long _bytes = ENTRY_OVERHEAD;
+
+      Recorder (Key key, String[] tables, long[] versions, ResultSink target) {
+         this._key = key;
+         this._tables = tables;
+         this._versions = versions;
+         this._target = target;
+      }//end Recorder
+
+      public void begin (String[] columns) throws IOException {
+         this._target.begin (columns);
+         this._columns = columns.clone ();
+         this._row = new String[columns.length];
+         this._cell = 0;
+         for (String column : columns){
+            this._bytes += STRING_OVERHEAD + 2L * column.length ();
+         }//end for
+      }//end begin
+
+      public void cell (String value) throws IOException {
+         this._target.cell (value);
+         if (this._rows != null){
+            this._row[this._cell++] = value;
+            this._bytes += STRING_OVERHEAD + (value == null ? 0 : 2L * value.length ());
+         }//end if
+      }//end cell
+
+      public void endRow () throws IOException {
+         this._target.endRow ();
+         if (this._rows != null){
+            this._rows.add (this._row);
+            this._row = new String[this._columns.length];
+            this._cell = 0;
+            this._bytes += STRING_OVERHEAD;
+            if (this._bytes > ResultCache.this._maxBytes / 4){
+               // too big to be worth keeping; stop copying.
+               this._rows = null;
+            }//end if
+         }//end if
+      }//end endRow
+
+      public void end (int rows) throws IOException {
+         this._target.end (rows);
+         if (this._rows != null){
+            put (this._key, new Entry (this._tables, this._versions, this._columns,
+                                       this._rows.toArray (new String[this._rows.size ()][]), this._bytes));
+         }//end if
+      }//end end
+   }//end Recorder
+
+}//end ResultCache
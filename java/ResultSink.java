@@ -0,0 +1,42 @@
+import java.io.IOException;
+
+/**
+ * Destination for the rows produced by DBProject.executeQuery.  A sink
+ * receives the column names before the first row, then each row cell by
+ * cell, and is told when the result is complete so it can flush.
+ *
+ */
+public interface ResultSink {
+
+   /**
+    * Called once, before the first row, with the result column names.
+    *
+    * @param columns the column labels in select-list order
+    * @throws java.io.IOException when the sink cannot be written
+    */
+   void begin (String[] columns) throws IOException;
+
+   /**
+    * Appends one cell to the current row.
+    *
+    * @param value the cell text, or null for SQL NULL
+    * @throws java.io.IOException when the sink cannot be written
+    */
+   void cell (String value) throws IOException;
+
+   /**
+    * Terminates the current row.
+    *
+    * @throws java.io.IOException when the sink cannot be written
+    */
+   void endRow () throws IOException;
+
+   /**
+    * Called once after the last row; buffered output must be flushed here.
+    *
+    * @param rows the number of rows written
+    * @throws java.io.IOException when the sink cannot be written
+    */
+   void end (int rows) throws IOException;
+
+}//end ResultSink
@@ -0,0 +1,69 @@
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Creates result sinks by format name, so the output of the menu, a batch
+ * script or an export can be chosen on the command line
+ * (--output &lt;format&gt; &lt;file&gt;) or with the system properties
+ * dbproject.output and dbproject.output.file.  The formats are
+ * <ul>
+ *    <li>console: tab separated text on standard out, the default;</li>
+ *    <li>csv: comma separated values, see CsvSink;</li>
+ *    <li>json: one JSON object per row, see JsonSink;</li>
+ *    <li>binary: the compact row format of BinarySink;</li>
+ *    <li>null: nothing, for timing runs.</li>
+ * </ul>
+ *
+ */
+public final class ResultSinks {
+
+   private ResultSinks () {
+   }//end ResultSinks
+
+   /**
+    * Opens a sink.
+    *
+    * @param format the format name
+    * @param file the file the csv, json and binary formats write; ignored
+    *        by the others
+    * @return the sink; close it after the last result when it is a
+    *         ChannelSink
+    * @throws java.io.IOException when the file cannot be created
+    * @throws IllegalArgumentException when the format is unknown or needs
+    *         a file and none is given
+    */
+   public static ResultSink open (String format, String file) throws IOException {
+      String name = format.trim ().toLowerCase ();
+      if (name.equals ("console")){
+         return new ConsoleSink ();
+      }//end if
+      if (name.equals ("null")){
+         return new NullSink ();
+      }//end if
+      if (!name.equals ("csv") && !name.equals ("json") && !name.equals ("binary")){
+         throw new IllegalArgumentException ("Unknown output format: " + format);
+      }//end if
+      if (file == null || file.length () == 0){
+         throw new IllegalArgumentException ("The " + name + " output needs a file");
+      }//end if
+      File out = new File (file);
+      if (name.equals ("csv")){
+         return new CsvSink (out);
+      }else if (name.equals ("json")){
+         return new JsonSink (out);
+      }//end if
+      return new BinarySink (out);
+   }//end open
+
+   /**
+    * Opens the sink named by the system properties dbproject.output and
+    * dbproject.output.file.
+    *
+    * @return the sink, or a ConsoleSink when no format is set
+    * @throws java.io.IOException when the file cannot be created
+    */
+   public static ResultSink configured () throws IOException {
+      return open (System.getProperty ("dbproject.output", "console"), System.getProperty ("dbproject.output.file"));
+   }//end configured
+
+}//end ResultSinks
@@ -0,0 +1,74 @@
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks keyed by hotel room.  Bookings of the same room are
+ * serialized on one of a fixed number of locks, chosen by a hash of
+ * (hotelID, roomNo), while bookings of different rooms almost always take
+ * different locks and run in parallel.  Two rooms sharing a stripe only
+ * wait for each other; they never deadlock, because a booking holds one
+ * stripe at a time.
+ *
+ * The locks only order the clerks of this process.  Other clients are
+ * kept from double-booking by the unique key on (hotelID, roomNo,
+ * bookingDate), see sql/constraints.sql.
+ *
+ * The stripes are ReentrantLocks rather than monitors because a booking
+ * holds its stripe across database round trips: a virtual thread (the
+ * server sessions) blocking inside synchronized would pin its carrier
+ * thread for that long.
+ *
+ */
+public class RoomLocks {
+
+   private final Lock[] _stripes;
+   private final int _mask;
+
+   /**
+    * Creates the locks with dbproject.lockStripes stripes (default 256).
+    */
+   public RoomLocks () {
+      this (Integer.getInteger ("dbproject.lockStripes", 256));
+   }//end RoomLocks
+
+   /**
+    * @param stripes the number of locks, rounded up to a power of two and
+    * capped at 65536
+    */
+   public RoomLocks (int stripes) {
+      if (stripes < 1){
+         throw new IllegalArgumentException ("stripes must be positive: " + stripes);
+      }//end if
+      int size = Integer.highestOneBit (stripes);
+      if (size < stripes && size < 1 << 16){
+         size <<= 1;
+      }//end if
+      size = Math.min (size, 1 << 16);
+      this._stripes = new Lock[size];
+      for (int i = 0; i < size; ++i){
+         this._stripes[i] = new ReentrantLock ();
+      }//end for
+      this._mask = size - 1;
+   }//end RoomLocks
+
+   /**
+    * @param hotelID the hotel
+    * @param roomNo the room
+    * @return the lock to hold while booking the room
+    */
+   public Lock get (int hotelID, int roomNo) {
+      int h = hotelID * 0x9E3779B9 + roomNo;
+      h ^= h >>> 16;
+      h *= 0x85EBCA6B;
+      h ^= h >>> 13;
+      return this._stripes[h & this._mask];
+   }//end get
+
+   /**
+    * @return the number of stripes
+    */
+   public int size () {
+      return this._stripes.length;
+   }//end size
+
+}//end RoomLocks
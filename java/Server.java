@@ -0,0 +1,231 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the sixteen operations to concurrent clients over a local TCP
+ * port.  Every client connection is a session with its own result sink,
+ * sharing the connection pool, in-memory indexes, result cache and
+ * statistics of one DBProject.
+ *
+ * The protocol is line based and uses the batch script syntax: the client
+ * sends one operation per line, e.g.
+ * <pre>
+ *    numberOfAvailableRooms hotel=381 date=2015-05-10
+ * </pre>
+ * and the server answers with the result rows as tab separated text (the
+ * column names first), followed by a status line: "OK &lt;micros&gt;" or
+ * "ERR &lt;message&gt;".  A failing operation may have written some rows
+ * before its ERR line.  Blank lines and lines starting with # are ignored.
+ * "quit" ends the session; "shutdown" also stops the server; "reindex"
+ * reloads the shared in-memory indexes and drops the cached reports over
+ * Booking, after another process (e.g. BulkBookingImport) wrote bookings.
+ *
+ * Sessions run on virtual threads when the JVM has them (Java 21 and
+ * later), so hundreds of mostly idle clients cost little more than their
+ * sockets; older JVMs fall back to a cached pool of platform threads.
+ * Either way, the number of statements in flight is bounded by the
+ * connection pool (dbproject.pool.size).
+ *
+ */
+public class Server {
+
+   private final DBProject _esql;
+   private final ServerSocket _socket;
+   private final ExecutorService _sessions;
+   private final boolean _virtual;
+   private final Set<Socket> _clients = Collections.newSetFromMap (new ConcurrentHashMap<Socket, Boolean> ());
+
+   private final AtomicInteger _open = new AtomicInteger ();
+   private final AtomicLong _accepted = new AtomicLong ();
+   private final AtomicLong _requests = new AtomicLong ();
+   private final AtomicLong _failures = new AtomicLong ();
+
+   /**
+    * Opens the listening socket on the loopback interface.
+    *
+    * @param esql the instance whose pool and indexes the sessions share
+    * @param port the TCP port to listen on
+    * @throws java.io.IOException when the port cannot be bound
+    */
+   public Server (DBProject esql, int port) throws IOException {
+      this._esql = esql;
+      this._socket = new ServerSocket (port, 512, InetAddress.getByName ("127.0.0.1"));
+      ExecutorService virtual = virtualThreadExecutor ();
+      this._virtual = virtual != null;
+      this._sessions = this._virtual ? virtual : Executors.newCachedThreadPool ();
+   }//end Server
+
+   /**
+    * Accepts clients until a session asks for shutdown, then disconnects
+    * the other clients and waits for their sessions to end.
+    *
+    * @throws java.io.IOException when accepting fails
+    */
+   public void run () throws IOException {
+      System.out.println ("Listening on " + this._socket.getLocalSocketAddress ()
+                          + (this._virtual ? " (virtual threads)" : " (platform threads)"));
+      try{
+         while (true){
+            final Socket client;
+            try{
+               client = this._socket.accept ();
+            }catch (SocketException e){
+               if (this._socket.isClosed ()){
+                  break;
+               }//end if
+               throw e;
+            }//end try
+            this._accepted.incrementAndGet ();
+            this._clients.add (client);
+            this._sessions.execute (new Runnable () {
+               public void run () {
+                  serve (client);
+               }
+            });
+         }//end while
+      }finally{
+         close ();
+         this._sessions.shutdown ();
+         for (Socket client : this._clients){
+            try{
+               client.close ();
+            }catch (IOException e){
+               // ignored.
+            }//end try
+         }//end for
+         try{
+            this._sessions.awaitTermination (30, TimeUnit.SECONDS);
+         }catch (InterruptedException e){
+            Thread.currentThread ().interrupt ();
+         }//end try
+      }//end try
+   }//end run
+
+   /**
+    * Stops accepting clients; run() returns once the sessions are done.
+    */
+   public void close () {
+      try{
+         this._socket.close ();
+      }catch (IOException e){
+         // already closed.
+      }//end try
+   }//end close
+
+   /**
+    * @return a one-line summary of the session counters
+    */
+   public String stats () {
+      return String.format ("server: accepted=%d open=%d requests=%d failed=%d",
+                            this._accepted.get (), this._open.get (),
+                            this._requests.get (), this._failures.get ());
+   }//end stats
+
+   /*
+    * Runs one client session until it quits or disconnects.
+    **/
+   private void serve (Socket client) {
+      this._open.incrementAndGet ();
+      try{
+         client.setTcpNoDelay (true);
+         BufferedReader in = new BufferedReader (new InputStreamReader (client.getInputStream (), "UTF-8"));
+         Writer out = new BufferedWriter (new OutputStreamWriter (client.getOutputStream (), "UTF-8"), 1 << 16);
+         DBProject session = this._esql.session (new ConsoleSink (out));
+         String line;
+         while ((line = in.readLine ()) != null){
+            line = line.trim ();
+            if (line.length () == 0 || line.charAt (0) == '#'){
+               continue;
+            }//end if
+            if (line.equals ("quit")){
+               break;
+            }//end if
+            if (line.equals ("shutdown")){
+               close ();
+               break;
+            }//end if
+            if (line.equals ("reindex")){
+               out.write (reindex ());
+               out.write ('\n');
+               out.flush ();
+               continue;
+            }//end if
+            out.write (execute (session, line));
+            out.write ('\n');
+            out.flush ();
+         }//end while
+      }catch (IOException e){
+         // the client went away; nothing to answer.
+      }finally{
+         this._open.decrementAndGet ();
+         this._clients.remove (client);
+         try{
+            client.close ();
+         }catch (IOException e){
+            // ignored.
+         }//end try
+      }//end try
+   }//end serve
+
+   /*
+    * Runs one request line against a session.
+    * @return its status line
+    **/
+   private String execute (DBProject session, String line) {
+      this._requests.incrementAndGet ();
+      int space = line.indexOf (' ');
+      long start = System.nanoTime ();
+      try{
+         Operation op = Operation.lookup (space < 0 ? line : line.substring (0, space));
+         op.run (session, Params.parse (space < 0 ? "" : line.substring (space + 1)));
+         return "OK " + (System.nanoTime () - start) / 1000;
+      }catch (Exception e){
+         this._failures.incrementAndGet ();
+         return "ERR " + String.valueOf (e.getMessage ()).replace ('\n', ' ');
+      }//end try
+   }//end execute
+
+   /*
+    * Reloads the shared indexes.
+    * @return the status line
+    **/
+   private String reindex () {
+      long start = System.nanoTime ();
+      try{
+         this._esql.reindex ();
+         return "OK " + (System.nanoTime () - start) / 1000;
+      }catch (Exception e){
+         return "ERR " + String.valueOf (e.getMessage ()).replace ('\n', ' ');
+      }//end try
+   }//end reindex
+
+   /*
+    * Executors.newVirtualThreadPerTaskExecutor() when the running JVM has
+    * it, looked up reflectively so the program still builds for Java 7.
+    * @return the executor, or null on older JVMs
+    **/
+   private static ExecutorService virtualThreadExecutor () {
+      try{
+         return (ExecutorService) Executors.class.getMethod ("newVirtualThreadPerTaskExecutor").invoke (null);
+      }catch (Exception e){
+         return null;
+      }//end try
+   }//end virtualThreadExecutor
+
+}//end Server
@@ -0,0 +1,301 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reads a snapshot written by ColumnarSnapshot.  Each column is memory
+ * mapped and handed out as an IntBuffer or LongBuffer view of the file, so
+ * a scan reads the values in place: no row objects are built and only the
+ * pages of the columns actually scanned are read from disk.  The
+ * dictionaries of the text columns are small and decoded when the file is
+ * opened.
+ *
+ * The buffers stay valid after close(), until they are garbage collected.
+ *
+ * Usage: java SnapshotReader &lt;snapshot dir&gt;
+ * prints a few of the menu's reports computed from booking.col and
+ * repair.col, as an example of scanning the columns.
+ *
+ */
+public class SnapshotReader implements Closeable {
+
+   private final File _file;
+   private final RandomAccessFile _raf;
+   private final FileChannel _channel;
+   private final int _rows;
+   private final String[] _names;
+   private final int[] _types;
+   private final long[] _offsets;
+   private final String[][] _dictionaries;
+
+   /**
+    * Opens a snapshot and reads its directory and dictionaries.
+    *
+    * @param file the snapshot file
+    * @throws java.io.IOException when the file cannot be read or is not a
+    *         snapshot
+    */
+   public SnapshotReader (File file) throws IOException {
+      this._file = file;
+      this._raf = new RandomAccessFile (file, "r");
+      this._channel = this._raf.getChannel ();
+      try{
+         ByteBuffer header = map (0, ColumnarSnapshot.HEADER_BYTES);
+         if (this._channel.size () < ColumnarSnapshot.HEADER_BYTES || header.getInt (0) != ColumnarSnapshot.MAGIC){
+            throw new IOException (file + " is not a columnar snapshot");
+         }//end if
+         if (header.getInt (4) != ColumnarSnapshot.VERSION){
+            throw new IOException (file + ": unsupported snapshot version " + header.getInt (4));
+         }//end if
+         this._rows = header.getInt (8);
+         int columns = header.getInt (12);
+         this._names = new String[columns];
+         this._types = new int[columns];
+         this._offsets = new long[columns];
+         this._dictionaries = new String[columns][];
+         ByteBuffer directory = map (ColumnarSnapshot.HEADER_BYTES, (long) ColumnarSnapshot.ENTRY_BYTES * columns);
+         for (int i = 0; i < columns; ++i){
+            int entry = i * ColumnarSnapshot.ENTRY_BYTES;
+            byte[] name = new byte[ColumnarSnapshot.NAME_BYTES];
+            directory.position (entry);
+            directory.get (name);
+            int length = 0;
+            while (length < name.length && name[length] != 0){
+               ++length;
+            }//end while
+            this._names[i] = new String (name, 0, length, ColumnarSnapshot.UTF8);
+            this._types[i] = directory.getInt (entry + 16);
+            int words = directory.getInt (entry + 20);
+            this._offsets[i] = directory.getLong (entry + 24);
+            if (this._types[i] == ColumnarSnapshot.TEXT){
+               this._dictionaries[i] = dictionary (directory.getLong (entry + 32), directory.getLong (entry + 40), words);
+            }//end if
+         }//end for
+      }catch (IOException e){
+         this._raf.close ();
+         throw e;
+      }catch (RuntimeException e){
+         this._raf.close ();
+         throw new IOException (file + " is damaged: " + e);
+      }//end try
+   }//end SnapshotReader
+
+   public static void main (String[] args) throws IOException {
+      if (args.length != 1){
+         System.err.println ("Usage: java SnapshotReader <snapshot dir>");
+         return;
+      }//end if
+      SnapshotReader bookings = new SnapshotReader (new File (args[0], "booking.col"));
+      SnapshotReader repairs = new SnapshotReader (new File (args[0], "repair.col"));
+      try{
+         System.out.println (bookings.rows () + " bookings, " + repairs.rows () + " repairs");
+         System.out.println ("year\tbookings\trevenue");
+         for (Map.Entry<Integer, long[]> year : bookings.revenueByYear ().entrySet ()){
+            System.out.println (year.getKey () + "\t" + year.getValue ()[0] + "\t" + DBProject.fromCents (year.getValue ()[1]));
+         }//end for
+         System.out.println ("mcompany\trepairs");
+         for (int[] company : repairs.topCompanies (5)){
+            System.out.println (company[0] + "\t" + company[1]);
+         }//end for
+         String[] types = repairs.dictionary ("repairtype");
+         long[] byType = repairs.countByCode ("repairtype");
+         System.out.println ("repairtype\trepairs");
+         for (int code = 0; code < types.length; ++code){
+            System.out.println (types[code] + "\t" + byType[code]);
+         }//end for
+      }finally{
+         bookings.close ();
+         repairs.close ();
+      }//end try
+   }//end main
+
+   /**
+    * @return the number of rows
+    */
+   public int rows () {
+      return this._rows;
+   }//end rows
+
+   /**
+    * @return the column names, in file order
+    */
+   public String[] columns () {
+      return this._names.clone ();
+   }//end columns
+
+   /**
+    * Maps an INT column, or the codes of a TEXT column.
+    *
+    * @param column the column name
+    * @return a read-only view of the column's rows() values
+    * @throws java.io.IOException when the column cannot be mapped
+    */
+   public IntBuffer ints (String column) throws IOException {
+      int i = column (column);
+      if (this._types[i] == ColumnarSnapshot.LONG){
+         throw new IllegalArgumentException (column + " is a long column");
+      }//end if
+      return map (this._offsets[i], this._rows * 4L).asIntBuffer ();
+   }//end ints
+
+   /**
+    * Maps a LONG column.
+    *
+    * @param column the column name
+    * @return a read-only view of the column's rows() values
+    * @throws java.io.IOException when the column cannot be mapped
+    */
+   public LongBuffer longs (String column) throws IOException {
+      int i = column (column);
+      if (this._types[i] != ColumnarSnapshot.LONG){
+         throw new IllegalArgumentException (column + " is not a long column");
+      }//end if
+      return map (this._offsets[i], this._rows * 8L).asLongBuffer ();
+   }//end longs
+
+   /**
+    * @param column the name of a TEXT column
+    * @return its distinct values, indexed by code
+    */
+   public String[] dictionary (String column) {
+      String[] values = this._dictionaries[column (column)];
+      if (values == null){
+         throw new IllegalArgumentException (column + " is not a text column");
+      }//end if
+      return values;
+   }//end dictionary
+
+   /**
+    * Counts the rows per value of a TEXT column.
+    *
+    * @param column the column name
+    * @return the counts, indexed by code; nulls are not counted
+    * @throws java.io.IOException when the column cannot be mapped
+    */
+   public long[] countByCode (String column) throws IOException {
+      long[] counts = new long[dictionary (column).length];
+      IntBuffer codes = ints (column);
+      for (int row = 0, n = codes.limit (); row < n; ++row){
+         int code = codes.get (row);
+         if (code >= 0){
+            ++counts[code];
+         }//end if
+      }//end for
+      return counts;
+   }//end countByCode
+
+   /**
+    * The bookings and their total price per year of a booking snapshot.
+    *
+    * @return year -> { bookings, price in cents }
+    * @throws java.io.IOException when the columns cannot be mapped
+    */
+   public Map<Integer, long[]> revenueByYear () throws IOException {
+      IntBuffer days = ints ("bookingdate");
+      LongBuffer prices = longs ("price");
+      Map<Integer, long[]> years = new TreeMap<Integer, long[]> ();
+      // the year being summed and its first and last days.
+      long[] sums = null;
+      int first = 1;
+      int last = 0;
+      for (int row = 0, n = days.limit (); row < n; ++row){
+         int day = days.get (row);
+         if (day == ColumnarSnapshot.NULL){
+            continue;
+         }//end if
+         if (day < first || day > last){
+            int year = DBProject.civil (day)[0];
+            first = DBProject.epochDay (year, 1, 1);
+            last = DBProject.epochDay (year + 1, 1, 1) - 1;
+            sums = years.get (year);
+            if (sums == null){
+               sums = new long[2];
+               years.put (year, sums);
+            }//end if
+         }//end if
+         ++sums[0];
+         sums[1] += prices.get (row);
+      }//end for
+      return years;
+   }//end revenueByYear
+
+   /**
+    * The maintenance companies with the most repairs in a repair
+    * snapshot, as option 15 lists them.
+    *
+    * @param k the number of companies
+    * @return { company id, repairs } pairs, most repairs first
+    * @throws java.io.IOException when the column cannot be mapped
+    */
+   public List<int[]> topCompanies (int k) throws IOException {
+      IntBuffer companies = ints ("mcompany");
+      int max = -1;
+      for (int row = 0, n = companies.limit (); row < n; ++row){
+         max = Math.max (max, companies.get (row));
+      }//end for
+      int[] counts = new int[max + 1];
+      for (int row = 0, n = companies.limit (); row < n; ++row){
+         int company = companies.get (row);
+         if (company >= 0){
+            ++counts[company];
+         }//end if
+      }//end for
+      List<int[]> top = new ArrayList<int[]> ();
+      for (int company = 0; company < counts.length; ++company){
+         if (counts[company] > 0){
+            top.add (new int[] { company, counts[company] });
+         }//end if
+      }//end for
+      Collections.sort (top, new Comparator<int[]> () {
+         public int compare (int[] a, int[] b) {
+            return a[1] != b[1] ? (b[1] < a[1] ? -1 : 1) : (a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1));
+         }
+      });
+      return top.subList (0, Math.min (k, top.size ()));
+   }//end topCompanies
+
+   public void close () throws IOException {
+      this._raf.close ();
+   }//end close
+
+   public String toString () {
+      return this._file + ": " + this._rows + " rows";
+   }//end toString
+
+   private int column (String name) {
+      for (int i = 0; i < this._names.length; ++i){
+         if (this._names[i].equalsIgnoreCase (name)){
+            return i;
+         }//end if
+      }//end for
+      throw new IllegalArgumentException (this._file + " has no column " + name);
+   }//end column
+
+   private ByteBuffer map (long offset, long length) throws IOException {
+      return this._channel.map (FileChannel.MapMode.READ_ONLY, offset, length).order (ByteOrder.LITTLE_ENDIAN);
+   }//end map
+
+   private String[] dictionary (long offset, long length, int size) throws IOException {
+      ByteBuffer bytes = map (offset, length);
+      String[] values = new String[size];
+      for (int code = 0; code < size; ++code){
+         byte[] value = new byte[bytes.getInt ()];
+         bytes.get (value);
+         values[code] = new String (value, ColumnarSnapshot.UTF8);
+      }//end for
+      return values;
+   }//end dictionary
+
+}//end SnapshotReader
@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What each customer has spent at each hotel, by booking date, as running
+ * totals: for every (customer, hotel) the distinct booking days in order
+ * and the cumulative price up to each of them.  The total for a date range
+ * is then two binary searches and a subtraction.
+ *
+ * Built once from Booking (build() may be called again to rebuild it) and
+ * kept current by bookRoom.  Prices are summed in cents, so the totals are
+ * exact.
+ *
+ */
+public class SpendIndex {
+
+   private static final String LOAD_BOOKINGS =
+      "SELECT customer, hotelID, bookingDate, price FROM Booking ORDER BY customer, hotelID, bookingDate";
+
+   /**
+    * The spending of one customer at one hotel.
+    */
+   private static class Spend {
+      int size = 0;
+      int[] days = new int[4];
+      // total[i] is the spend on days[0..i-1]; total[size] is the grand total.
+      long[] total = new long[5];
+
+      void add (int day, long cents) {
+         int i = Arrays.binarySearch (this.days, 0, this.size, day);
+         if (i < 0){
+            i = -i - 1;
+            if (this.size == this.days.length){
+               this.days = Arrays.copyOf (this.days, this.size * 2);
+               this.total = Arrays.copyOf (this.total, this.size * 2 + 1);
+            }//end if
+            System.arraycopy (this.days, i, this.days, i + 1, this.size - i);
+            System.arraycopy (this.total, i + 1, this.total, i + 2, this.size - i);
+            this.days[i] = day;
+            this.total[i + 1] = this.total[i];
+            ++this.size;
+         }//end if
+         for (int j = i + 1; j <= this.size; ++j){
+            this.total[j] += cents;
+         }//end for
+      }//end add
+
+      /*
+       * Index of the first day not before the given one.
+       **/
+      int lowerBound (int day) {
+         int i = Arrays.binarySearch (this.days, 0, this.size, day);
+         return i < 0 ? -i - 1 : i;
+      }//end lowerBound
+   }//end Spend
+
+   private final Map<Long, Spend> _spend = new HashMap<Long, Spend> ();
+   private boolean _built = false;
+
+   /**
+    * Loads every booking.  Replaces any previous contents.
+    *
+    * @param pool the pool to read Booking through
+    * @throws java.sql.SQLException when the table cannot be read
+    */
+   public synchronized void build (ConnectionPool pool) throws SQLException {
+      this._spend.clear ();
+      PooledConnection conn = pool.borrow ();
+      try{
+         PreparedStatement stmt = conn.prepare (LOAD_BOOKINGS);
+         ResultSet rs = stmt.executeQuery ();
+         try{
+            // rows arrive in day order, so every add() appends.
+            while (rs.next ()){
+               spend (rs.getInt (1), rs.getInt (2)).add (
+                  DBProject.epochDay (rs.getDate (3)), DBProject.cents (rs.getBigDecimal (4)));
+            }//end while
+         }finally{
+            rs.close ();
+         }//end try
+      }finally{
+         pool.release (conn);
+      }//end try
+      this._built = true;
+   }//end build
+
+   /**
+    * @return true once build() has completed
+    */
+   public synchronized boolean isBuilt () {
+      return this._built;
+   }//end isBuilt
+
+   /**
+    * Records a new booking.
+    */
+   public synchronized void onBooking (int customerID, int hotelID, int day, long cents) {
+      if (this._built){
+         spend (customerID, hotelID).add (day, cents);
+      }//end if
+   }//end onBooking
+
+   /**
+    * The amount a customer spent at a hotel on the days from..to, or -1
+    * when the customer has no booking there in that range.
+    *
+    * @param customerID the customer
+    * @param hotelID the hotel
+    * @param from the first day, as an epoch day
+    * @param to the last day, as an epoch day
+    * @return the total in cents, or -1
+    */
+   public synchronized long total (int customerID, int hotelID, int from, int to) {
+      Spend spend = this._spend.get (key (customerID, hotelID));
+      if (spend == null || from > to){
+         return -1;
+      }//end if
+      int lo = spend.lowerBound (from);
+      int hi = to == Integer.MAX_VALUE ? spend.size : spend.lowerBound (to + 1);
+      return hi > lo ? spend.total[hi] - spend.total[lo] : -1;
+   }//end total
+
+   /**
+    * Writes a customer's spend at a hotel in a date range in the same shape
+    * as Queries.CUSTOMER_TOTAL_COST.
+    */
+   void writeTotal (ResultSink sink, int customerID, int hotelID, int from, int to) throws IOException {
+      long cents = total (customerID, hotelID, from, to);
+      if (cents < 0){
+         sink.end (0);
+         return;
+      }//end if
+      sink.begin (new String[] { "customerid", "sum" });
+      sink.cell (String.valueOf (customerID));
+      sink.cell (DBProject.fromCents (cents));
+      sink.endRow ();
+      sink.end (1);
+   }//end writeTotal
+
+   private Spend spend (int customerID, int hotelID) {
+      Long key = key (customerID, hotelID);
+      Spend spend = this._spend.get (key);
+      if (spend == null){
+         spend = new Spend ();
+         this._spend.put (key, spend);
+      }//end if
+      return spend;
+   }//end spend
+
+   private static Long key (int customerID, int hotelID) {
+      return Long.valueOf (((long) customerID << 32) | (hotelID & 0xffffffffL));
+   }//end key
+
+}//end SpendIndex
@@ -0,0 +1,121 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Latency histograms by name, for the menu operations and the SQL
+ * templates they run.
+ *
+ * Every operation is recorded under "op NN method".  Every statement is
+ * recorded under "sql NAME" (NAME is the Queries constant holding the
+ * template) for its whole run, and under "sql NAME build", "sql NAME db"
+ * and "sql NAME render" for its phases: borrowing a connection, preparing
+ * and binding the statement; the database round trip until the result (or
+ * update count) is available; and reading the rows into the result sink.
+ * Report results served by the result cache are recorded under
+ * "sql NAME cached".
+ *
+ */
+public class Stats {
+
+   // template text -> name of the Queries constant holding it.
+   private static final Map<String, String> NAMES = new HashMap<String, String> ();
+   static {
+      for (Field field : Queries.class.getFields ()){
+         int modifiers = field.getModifiers ();
+         if (Modifier.isStatic (modifiers) && field.getType () == String.class){
+            try{
+               NAMES.put ((String) field.get (null), field.getName ());
+            }catch (IllegalAccessException e){
+               // public constants are always accessible.
+            }//end try
+         }//end if
+      }//end for
+   }//end static
+
+   private final ConcurrentMap<String, LatencyHistogram> _histograms =
+      new ConcurrentHashMap<String, LatencyHistogram> ();
+
+   /**
+    * @param name the histogram name
+    * @return the histogram, created on first use
+    */
+   public LatencyHistogram get (String name) {
+      LatencyHistogram histogram = this._histograms.get (name);
+      if (histogram == null){
+         LatencyHistogram created = new LatencyHistogram ();
+         histogram = this._histograms.putIfAbsent (name, created);
+         if (histogram == null){
+            histogram = created;
+         }//end if
+      }//end if
+      return histogram;
+   }//end get
+
+   /**
+    * Records the time since start under a name.
+    *
+    * @param name the histogram name
+    * @param start a System.nanoTime() reading
+    */
+   public void since (String name, long start) {
+      get (name).record (System.nanoTime () - start);
+   }//end since
+
+   /**
+    * Records the run of a menu operation that started at start.
+    */
+   public void op (Operation op, long start) {
+      since (String.format ("op %02d %s", op.getCode (), op.getMethod ()), start);
+   }//end op
+
+   /**
+    * @param template a SQL template, or null for ad-hoc SQL
+    * @return the histogram name prefix for it, e.g. "sql BOOKED_ROOMS"
+    */
+   public static String sqlName (String template) {
+      String name = template == null ? null : NAMES.get (template);
+      return "sql " + (name == null ? "(ad hoc)" : name);
+   }//end sqlName
+
+   /**
+    * @return a table of every histogram, in name order, with latencies in
+    *         microseconds
+    */
+   public String report () {
+      StringBuilder out = new StringBuilder ();
+      out.append (String.format ("%-48s %9s %10s %10s %10s %10s %10s%n",
+                                 "name", "count", "mean(us)", "p50(us)", "p95(us)", "p99(us)", "max(us)"));
+      for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<String, LatencyHistogram> (this._histograms).entrySet ()){
+         LatencyHistogram h = entry.getValue ();
+         out.append (String.format ("%-48s %9d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                                    entry.getKey (), h.getCount (), h.getMean () / 1e3,
+                                    h.percentile (0.50) / 1e3, h.percentile (0.95) / 1e3,
+                                    h.percentile (0.99) / 1e3, h.getMax () / 1e3));
+      }//end for
+      return out.toString ();
+   }//end report
+
+   /**
+    * Writes the report to a file, replacing it.
+    *
+    * @param file the file name
+    * @throws java.io.IOException when the file cannot be written
+    */
+   public void dump (String file) throws IOException {
+      Writer out = new FileWriter (file);
+      try{
+         out.write (report ());
+      }finally{
+         out.close ();
+      }//end try
+   }//end dump
+
+}//end Stats
@@ -0,0 +1,170 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver for jdbc:stub: URLs that answers without a database, so
+ * that Bench can time the client side of every operation: taking a pooled
+ * connection, preparing and binding the statement, and rendering the
+ * result through DBProject.printResult.
+ *
+ * Connections, statements and result sets are dynamic proxies.  Setters
+ * accept anything, an update reports one row, and a query returns rows
+ * rows (default 1) of a booking in the seven columns of Booking, read
+ * with getString; getInt and getLong return increasing numbers, so that
+ * IdAllocator gets a new block on every nextval.  The proxy dispatch is
+ * part of what is timed, a few tens of nanoseconds per JDBC call.
+ *
+ */
+public class StubDriver implements Driver {
+
+   /** The URL prefix this driver accepts. */
+   public static final String URL = "jdbc:stub:";
+
+   /** Rows returned by every query. */
+   static volatile int rows = 1;
+
+   private static final String[] COLUMNS = { "bid", "customer", "hotelid", "roomno", "bookingdate", "noofpeople", "price" };
+   private static final String[] VALUES = { "1", "1", "381", "5", "2015-05-12", "1", "1501.00" };
+
+   private static final AtomicLong NEXT = new AtomicLong ();
+
+   public Connection connect (String url, Properties info) {
+      if (!acceptsURL (url)){
+         return null;
+      }//end if
+      return (Connection) proxy (Connection.class, new InvocationHandler () {
+         public Object invoke (Object self, Method m, Object[] args) {
+            String name = m.getName ();
+            if (name.equals ("createStatement") || name.equals ("prepareStatement")){
+               return statement ();
+            }//end if
+            if (name.equals ("getAutoCommit")){
+               return Boolean.TRUE;
+            }//end if
+            return none (m);
+         }
+      });
+   }//end connect
+
+   public boolean acceptsURL (String url) {
+      return url != null && url.startsWith (URL);
+   }//end acceptsURL
+
+   public DriverPropertyInfo[] getPropertyInfo (String url, Properties info) {
+      return new DriverPropertyInfo[0];
+   }//end getPropertyInfo
+
+   public int getMajorVersion () {
+      return 1;
+   }//end getMajorVersion
+
+   public int getMinorVersion () {
+      return 0;
+   }//end getMinorVersion
+
+   public boolean jdbcCompliant () {
+      return false;
+   }//end jdbcCompliant
+
+   public Logger getParentLogger () throws SQLFeatureNotSupportedException {
+      throw new SQLFeatureNotSupportedException ();
+   }//end getParentLogger
+
+   private static PreparedStatement statement () {
+      return (PreparedStatement) proxy (PreparedStatement.class, new InvocationHandler () {
+         public Object invoke (Object self, Method m, Object[] args) {
+            String name = m.getName ();
+            if (name.equals ("executeQuery")){
+               return result (rows);
+            }//end if
+            if (name.equals ("executeUpdate")){
+               return Integer.valueOf (1);
+            }//end if
+            return none (m);
+         }
+      });
+   }//end statement
+
+   private static ResultSet result (final int count) {
+      final ResultSetMetaData meta = (ResultSetMetaData) proxy (ResultSetMetaData.class, new InvocationHandler () {
+         public Object invoke (Object self, Method m, Object[] args) {
+            String name = m.getName ();
+            if (name.equals ("getColumnCount")){
+               return Integer.valueOf (COLUMNS.length);
+            }//end if
+            if (name.equals ("getColumnName") || name.equals ("getColumnLabel")){
+               return COLUMNS[((Integer) args[0]).intValue () - 1];
+            }//end if
+            if (name.equals ("getColumnType")){
+               return Integer.valueOf (Types.VARCHAR);
+            }//end if
+            return none (m);
+         }
+      });
+      return (ResultSet) proxy (ResultSet.class, new InvocationHandler () {
+         private int _row = 0;
+
+         public Object invoke (Object self, Method m, Object[] args) {
+            String name = m.getName ();
+            if (name.equals ("next")){
+               return Boolean.valueOf (++this._row <= count);
+            }//end if
+            if (name.equals ("getString")){
+               return VALUES[((Integer) args[0]).intValue () - 1];
+            }//end if
+            if (name.equals ("getLong")){
+               return Long.valueOf (NEXT.addAndGet (IdAllocator.BLOCK_SIZE));
+            }//end if
+            if (name.equals ("getInt")){
+               return Integer.valueOf ((int) NEXT.incrementAndGet ());
+            }//end if
+            if (name.equals ("getMetaData")){
+               return meta;
+            }//end if
+            return none (m);
+         }
+      });
+   }//end result
+
+   private static Object proxy (Class<?> type, InvocationHandler handler) {
+      return Proxy.newProxyInstance (StubDriver.class.getClassLoader (), new Class<?>[] { type }, handler);
+   }//end proxy
+
+   /*
+    * The do-nothing answer of a method: false, zero or null.
+    **/
+   private static Object none (Method m) {
+      Class<?> type = m.getReturnType ();
+      if (type == boolean.class){
+         return Boolean.FALSE;
+      }else if (type == int.class){
+         return Integer.valueOf (0);
+      }else if (type == long.class){
+         return Long.valueOf (0);
+      }else if (type == double.class){
+         return Double.valueOf (0);
+      }else if (type == float.class){
+         return Float.valueOf (0);
+      }else if (type == short.class){
+         return Short.valueOf ((short) 0);
+      }else if (type == byte.class){
+         return Byte.valueOf ((byte) 0);
+      }//end if
+      return null;
+   }//end none
+
+}//end StubDriver
@@ -0,0 +1,17 @@
+#!/bin/sh
+# Indicate the path of the java compiler to use
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+
+# Export classpath with the postgressql driver
+export CLASSPATH=$CLASSPATH:$PWD/pg73jdbc3.jar
+
+# compile the java program
+javac *.java
+
+# client-side benchmarks (no database needed)
+java Bench client
+
+# end-to-end benchmarks; run sql/insert.sh on a scratch database first
+#Use your database name, port number and login
+java Bench db $USER"_DB" $PGPORT $USER
@@ -0,0 +1,41 @@
+#!/bin/sh
+# Runs compare.batch three ways and reports any difference: by the SQL
+# queries alone (-Ddbproject.indexes=false), by the SQL backend with its
+# in-memory indexes, and by the memory backend.  Run sql/insert.sh first,
+# so that the database holds exactly the rows of ../data.
+export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
+export PATH=$JAVA_HOME/bin:$PATH
+export CLASSPATH=$CLASSPATH:$PWD/pg73jdbc3.jar
+
+javac *.java
+
+#Use your database name, port number and login
+java -Ddbproject.indexes=false DBProject $USER"_DB" $PGPORT $USER --batch compare.batch --output csv sql.csv > /dev/null
+java DBProject $USER"_DB" $PGPORT $USER --batch compare.batch --output csv indexed.csv > /dev/null
+java -Ddbproject.backend=memory DBProject $USER"_DB" $PGPORT $USER --batch compare.batch --output csv memory.csv > /dev/null
+status=0
+for other in indexed.csv memory.csv; do
+   if diff sql.csv $other; then
+      echo "$other agrees with the queries"
+   else
+      echo "$other differs from the queries"
+      status=1
+   fi
+done
+
+# a repair dated after today, added through the indexes (future.batch), then
+# read back by the queries and by a leaderboard built from the table.  This
+# adds a row: run sql/insert.sh again before the next comparison.
+java DBProject $USER"_DB" $PGPORT $USER --batch future.batch --output csv future-added.csv > /dev/null
+grep -v '^add' future.batch > future-read.batch
+java -Ddbproject.indexes=false DBProject $USER"_DB" $PGPORT $USER --batch future-read.batch --output csv future-sql.csv > /dev/null
+java DBProject $USER"_DB" $PGPORT $USER --batch future-read.batch --output csv future-built.csv > /dev/null
+for other in future-added.csv future-built.csv; do
+   if diff future-sql.csv $other; then
+      echo "$other agrees with the queries"
+   else
+      echo "$other differs from the queries"
+      status=1
+   fi
+done
+exit $status
@@ -9,9 +9,10 @@ export PATH=$JAVA_HOME/bin:$PATH
 export CLASSPATH=$CLASSPATH:$PWD/pg73jdbc3.jar
 
 # compile the java program
-javac DBProject.java
+javac *.java
 
 #run the java program
+#Needs a PostgreSQL 9.5 or later server (option 4 uses INSERT ... ON CONFLICT)
 #Use your database name, port number and login
 java DBProject $USER"_DB" $PGPORT $USER
 
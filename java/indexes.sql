@@ -1,35 +1,55 @@
-CREATE INDEX inxcustomer_customerid ON Customer USING BTREE(customerID);
-CREATE INDEX inxcustomer_fname ON Customer USING BTREE(fname);
-CREATE INDEX inxcustomer_lname ON Customer USING BTREE(lname);
-CREATE INDEX inxcustomer_address ON Customer USING BTREE(address);
-CREATE INDEX inxcustomer_phNo ON Customer USING BTREE(phNo);
-CREATE INDEX inxcustomer_DOB ON Customer USING BTREE(DOB);
-CREATE INDEX inxcustomer_gender ON Customer USING BTREE(gender);
+-- Secondary indexes for the DBProject workload, as recommended by
+-- IndexAdvisor (java IndexAdvisor <port> <user> <dbname>[,<dbname>...]).
+-- Primary keys come from sql/constraints.sql and are not repeated here.
+-- Re-run the advisor and replace this file when the query templates in
+-- Queries.java change.
 
-CREATE INDEX inxstaff_SSN ON Staff USING BTREE(SSN);
-CREATE INDEX inxstaff_fname ON Staff USING BTREE(fname);
-CREATE INDEX inxstaff_lname ON Staff USING BTREE(lname);
-CREATE INDEX inxstaff_address ON Staff USING BTREE(address);
-CREATE INDEX inxstaff_role ON Staff USING BTREE(role);
-CREATE INDEX inxstaff_employerID ON Staff USING BTREE(employerID);
+-- the former one-index-per-column set: duplicates of the primary keys,
+-- columns no query filters on, and single columns superseded by the
+-- composite indexes below.
+DROP INDEX IF EXISTS inxcustomer_customerid;
+DROP INDEX IF EXISTS inxcustomer_fname;
+DROP INDEX IF EXISTS inxcustomer_lname;
+DROP INDEX IF EXISTS inxcustomer_address;
+DROP INDEX IF EXISTS inxcustomer_phNo;
+DROP INDEX IF EXISTS inxcustomer_DOB;
+DROP INDEX IF EXISTS inxcustomer_gender;
+DROP INDEX IF EXISTS inxstaff_SSN;
+DROP INDEX IF EXISTS inxstaff_fname;
+DROP INDEX IF EXISTS inxstaff_lname;
+DROP INDEX IF EXISTS inxstaff_address;
+DROP INDEX IF EXISTS inxstaff_role;
+DROP INDEX IF EXISTS inxstaff_employerID;
+DROP INDEX IF EXISTS inxroom_hotelid;
+DROP INDEX IF EXISTS inxroom_roomNo;
+DROP INDEX IF EXISTS inxroom_roomType;
+DROP INDEX IF EXISTS inxmaintenancecompany_cmpid;
+DROP INDEX IF EXISTS inxmaintenancecompany_name;
+DROP INDEX IF EXISTS inxmaintenancecompany_address;
+DROP INDEX IF EXISTS inxmaintenancecompany_iscertified;
+DROP INDEX IF EXISTS inxbooking_bid;
+DROP INDEX IF EXISTS inxbooking_customer;
+DROP INDEX IF EXISTS inxbooking_hotelid;
+DROP INDEX IF EXISTS inxbooking_roomno;
+DROP INDEX IF EXISTS inxbooking_bookingdate;
+DROP INDEX IF EXISTS inxbooking_noofpeople;
+DROP INDEX IF EXISTS inxbooking_price;
+DROP INDEX IF EXISTS inxhotel_hotelid;
+DROP INDEX IF EXISTS inxhotel_address;
+DROP INDEX IF EXISTS inxhotel_manager;
+-- 16 reads RepairYearCount, whose primary key serves it.
+DROP INDEX IF EXISTS inxrepair_hotelid_roomno_repairdate;
 
-CREATE INDEX inxroom_hotelid ON Room USING BTREE(hotelID);
-CREATE INDEX inxroom_roomNo ON Room USING BTREE(roomNo);
-CREATE INDEX inxroom_roomType ON Room USING BTREE(roomType);
-
-CREATE INDEX inxmaintenancecompany_cmpid ON MaintenanceCompany USING BTREE(cmpID);
-CREATE INDEX inxmaintenancecompany_name ON MaintenanceCompany USING BTREE(name);
-CREATE INDEX inxmaintenancecompany_address ON MaintenanceCompany USING BTREE(address);
-CREATE INDEX inxmaintenancecompany_iscertified ON MaintenanceCompany USING BTREE(iscertified);
-
-CREATE INDEX inxbooking_bid ON Booking USING BTREE(bID);
-CREATE INDEX inxbooking_customer ON Booking USING BTREE(customer);
-CREATE INDEX inxbooking_hotelid ON Booking USING BTREE(hotelID);
-CREATE INDEX inxbooking_roomno ON Booking USING BTREE(roomNo);
-CREATE INDEX inxbooking_bookingdate ON Booking USING BTREE(bookingDate);
-CREATE INDEX inxbooking_noofpeople ON Booking USING BTREE(noOfPeople);
-CREATE INDEX inxbooking_price ON Booking USING BTREE(price);
-
-CREATE INDEX inxhotel_hotelid ON Hotel USING BTREE(hotelID);
-CREATE INDEX inxhotel_address ON Hotel USING BTREE(address);
-CREATE INDEX inxhotel_manager ON Hotel USING BTREE(manager);
+-- 9, 10: bookings of a hotel, by date; 10's pages seek on (bookingDate, roomNo)
+CREATE INDEX IF NOT EXISTS inxbooking_hotelid_bookingdate_roomno ON Booking USING BTREE(hotelID, bookingDate, roomNo);
+-- 5, 8: bookings of a room, by date, are served by the unique key
+-- bookingRoomDateUnique(hotelID, roomNo, bookingDate) of constraints.sql
+DROP INDEX IF EXISTS inxbooking_hotelid_roomno_bookingdate;
+-- 12, 13: bookings of a customer, by hotel and date, covering price
+CREATE INDEX IF NOT EXISTS inxbooking_customer_hotelid_bookingdate_price ON Booking USING BTREE(customer, hotelID, bookingDate, price);
+-- 11: bookings of a date range, covering price
+CREATE INDEX IF NOT EXISTS inxbooking_bookingdate_price ON Booking USING BTREE(bookingDate, price);
+-- 14, 15: repairs of a company; 14's pages seek on rID
+CREATE INDEX IF NOT EXISTS inxrepair_mcompany_rid ON Repair USING BTREE(mCompany, rID);
+-- 6: assignments of a staff member
+CREATE INDEX IF NOT EXISTS inxassigned_staffid ON Assigned USING BTREE(staffID);
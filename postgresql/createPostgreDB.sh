@@ -2,4 +2,3 @@
 echo "creating db named ... "$USER"_DB"
 createdb -h localhost -p $PGPORT $USER"_DB"
 pg_ctl status
-cp ../data/*.csv $PGDATA/
\ No newline at end of file
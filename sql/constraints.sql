@@ -0,0 +1,110 @@
+-- Run after the data is loaded: building keys once over the loaded tables is
+-- much cheaper than maintaining them row by row during the load.
+
+-- The below sql statements create the primary keys
+ALTER TABLE Hotel ADD PRIMARY KEY(hotelID);
+ALTER TABLE Staff ADD PRIMARY KEY(SSN);
+ALTER TABLE Room ADD PRIMARY KEY(hotelID, roomNo);
+ALTER TABLE Customer ADD PRIMARY KEY(customerID);
+ALTER TABLE MaintenanceCompany ADD PRIMARY KEY(cmpID);
+ALTER TABLE Booking ADD PRIMARY KEY(bID);
+ALTER TABLE Repair ADD PRIMARY KEY(rID);
+ALTER TABLE Request ADD PRIMARY KEY(reqID);
+ALTER TABLE Assigned ADD PRIMARY KEY(asgID);
+ALTER TABLE RepairYearCount ADD PRIMARY KEY(hotelID, roomNo, year);
+
+-- A room is booked at most once a day, whichever client books it. The key
+-- includes bookingDate, so partition.sql can keep it on the partitioned
+-- Booking; its index also serves the bookings of a room by date.
+ALTER TABLE Booking ADD CONSTRAINT bookingRoomDateUnique UNIQUE(hotelID, roomNo, bookingDate);
+
+-- Every hotel is managed by its staff member with the Manager role
+UPDATE hotel 
+SET manager = Staff.ssn
+FROM Staff
+WHERE hotel.hotelID = Staff.employerID AND Staff.role = 'Manager'; 
+
+-- The below sql statments creates necessary Foreign Key Constraints on the above created tables
+ALTER TABLE Hotel
+ADD CONSTRAINT managerConstraint
+FOREIGN KEY(manager)
+REFERENCES Staff(SSN)
+ON DELETE SET DEFAULT;
+
+ALTER TABLE Staff
+ADD CONSTRAINT employerConstraint
+FOREIGN KEY(employerID)
+REFERENCES Hotel(hotelID)
+ON DELETE CASCADE;
+
+
+ALTER TABLE Room
+ADD CONSTRAINT weakEntityConstraint
+FOREIGN KEY(hotelID)
+REFERENCES Hotel(hotelID)
+ON DELETE CASCADE;
+
+ALTER TABLE Booking
+ADD CONSTRAINT bookingCustomerConstraint
+FOREIGN KEY(customer)
+REFERENCES Customer(customerID)
+ON DELETE SET DEFAULT;
+
+ALTER TABLE Booking
+ADD CONSTRAINT bookingRoomConstraint
+FOREIGN KEY(hotelID, roomNo)
+REFERENCES Room(hotelID, roomNo)
+ON DELETE SET DEFAULT;	
+
+ALTER TABLE Repair
+ADD CONSTRAINT repairMcmpConstraint
+FOREIGN KEY(mCompany)
+REFERENCES MaintenanceCompany(cmpID)
+ON DELETE SET DEFAULT;
+
+ALTER TABLE Repair
+ADD CONSTRAINT repairRoomConstraint
+FOREIGN KEY(hotelID, roomNo)
+REFERENCES Room(hotelID, roomNo)
+ON DELETE SET DEFAULT;   
+
+ALTER TABLE Request
+ADD CONSTRAINT requestMngrConstraint
+FOREIGN KEY(managerID)
+REFERENCES Staff(SSN)
+ON DELETE SET DEFAULT;
+
+ALTER TABLE Request
+ADD CONSTRAINT requestRepairConstraint
+FOREIGN KEY(repairID)
+REFERENCES Repair(rID)
+ON DELETE SET DEFAULT;
+
+ALTER TABLE Assigned
+ADD CONSTRAINT assgndStaffConstraint
+FOREIGN KEY(staffID)
+REFERENCES Staff(SSN)
+ON DELETE SET DEFAULT;
+
+ALTER TABLE Assigned
+ADD CONSTRAINT assgndRoomConstraint
+FOREIGN KEY(hotelID, roomNo)
+REFERENCES Room(hotelID, roomNo)
+ON DELETE SET DEFAULT;
+
+-- The below sql statements summarize the loaded repairs per room and year
+INSERT INTO RepairYearCount(hotelID, roomNo, year, repairs)
+SELECT hotelID, roomNo, EXTRACT(YEAR FROM repairDate)::integer, COUNT(*)
+FROM Repair
+GROUP BY hotelID, roomNo, EXTRACT(YEAR FROM repairDate)::integer;
+ANALYZE RepairYearCount;
+
+-- The below sql statements start every id sequence after the loaded ids
+SELECT setval('hotel_id_seq', (SELECT COALESCE(MAX(hotelID), 0)::bigint + 1 FROM Hotel), false);
+SELECT setval('staff_id_seq', (SELECT COALESCE(MAX(SSN), 0)::bigint + 1 FROM Staff), false);
+SELECT setval('customer_id_seq', (SELECT COALESCE(MAX(customerID), 0)::bigint + 1 FROM Customer), false);
+SELECT setval('maintenancecompany_id_seq', (SELECT COALESCE(MAX(cmpID), 0)::bigint + 1 FROM MaintenanceCompany), false);
+SELECT setval('booking_id_seq', (SELECT COALESCE(MAX(bID), 0)::bigint + 1 FROM Booking), false);
+SELECT setval('repair_id_seq', (SELECT COALESCE(MAX(rID), 0)::bigint + 1 FROM Repair), false);
+SELECT setval('request_id_seq', (SELECT COALESCE(MAX(reqID), 0)::bigint + 1 FROM Request), false);
+SELECT setval('assigned_id_seq', (SELECT COALESCE(MAX(asgID), 0)::bigint + 1 FROM Assigned), false);
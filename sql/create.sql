@@ -9,6 +9,17 @@ DROP TABLE IF EXISTS Booking CASCADE;
 DROP TABLE IF EXISTS Repair CASCADE;
 DROP TABLE IF EXISTS Request CASCADE;
 DROP TABLE IF EXISTS Assigned CASCADE;
+DROP TABLE IF EXISTS RepairYearCount CASCADE;
+
+-- The below sql statements drops of the id sequences if they exist
+DROP SEQUENCE IF EXISTS hotel_id_seq;
+DROP SEQUENCE IF EXISTS staff_id_seq;
+DROP SEQUENCE IF EXISTS customer_id_seq;
+DROP SEQUENCE IF EXISTS maintenancecompany_id_seq;
+DROP SEQUENCE IF EXISTS booking_id_seq;
+DROP SEQUENCE IF EXISTS repair_id_seq;
+DROP SEQUENCE IF EXISTS request_id_seq;
+DROP SEQUENCE IF EXISTS assigned_id_seq;
 
 -- The below sql statements drops of the enum types if they exits
 DROP TYPE IF EXISTS StaffRole CASCADE;
@@ -17,24 +28,22 @@ DROP TYPE IF EXISTS GenderType CASCADE;
 CREATE TYPE StaffRole AS ENUM('Receptionist','HouseCleaning','Manager'); -- enum for staffRoles
 CREATE TYPE GenderType AS ENUM('Male', 'Female', 'Other'); -- enum for gender
 
--- The below statements create necessary tables 
+-- The below statements create necessary tables. Keys are added by constraints.sql
+-- and indexes by java/indexes.sql once the data is loaded (see insert.sh).
 CREATE TABLE Hotel( hotelID Numeric NOT NULL, 
                     address Text, 
-					manager Numeric DEFAULT 0,
-					PRIMARY KEY(hotelID));
+					manager Numeric DEFAULT 0);
 
 CREATE TABLE Staff( SSN Numeric NOT NULL, 
 					fName CHAR(30) NOT NULL, 
 					lName CHAR(30) NOT NULL, 
 					address Text,
 					role StaffRole NOT NULL,
-					employerID Numeric NOT NULL DEFAULT 0,
-					PRIMARY KEY(SSN));
+					employerID Numeric NOT NULL DEFAULT 0);
 
 CREATE TABLE Room( hotelID Numeric NOT NULL,
 				   roomNo  Numeric NOT NULL,
-				   roomType CHAR(10) NOT NULL,
-				   PRIMARY KEY(hotelID, roomNo));
+				   roomType CHAR(10) NOT NULL);
 
 CREATE TABLE Customer( customerID Numeric NOT NULL,
 					   fName CHAR(30) NOT NULL,
@@ -42,22 +51,19 @@ CREATE TABLE Customer( customerID Numeric NOT NULL,
 					   Address TEXT,
 					   phNo Numeric,
 					   DOB Date,
-					   gender GenderType,
-					   PRIMARY KEY(customerID));
+					   gender GenderType);
 
 CREATE TABLE MaintenanceCompany( cmpID Numeric NOT NULL,
 								 name CHAR(30) NOT NULL,
 								 address TEXT,
-								 isCertified Boolean NOT NULL,
-								 PRIMARY KEY(cmpID));
+								 isCertified Boolean NOT NULL);
 CREATE TABLE Booking( bID Numeric NOT NULL,
 					  customer Numeric NOT NULL DEFAULT 0,
 					  hotelID Numeric NOT NULL DEFAULT 0,
 					  roomNo Numeric NOT NULL DEFAULT 0,
 					  bookingDate Date NOT NULL,
 					  noOfPeople Numeric,
-					  price Numeric(6,2) NOT NULL,
-					  PRIMARY KEY(bID));
+					  price Numeric(6,2) NOT NULL);
 
 CREATE TABLE Repair( rID Numeric NOT NULL,
 					 hotelID Numeric NOT NULL DEFAULT 0,
@@ -65,167 +71,35 @@ CREATE TABLE Repair( rID Numeric NOT NULL,
 					 mCompany Numeric NOT NULL DEFAULT 0,
 					 repairDate Date NOT NULL,
 					 description TEXT,
-					 repairType CHAR(10),
-					 PRIMARY KEY(rID));
+					 repairType CHAR(10));
 
 CREATE TABLE Request( reqID Numeric NOT NULL,
 					  managerID Numeric NOT NULL DEFAULT 0,
 					  repairID Numeric NOT NULL DEFAULT 0,
 					  requestDate Date NOT NULL,
-					  description TEXT,
-					  PRIMARY KEY(reqID));
+					  description TEXT);
 
 CREATE TABLE Assigned( asgID Numeric NOT NULL,
 					   staffID Numeric NOT NULL DEFAULT 0,
 					   hotelID Numeric NOT NULL DEFAULT 0,
-					   roomNo Numeric NOT NULL DEFAULT 0,
-					   PRIMARY KEY(asgID));
-
--- The below sql statments creates necessary Foreign Key Constraints on the above created tables
-ALTER TABLE Hotel
-ADD CONSTRAINT managerConstraint
-FOREIGN KEY(manager)
-REFERENCES Staff(SSN)
-ON DELETE SET DEFAULT;
-
-ALTER TABLE Staff
-ADD CONSTRAINT employerConstraint
-FOREIGN KEY(employerID)
-REFERENCES Hotel(hotelID)
-ON DELETE CASCADE;
-
-
-ALTER TABLE Room
-ADD CONSTRAINT weakEntityConstraint
-FOREIGN KEY(hotelID)
-REFERENCES Hotel(hotelID)
-ON DELETE CASCADE;
-
-ALTER TABLE Booking
-ADD CONSTRAINT bookingCustomerConstraint
-FOREIGN KEY(customer)
-REFERENCES Customer(customerID)
-ON DELETE SET DEFAULT;
-
-ALTER TABLE Booking
-ADD CONSTRAINT bookingRoomConstraint
-FOREIGN KEY(hotelID, roomNo)
-REFERENCES Room(hotelID, roomNo)
-ON DELETE SET DEFAULT;	
-
-ALTER TABLE Repair
-ADD CONSTRAINT repairMcmpConstraint
-FOREIGN KEY(mCompany)
-REFERENCES MaintenanceCompany(cmpID)
-ON DELETE SET DEFAULT;
-
-ALTER TABLE Repair
-ADD CONSTRAINT repairRoomConstraint
-FOREIGN KEY(hotelID, roomNo)
-REFERENCES Room(hotelID, roomNo)
-ON DELETE SET DEFAULT;   
-
-ALTER TABLE Request
-ADD CONSTRAINT requestMngrConstraint
-FOREIGN KEY(managerID)
-REFERENCES Staff(SSN)
-ON DELETE SET DEFAULT;
-
-ALTER TABLE Request
-ADD CONSTRAINT requestRepairConstraint
-FOREIGN KEY(repairID)
-REFERENCES Repair(rID)
-ON DELETE SET DEFAULT;
-
-ALTER TABLE Assigned
-ADD CONSTRAINT assgndStaffConstraint
-FOREIGN KEY(staffID)
-REFERENCES Staff(SSN)
-ON DELETE SET DEFAULT;
-
-ALTER TABLE Assigned
-ADD CONSTRAINT assgndRoomConstraint
-FOREIGN KEY(hotelID, roomNo)
-REFERENCES Room(hotelID, roomNo)
-ON DELETE SET DEFAULT; 
--- data copy				 
-COPY Hotel(	hotelID,			 
-			address,	   
-            manager)
-FROM 'hotel.csv'
-WITH DELIMITER ',';
-
-COPY Staff(SSN, 
-			fName, 
-			lName, 
-			address,
-			role,
-			employerID)
-FROM 'staff.csv'
-WITH DELIMITER ',';	
-
-UPDATE hotel 
-SET manager = Staff.ssn
-FROM Staff
-WHERE hotel.hotelID = Staff.employerID AND Staff.role = 'Manager'; 
-
-
-COPY Room(	hotelID,
-		    roomNo,
-			roomType)
-FROM 'room.csv'
-WITH DELIMITER ',';	
-
-COPY Customer(	customerID,
-			    fName,
-			    lName,
-			    Address,
-				phNo,
-				DOB,
-			    gender)
-FROM 'customer.csv'
-WITH DELIMITER ',';	
-
-
-COPY MaintenanceCompany(cmpID,
-						name,
-						address,
-						isCertified)
-FROM 'maintenanceCompany.csv'
-WITH DELIMITER ',';	
-
-COPY Booking( bID,
-			  customer,
-			  hotelID,
-			  roomNo,
-			  bookingDate,
-			  noOfPeople,
-			  price)
-FROM 'booking.csv'
-WITH DELIMITER ',';	
-
-COPY Repair( rID,
-			 hotelID,
-			 roomNo,
-			 mCompany,
-			 repairDate,
-			 description,
-			 repairType)
-FROM 'repair.csv'
-WITH DELIMITER ',';	
-
-COPY Request(reqID,
-			 managerID,
-			 repairID,
-			 requestDate,
-			 description)
-FROM 'request.csv'
-WITH DELIMITER ',';		
-
-COPY Assigned(asgID,
-			  staffID,
-			  hotelID,
-			  roomNo)
-FROM 'assigned.csv'
-WITH DELIMITER ',';		
-
+					   roomNo Numeric NOT NULL DEFAULT 0);
+
+-- Repairs per room and year, read by the per-room yearly repair report instead
+-- of aggregating Repair. Filled by constraints.sql after the load and kept
+-- current by the insert of DBProject.addRepair (see Queries.ADD_REPAIR).
+CREATE TABLE RepairYearCount( hotelID Numeric NOT NULL,
+							  roomNo Numeric NOT NULL,
+							  year INTEGER NOT NULL,
+							  repairs INTEGER NOT NULL DEFAULT 0);
+
+-- The below sql statements create one id sequence per entity table. Clients
+-- reserve a block of 50 ids with a single nextval (see java/IdAllocator.java),
+-- so the increment must stay equal to IdAllocator.BLOCK_SIZE.
+CREATE SEQUENCE hotel_id_seq INCREMENT BY 50;
+CREATE SEQUENCE staff_id_seq INCREMENT BY 50;
+CREATE SEQUENCE customer_id_seq INCREMENT BY 50;
+CREATE SEQUENCE maintenancecompany_id_seq INCREMENT BY 50;
+CREATE SEQUENCE booking_id_seq INCREMENT BY 50;
+CREATE SEQUENCE repair_id_seq INCREMENT BY 50;
+CREATE SEQUENCE request_id_seq INCREMENT BY 50;
+CREATE SEQUENCE assigned_id_seq INCREMENT BY 50;
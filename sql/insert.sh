@@ -1,2 +1,7 @@
 #! /bin/bash
-psql -h localhost -p $PGPORT $USER"_DB" < create.sql
\ No newline at end of file
+# needs a PostgreSQL 9.5 or later server (RepairYearCount is kept with ON CONFLICT)
+psql -h localhost -p $PGPORT $USER"_DB" < create.sql
+# stream data/*.csv into the new tables, then add keys and indexes
+cd ../java
+javac *.java
+java -cp .:pg73jdbc3.jar BulkLoader $USER"_DB" $PGPORT $USER ../data ../sql/constraints.sql indexes.sql
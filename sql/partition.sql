@@ -0,0 +1,120 @@
+-- Turns Booking and Repair into tables range partitioned by year of
+-- bookingDate / repairDate, so the date range reports (options 8, 10, 11, 13
+-- and 15) only read the partitions their dates fall in.  Needs PostgreSQL 11
+-- or later. Run it with psql once the data, constraints.sql and indexes.sql
+-- are in:
+--     psql -h localhost -p $PGPORT $USER"_DB" < partition.sql
+-- then create the partitions of the coming years with
+--     java PartitionMaintainer <dbname> <port> <user>
+-- and again ahead of every new year.
+--
+-- A primary key of a partitioned table has to include the partition key, so
+-- the keys become (bID, bookingDate) and (rID, repairDate); bID and rID stay
+-- unique because they are only handed out by the id sequences. For the same
+-- reason Request.repairID can no longer be a foreign key to Repair(rID): the
+-- triggers at the end check it on insert and apply ON DELETE SET DEFAULT
+-- instead, without the key's protection against a repair deleted by a
+-- concurrent transaction.
+
+BEGIN;
+
+ALTER TABLE Request DROP CONSTRAINT IF EXISTS requestRepairConstraint;
+ALTER TABLE Booking RENAME TO Booking_heap;
+ALTER TABLE Repair RENAME TO Repair_heap;
+
+CREATE TABLE Booking (LIKE Booking_heap INCLUDING DEFAULTS) PARTITION BY RANGE (bookingDate);
+CREATE TABLE Repair (LIKE Repair_heap INCLUDING DEFAULTS) PARTITION BY RANGE (repairDate);
+
+-- one partition per year, from the oldest row to next year, named like the
+-- ones PartitionMaintainer creates
+DO $$
+DECLARE
+   y integer;
+BEGIN
+   FOR y IN SELECT generate_series((SELECT LEAST(COALESCE(MIN(EXTRACT(YEAR FROM bookingDate))::integer, 2000), 2000)
+                                    FROM Booking_heap),
+                                   EXTRACT(YEAR FROM CURRENT_DATE)::integer + 1) LOOP
+      EXECUTE format('CREATE TABLE booking_y%s PARTITION OF Booking FOR VALUES FROM (%L) TO (%L)',
+                     y, make_date(y, 1, 1), make_date(y + 1, 1, 1));
+   END LOOP;
+   FOR y IN SELECT generate_series((SELECT LEAST(COALESCE(MIN(EXTRACT(YEAR FROM repairDate))::integer, 2000), 2000)
+                                    FROM Repair_heap),
+                                   EXTRACT(YEAR FROM CURRENT_DATE)::integer + 1) LOOP
+      EXECUTE format('CREATE TABLE repair_y%s PARTITION OF Repair FOR VALUES FROM (%L) TO (%L)',
+                     y, make_date(y, 1, 1), make_date(y + 1, 1, 1));
+   END LOOP;
+END $$;
+
+-- rows dated past the last partition land here until PartitionMaintainer
+-- moves them into their year
+CREATE TABLE booking_default PARTITION OF Booking DEFAULT;
+CREATE TABLE repair_default PARTITION OF Repair DEFAULT;
+
+INSERT INTO Booking SELECT * FROM Booking_heap;
+INSERT INTO Repair SELECT * FROM Repair_heap;
+DROP TABLE Booking_heap;
+DROP TABLE Repair_heap;
+
+-- keys and indexes on the parent are created on every partition, present
+-- and future
+ALTER TABLE Booking ADD PRIMARY KEY(bID, bookingDate);
+ALTER TABLE Booking ADD CONSTRAINT bookingRoomDateUnique UNIQUE(hotelID, roomNo, bookingDate);
+ALTER TABLE Repair ADD PRIMARY KEY(rID, repairDate);
+
+ALTER TABLE Booking
+ADD CONSTRAINT bookingCustomerConstraint
+FOREIGN KEY(customer)
+REFERENCES Customer(customerID)
+ON DELETE SET DEFAULT;
+
+ALTER TABLE Booking
+ADD CONSTRAINT bookingRoomConstraint
+FOREIGN KEY(hotelID, roomNo)
+REFERENCES Room(hotelID, roomNo)
+ON DELETE SET DEFAULT;
+
+ALTER TABLE Repair
+ADD CONSTRAINT repairMcmpConstraint
+FOREIGN KEY(mCompany)
+REFERENCES MaintenanceCompany(cmpID)
+ON DELETE SET DEFAULT;
+
+ALTER TABLE Repair
+ADD CONSTRAINT repairRoomConstraint
+FOREIGN KEY(hotelID, roomNo)
+REFERENCES Room(hotelID, roomNo)
+ON DELETE SET DEFAULT;
+
+-- the Booking and Repair indexes of java/indexes.sql
+CREATE INDEX IF NOT EXISTS inxbooking_hotelid_bookingdate_roomno ON Booking USING BTREE(hotelID, bookingDate, roomNo);
+CREATE INDEX IF NOT EXISTS inxbooking_customer_hotelid_bookingdate_price ON Booking USING BTREE(customer, hotelID, bookingDate, price);
+CREATE INDEX IF NOT EXISTS inxbooking_bookingdate_price ON Booking USING BTREE(bookingDate, price);
+CREATE INDEX IF NOT EXISTS inxrepair_mcompany_rid ON Repair USING BTREE(mCompany, rID);
+
+-- Request.repairID -> Repair(rID), kept by triggers
+CREATE OR REPLACE FUNCTION requestRepairCheck() RETURNS trigger AS $$
+BEGIN
+   IF NOT EXISTS (SELECT 1 FROM Repair WHERE rID = NEW.repairID) THEN
+      RAISE EXCEPTION 'Repair % does not exist', NEW.repairID USING ERRCODE = 'foreign_key_violation';
+   END IF;
+   RETURN NEW;
+END $$ LANGUAGE plpgsql;
+
+CREATE TRIGGER requestRepairConstraint
+BEFORE INSERT OR UPDATE OF repairID ON Request
+FOR EACH ROW EXECUTE PROCEDURE requestRepairCheck();
+
+CREATE OR REPLACE FUNCTION repairDeleteSetDefault() RETURNS trigger AS $$
+BEGIN
+   UPDATE Request SET repairID = DEFAULT WHERE repairID = OLD.rID;
+   RETURN OLD;
+END $$ LANGUAGE plpgsql;
+
+CREATE TRIGGER repairDeleteSetDefault
+AFTER DELETE ON Repair
+FOR EACH ROW EXECUTE PROCEDURE repairDeleteSetDefault();
+
+COMMIT;
+
+ANALYZE Booking;
+ANALYZE Repair;